@@ -37,6 +37,9 @@ CREATE TABLE `document` (
     `doc_id` VARCHAR(64) NOT NULL COMMENT '文档唯一标识',
     `title` VARCHAR(255) NOT NULL DEFAULT '无标题文档' COMMENT '文档标题',
     `content` LONGTEXT COMMENT '文档内容',
+    `block_manifest` TEXT DEFAULT NULL COMMENT '分块存储的块清单(逗号分隔的块哈希), 为空表示内容在 content 字段',
+    `version` INT NOT NULL DEFAULT 0 COMMENT '内容版本号, 每次落库内容加 1, 用于乐观锁',
+    `content_edited_at` BIGINT DEFAULT NULL COMMENT '已落库内容对应的编辑时间戳毫秒, 编辑日志据此判断记录是否已落库',
     `owner_id` BIGINT NOT NULL COMMENT '创建者ID',
     `status` TINYINT NOT NULL DEFAULT 1 COMMENT '状态: 0-删除, 1-正常',
     `create_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
@@ -48,6 +51,18 @@ CREATE TABLE `document` (
     KEY `idx_owner_id` (`owner_id`)
 ) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '文档表';
 
+-- ===========================
+-- 文档内容块表（大文档分块存储）
+-- ===========================
+DROP TABLE IF EXISTS `document_block`;
+
+CREATE TABLE `document_block` (
+    `doc_id` VARCHAR(64) NOT NULL COMMENT '文档标识',
+    `block_hash` CHAR(16) NOT NULL COMMENT '块内容哈希',
+    `content` MEDIUMTEXT NOT NULL COMMENT '块内容',
+    PRIMARY KEY (`doc_id`, `block_hash`)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '文档内容块表';
+
 -- ===========================
 -- 协作者表
 -- ===========================
@@ -57,8 +72,20 @@ CREATE TABLE `collaborator` (
     `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT 'ID',
     `doc_id` VARCHAR(64) NOT NULL COMMENT '文档标识',
     `user_id` BIGINT NOT NULL COMMENT '用户ID',
+    `permission` VARCHAR(16) NOT NULL DEFAULT 'edit' COMMENT '权限：edit 可编辑，view 只读',
     `create_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     PRIMARY KEY (`id`),
     UNIQUE KEY `uk_doc_user` (`doc_id`, `user_id`),
     KEY `idx_user_id` (`user_id`)
-) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '协作者表';
\ No newline at end of file
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '协作者表';
+
+-- ===========================
+-- 从库心跳表（读写分离时检测从库延迟）
+-- ===========================
+DROP TABLE IF EXISTS `replica_heartbeat`;
+
+CREATE TABLE `replica_heartbeat` (
+    `id` INT NOT NULL COMMENT '固定为 1',
+    `beat` BIGINT NOT NULL COMMENT '主库写入的时间戳毫秒, 从库读回即其已追上的时间点',
+    PRIMARY KEY (`id`)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '从库心跳表';
@@ -0,0 +1,54 @@
+-- ===========================
+-- CoDoc 数据库升级脚本
+-- 适用于按旧版 init.sql 创建、已有数据的数据库；新建数据库直接执行 init.sql 即可。
+-- 只需执行一次，重复执行时 ADD COLUMN / CREATE TABLE 会报已存在，可忽略对应语句。
+-- ===========================
+
+USE codoc;
+
+-- ===========================
+-- 文档表：分块存储清单与乐观锁版本号
+-- ===========================
+ALTER TABLE `document`
+    ADD COLUMN `block_manifest` TEXT DEFAULT NULL COMMENT '分块存储的块清单(逗号分隔的块哈希), 为空表示内容在 content 字段' AFTER `content`,
+    ADD COLUMN `version` INT NOT NULL DEFAULT 0 COMMENT '内容版本号, 每次落库内容加 1, 用于乐观锁' AFTER `block_manifest`;
+
+-- ===========================
+-- 文档表：随内容落库的编辑时间（编辑日志核对是否已落库）
+-- ===========================
+ALTER TABLE `document`
+    ADD COLUMN `content_edited_at` BIGINT DEFAULT NULL COMMENT '已落库内容对应的编辑时间戳毫秒, 编辑日志据此判断记录是否已落库' AFTER `version`;
+
+-- ===========================
+-- 文档内容块表（大文档分块存储）
+-- ===========================
+CREATE TABLE IF NOT EXISTS `document_block` (
+    `doc_id` VARCHAR(64) NOT NULL COMMENT '文档标识',
+    `block_hash` CHAR(16) NOT NULL COMMENT '块内容哈希',
+    `content` MEDIUMTEXT NOT NULL COMMENT '块内容',
+    PRIMARY KEY (`doc_id`, `block_hash`)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '文档内容块表';
+
+-- ===========================
+-- 协作者表：权限
+-- ===========================
+ALTER TABLE `collaborator`
+    ADD COLUMN `permission` VARCHAR(16) NOT NULL DEFAULT 'edit' COMMENT '权限：edit 可编辑，view 只读' AFTER `user_id`;
+
+-- ===========================
+-- 从库心跳表（读写分离时检测从库延迟）
+-- ===========================
+CREATE TABLE IF NOT EXISTS `replica_heartbeat` (
+    `id` INT NOT NULL COMMENT '固定为 1',
+    `beat` BIGINT NOT NULL COMMENT '主库写入的时间戳毫秒, 从库读回即其已追上的时间点',
+    PRIMARY KEY (`id`)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '从库心跳表';
+
+-- ===========================
+-- 清理不再被块清单引用的块（旧版本落库时可能遗留）
+-- ===========================
+DELETE b FROM `document_block` b
+    LEFT JOIN `document` d ON d.`doc_id` = b.`doc_id`
+WHERE d.`doc_id` IS NULL
+   OR d.`block_manifest` IS NULL
+   OR FIND_IN_SET(b.`block_hash`, d.`block_manifest`) = 0;
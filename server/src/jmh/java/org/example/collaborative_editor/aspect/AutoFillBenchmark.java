@@ -0,0 +1,137 @@
+package org.example.collaborative_editor.aspect;
+
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.example.collaborative_editor.annotation.AutoFill;
+import org.example.collaborative_editor.constant.AutoFillConstant;
+import org.example.collaborative_editor.context.BaseContext;
+import org.example.collaborative_editor.entity.Document;
+import org.example.collaborative_editor.enumeration.OperationType;
+import org.example.collaborative_editor.mapper.DocumentMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * documentMapper.update 自动填充开销对比
+ * Mapper 使用与 MyBatis 相同的 JDK 动态代理桩实现，不访问数据库。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class AutoFillBenchmark {
+
+    private DocumentMapper plainMapper;
+    private DocumentMapper reflectiveMapper;
+    private DocumentMapper cachedMapper;
+    private Document document;
+
+    @Setup
+    public void setup() {
+        plainMapper = (DocumentMapper) Proxy.newProxyInstance(DocumentMapper.class.getClassLoader(),
+                new Class<?>[]{DocumentMapper.class}, (proxy, method, args) -> null);
+
+        AspectJProxyFactory reflective = new AspectJProxyFactory(plainMapper);
+        reflective.addAspect(new ReflectiveAutoFillAspect());
+        reflectiveMapper = reflective.getProxy();
+
+        AspectJProxyFactory cached = new AspectJProxyFactory(plainMapper);
+        cached.addAspect(new AutoFillAspect(new StaticListableBeanFactory().getBeanProvider(SqlSessionFactory.class)));
+        cachedMapper = cached.getProxy();
+
+        document = Document.builder().docId("bench").content("hello").build();
+        BaseContext.setCurrentId(1L);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    /**
+     * 无切面，作为基线
+     */
+    @Benchmark
+    public Document baseline() {
+        plainMapper.update(document);
+        return document;
+    }
+
+    /**
+     * 旧实现：每次调用 getDeclaredMethod + Method.invoke
+     */
+    @Benchmark
+    public Document reflective() {
+        reflectiveMapper.update(document);
+        return document;
+    }
+
+    /**
+     * 新实现：AutoFillAccessor 缓存的 LambdaMetafactory setter
+     */
+    @Benchmark
+    public Document cached() {
+        cachedMapper.update(document);
+        return document;
+    }
+
+    /**
+     * 仅对比填充本身：每次 getDeclaredMethod + Method.invoke
+     */
+    @Benchmark
+    public Document reflectiveFillOnly() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        document.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class)
+                .invoke(document, now);
+        document.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class)
+                .invoke(document, BaseContext.getCurrentId());
+        return document;
+    }
+
+    /**
+     * 仅对比填充本身：缓存的访问器
+     */
+    @Benchmark
+    public Document cachedFillOnly() {
+        AutoFillAccessor.of(document.getClass()).fillUpdate(document, LocalDateTime.now(), BaseContext.getCurrentId());
+        return document;
+    }
+
+    /**
+     * 旧版反射切面（去掉了 INFO 日志，仅对比反射本身的开销）
+     */
+    @Aspect
+    public static class ReflectiveAutoFillAspect {
+
+        @Before("execution(* org.example.collaborative_editor.mapper.*.*(..)) && @annotation(org.example.collaborative_editor.annotation.AutoFill)")
+        public void autoFill(JoinPoint joinPoint) throws Exception {
+            MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+            OperationType operationType = signature.getMethod().getAnnotation(AutoFill.class).value();
+            Object entity = joinPoint.getArgs()[0];
+            LocalDateTime now = LocalDateTime.now();
+            Long currentId = BaseContext.getCurrentId();
+
+            if (operationType == OperationType.UPDATE) {
+                Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME,
+                        LocalDateTime.class);
+                Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER,
+                        Long.class);
+                setUpdateTime.invoke(entity, now);
+                if (currentId != null) {
+                    setUpdateUser.invoke(entity, currentId);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.collaborative_editor.benchmark;
+
+import java.util.Random;
+
+/**
+ * 基准测试数据生成
+ * 固定随机种子，保证不同版本之间跑出的数据完全一致、结果可对比。
+ */
+public final class BenchmarkData {
+
+    public static final long SEED = 20240501L;
+
+    private static final String[] WORDS = {
+            "协作", "文档", "编辑", "光标", "同步", "the", "quick", "brown", "fox", "jumps",
+            "over", "lazy", "dog", "\"quoted\"", "tab\t", "line\n", "emoji😀", "CoDoc"
+    };
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * 生成指定字符数的文档内容，混合中英文、转义字符和代理对
+     */
+    public static String content(int chars) {
+        Random random = new Random(SEED);
+        StringBuilder sb = new StringBuilder(chars + 16);
+        while (sb.length() < chars) {
+            sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        sb.setLength(chars);
+        // 避免截断在代理对中间
+        if (Character.isHighSurrogate(sb.charAt(chars - 1))) {
+            sb.setCharAt(chars - 1, ' ');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.collaborative_editor.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 对比两次 JMH JSON 结果，超过阈值的回退以非零退出码结束
+ * 用法: mvn -P jmh exec:exec@jmh-compare -Djmh.baseline=old.json -Djmh.current=new.json [-Djmh.threshold=10]
+ */
+public final class JmhCompare {
+
+    private JmhCompare() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: JmhCompare <baseline.json> <current.json> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        Map<String, JsonNode> baseline = load(new File(args[0]));
+        Map<String, JsonNode> current = load(new File(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-80s %14s %14s %9s%n", "benchmark", "baseline", "current", "delta");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            JsonNode after = entry.getValue();
+            double now = after.path("primaryMetric").path("score").asDouble();
+            String unit = after.path("primaryMetric").path("scoreUnit").asText();
+            if (before == null) {
+                System.out.printf("%-80s %14s %14.3f %9s  %s%n", entry.getKey(), "-", now, "new", unit);
+                continue;
+            }
+            double old = before.path("primaryMetric").path("score").asDouble();
+            double delta = old == 0 ? 0 : (now - old) / old * 100;
+            // 吞吐量模式越大越好，其余模式（耗时）越小越好
+            boolean worse = "thrpt".equals(after.path("mode").asText()) ? -delta > threshold : delta > threshold;
+            if (worse) {
+                regressions++;
+            }
+            System.out.printf("%-80s %14.3f %14.3f %+8.1f%%  %s%s%n",
+                    entry.getKey(), old, now, delta, unit, worse ? "  REGRESSION" : "");
+        }
+        System.out.printf("%d regression(s) above %.1f%%%n", regressions, threshold);
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    /**
+     * 以 "benchmark(param=value,...)" 作为 key 读取结果
+     */
+    private static Map<String, JsonNode> load(File file) throws Exception {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode node : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(node.path("benchmark").asText());
+            JsonNode params = node.path("params");
+            if (params.isObject()) {
+                Map<String, String> sorted = new TreeMap<>();
+                for (Iterator<Map.Entry<String, JsonNode>> it = params.fields(); it.hasNext(); ) {
+                    Map.Entry<String, JsonNode> p = it.next();
+                    sorted.put(p.getKey(), p.getValue().asText());
+                }
+                key.append(sorted);
+            }
+            results.put(key.toString(), node);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,46 @@
+package org.example.collaborative_editor.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.collaborative_editor.benchmark.BenchmarkData;
+import org.example.collaborative_editor.constant.WsMessageType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WsMessage JSON 编解码开销（文档大小）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class WsMessageJsonBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    public int docSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private WsMessage message;
+    private String json;
+
+    @Setup
+    public void setup() throws Exception {
+        message = new WsMessage();
+        message.setType(WsMessageType.EDIT);
+        message.setSender("benchmark");
+        message.setData(BenchmarkData.content(docSize));
+        json = objectMapper.writeValueAsString(message);
+    }
+
+    @Benchmark
+    public String encode() throws Exception {
+        return objectMapper.writeValueAsString(message);
+    }
+
+    @Benchmark
+    public WsMessage decode() throws Exception {
+        return objectMapper.readValue(json, WsMessage.class);
+    }
+}
@@ -0,0 +1,59 @@
+package org.example.collaborative_editor.util;
+
+import org.example.collaborative_editor.benchmark.BenchmarkData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全量 EDIT 转增量时的求差异开销
+ * typing 为末尾之外的单处插入（只走前后缀裁剪），bold 为一段文字前后各插入标签（走 Myers），
+ * rewrite 为大段替换（超出编辑数后退化为一次替换）。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class ContentDiffBenchmark {
+
+    @Param({"4096", "102400"})
+    public int size;
+
+    private String base;
+    private String typing;
+    private String bold;
+    private String rewrite;
+
+    @Setup
+    public void setup() {
+        base = BenchmarkData.content(size);
+        int mid = size / 2;
+        typing = base.substring(0, mid) + "x" + base.substring(mid);
+        int end = Math.min(size, mid + 2000);
+        bold = base.substring(0, mid) + "<b>" + base.substring(mid, end) + "</b>" + base.substring(end);
+        rewrite = base.substring(0, mid) + new StringBuilder(base.substring(mid, end)).reverse() + base.substring(end);
+    }
+
+    @Benchmark
+    public List<ContentDiff.Op> typing() {
+        return ContentDiff.diff(base, typing, 256, System.nanoTime() + 1_000_000L);
+    }
+
+    @Benchmark
+    public List<ContentDiff.Op> bold() {
+        return ContentDiff.diff(base, bold, 256, System.nanoTime() + 1_000_000L);
+    }
+
+    @Benchmark
+    public List<ContentDiff.Op> rewrite() {
+        return ContentDiff.diff(base, rewrite, 256, System.nanoTime() + 1_000_000L);
+    }
+
+    @Benchmark
+    public int hash() {
+        return ContentDiff.hash(base);
+    }
+}
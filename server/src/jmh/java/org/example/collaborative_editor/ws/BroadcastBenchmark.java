@@ -0,0 +1,66 @@
+package org.example.collaborative_editor.ws;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.websocket.Session;
+import org.example.collaborative_editor.benchmark.BenchmarkData;
+import org.example.collaborative_editor.constant.WsMessageType;
+import org.example.collaborative_editor.dto.WsMessage;
+import org.example.collaborative_editor.metrics.EditorMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EditorServer.broadcast 扇出开销（房间人数 × 文档大小）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class BroadcastBenchmark {
+
+    @Param({"10", "100", "500"})
+    public int roomSize;
+
+    @Param({"1024", "65536"})
+    public int docSize;
+
+    private EditorServer server;
+    private Session sender;
+    private String frame;
+
+    @Setup
+    public void setup() throws Exception {
+        server = new EditorServer();
+        server.setObjectMapper(new ObjectMapper());
+        EditorMetrics metrics = new EditorMetrics(new SimpleMeterRegistry(), false);
+        server.setEditorMetrics(metrics);
+        // 热点阈值设为最大值，测量发送方线程上的线性扇出
+        server.setFanoutExecutor(new FanoutExecutor(metrics, Integer.MAX_VALUE, 1, 1024));
+
+        String docId = UUID.randomUUID().toString();
+        for (int i = 0; i < roomSize; i++) {
+            Session session = MockSessions.create("s" + i, docId, "user" + i);
+            EditorServer.joinRoom(docId, session);
+            if (i == 0) {
+                sender = session;
+            }
+        }
+
+        WsMessage msg = new WsMessage();
+        msg.setType(WsMessageType.EDIT);
+        msg.setSender("user0");
+        msg.setData(BenchmarkData.content(docSize));
+        frame = new ObjectMapper().writeValueAsString(msg);
+    }
+
+    @Benchmark
+    public long broadcast() {
+        EditorServer.broadcast(frame, sender);
+        return MockSessions.SENT_CHARS.get();
+    }
+}
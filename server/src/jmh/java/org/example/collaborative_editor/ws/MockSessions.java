@@ -0,0 +1,52 @@
+package org.example.collaborative_editor.ws;
+
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.Session;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基准测试用的 WebSocket Session 桩
+ * sendText 只累计发送字节数，不做任何网络 IO。
+ */
+public final class MockSessions {
+
+    /**
+     * 所有桩 Session 累计"发送"的字符数，防止发送被 JIT 消除
+     */
+    public static final AtomicLong SENT_CHARS = new AtomicLong();
+
+    private MockSessions() {
+    }
+
+    public static Session create(String id, String docId, String username) {
+        Map<String, Object> userProperties = new HashMap<>();
+        userProperties.put("docId", docId);
+        userProperties.put("username", username);
+
+        RemoteEndpoint.Basic basic = (RemoteEndpoint.Basic) Proxy.newProxyInstance(
+                MockSessions.class.getClassLoader(), new Class<?>[]{RemoteEndpoint.Basic.class},
+                (proxy, method, args) -> {
+                    if ("sendText".equals(method.getName())) {
+                        SENT_CHARS.addAndGet(((String) args[0]).length());
+                    }
+                    return null;
+                });
+
+        return (Session) Proxy.newProxyInstance(
+                MockSessions.class.getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getId" -> id;
+                    case "isOpen" -> true;
+                    case "getUserProperties" -> userProperties;
+                    case "getBasicRemote" -> basic;
+                    case "hashCode" -> id.hashCode();
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "MockSession[" + id + "]";
+                    default -> null;
+                });
+    }
+}
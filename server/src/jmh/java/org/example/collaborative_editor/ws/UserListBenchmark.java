@@ -0,0 +1,46 @@
+package org.example.collaborative_editor.ws;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.websocket.Session;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 新用户加入时 USER_LIST 的构建与序列化开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class UserListBenchmark {
+
+    @Param({"10", "100", "500"})
+    public int roomSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private CopyOnWriteArraySet<Session> room;
+
+    @Setup
+    public void setup() {
+        room = new CopyOnWriteArraySet<>();
+        for (int i = 0; i < roomSize; i++) {
+            // 每人开两个标签页，验证去重
+            room.add(MockSessions.create("s" + i, "doc", "user" + (i / 2)));
+        }
+    }
+
+    @Benchmark
+    public List<String> build() {
+        return EditorServer.buildUserList(room);
+    }
+
+    @Benchmark
+    public String buildAndSerialize() throws Exception {
+        return objectMapper.writeValueAsString(EditorServer.buildUserList(room));
+    }
+}
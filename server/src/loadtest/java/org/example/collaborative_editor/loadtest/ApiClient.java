@@ -0,0 +1,92 @@
+package org.example.collaborative_editor.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * 压测准备阶段使用的 REST 客户端：注册、登录、建文档、邀请协作者
+ */
+public class ApiClient {
+
+    private final String baseUrl;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public ApiClient(String baseUrl, HttpClient httpClient) {
+        this.baseUrl = baseUrl;
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * 注册并登录，返回 JWT
+     */
+    public String registerAndLogin(String username, String password) throws IOException, InterruptedException {
+        post("/api/auth/register", null, Map.of("username", username, "password", password, "nickname", username));
+        JsonNode data = post("/api/auth/login", null, Map.of("username", username, "password", password));
+        return data.path("token").asText();
+    }
+
+    public String createDocument(String token, String title) throws IOException, InterruptedException {
+        return post("/api/doc", token, Map.of("title", title)).path("docId").asText();
+    }
+
+    public String createInviteCode(String token, String docId) throws IOException, InterruptedException {
+        return post("/api/doc/" + docId + "/invite", token, Map.of()).asText();
+    }
+
+    public void join(String token, String code) throws IOException, InterruptedException {
+        post("/api/doc/join", token, Map.of("code", code));
+    }
+
+    /**
+     * 读取服务端堆内存占用（字节，各堆内存区之和），Actuator 不可用时返回 -1。
+     * 使用无需登录的 /actuator/prometheus，/actuator/metrics 只对管理员开放
+     */
+    public double serverHeapUsed() {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/prometheus"))
+                    .timeout(Duration.ofSeconds(5))
+                    .GET()
+                    .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return -1;
+            }
+            double used = 0;
+            boolean found = false;
+            for (String line : response.body().split("\n")) {
+                if (line.startsWith("jvm_memory_used_bytes{") && line.contains("area=\"heap\"")) {
+                    used += Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1));
+                    found = true;
+                }
+            }
+            return found ? used : -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private JsonNode post(String path, String token, Object body) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        HttpResponse<String> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+        JsonNode result = objectMapper.readTree(response.body());
+        if (response.statusCode() != 200 || result.path("code").asInt() != 200) {
+            throw new IOException(path + " 调用失败: " + response.statusCode() + " " + response.body());
+        }
+        return result.path("data");
+    }
+}
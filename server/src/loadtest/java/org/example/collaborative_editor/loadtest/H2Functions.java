@@ -0,0 +1,29 @@
+package org.example.collaborative_editor.loadtest;
+
+/**
+ * 压测用 H2 缺少的 MySQL 函数，由 schema-loadtest.sql 以 CREATE ALIAS 注册
+ */
+public final class H2Functions {
+
+    private H2Functions() {
+    }
+
+    /**
+     * MySQL FIND_IN_SET：str 在逗号分隔的 list 中的位置（从 1 开始），不存在时为 0，任一参数为 NULL 时为 NULL
+     */
+    public static Integer findInSet(String str, String list) {
+        if (str == null || list == null) {
+            return null;
+        }
+        if (list.isEmpty()) {
+            return 0;
+        }
+        String[] items = list.split(",", -1);
+        for (int i = 0; i < items.length; i++) {
+            if (items[i].equals(str)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,306 @@
+package org.example.collaborative_editor.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 端到端 WebSocket 压测工具
+ * 在若干文档上打开大量 /editor/{docId} 会话，按配比发送 EDIT / CURSOR / PING，
+ * 统计编辑到达同文档其他用户的 p50/p99/p999 延迟、吞吐量和服务端堆内存。
+ *
+ * 参数（--key=value）:
+ * baseUrl   后端地址，默认 http://localhost:8080
+ * users     用户数，默认 100
+ * docs      文档数，默认 20
+ * sessions  WebSocket 会话总数，默认 1000（会话 i 连接文档 i % docs）
+ * docSize   EDIT 内容字符数，默认 2048
+ * rate      每个会话每秒消息数，默认 2
+ * mix       消息配比，默认 edit:60,cursor:30,ping:10
+ * rampUp    建连爬坡秒数，默认 20
+ * warmup    预热秒数（不计入统计），默认 10
+ * duration  统计秒数，默认 60
+ * interval  区间报告间隔秒数，默认 5
+ * report    JSON 报告输出路径，默认 target/loadtest-report.json
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        String baseUrl = options.getOrDefault("baseUrl", "http://localhost:8080");
+        int users = intOption(options, "users", 100);
+        int docs = intOption(options, "docs", 20);
+        int sessions = intOption(options, "sessions", 1000);
+        int docSize = intOption(options, "docSize", 2048);
+        double rate = Double.parseDouble(options.getOrDefault("rate", "2"));
+        LoadSession.MessageMix mix = LoadSession.MessageMix.parse(options.getOrDefault("mix", "edit:60,cursor:30,ping:10"));
+        int rampUp = intOption(options, "rampUp", 20);
+        int warmup = intOption(options, "warmup", 10);
+        int duration = intOption(options, "duration", 60);
+        int interval = intOption(options, "interval", 5);
+        String reportPath = options.getOrDefault("report", "target/loadtest-report.json");
+
+        ExecutorService httpExecutor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(httpExecutor)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        ApiClient api = new ApiClient(baseUrl, httpClient);
+        LoadStats stats = new LoadStats();
+
+        // 1. 准备用户与文档
+        String runId = Long.toString(System.currentTimeMillis() % 2176782336L, 36);
+        System.out.printf("准备数据: users=%d docs=%d sessions=%d runId=%s%n", users, docs, sessions, runId);
+        String[] tokens = registerUsers(api, runId, users);
+        String[] docIds = new String[docs];
+        String[] inviteCodes = new String[docs];
+        for (int d = 0; d < docs; d++) {
+            String ownerToken = tokens[d % users];
+            docIds[d] = api.createDocument(ownerToken, "loadtest-" + runId + "-" + d);
+            inviteCodes[d] = api.createInviteCode(ownerToken, docIds[d]);
+        }
+        joinCollaborators(api, tokens, inviteCodes, users, docs, sessions);
+
+        // 2. 按爬坡速率建立连接
+        String wsBaseUrl = baseUrl.replaceFirst("^http", "ws");
+        List<LoadSession> loadSessions = new ArrayList<>(sessions);
+        List<CompletableFuture<?>> connects = new ArrayList<>(sessions);
+        long rampNanosPerSession = sessions == 0 ? 0 : TimeUnit.SECONDS.toNanos(rampUp) / sessions;
+        long rampStart = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            int user = (i / docs) % users;
+            LoadSession session = new LoadSession(i, "lt" + runId + "_" + user, stats);
+            loadSessions.add(session);
+            long wait = rampStart + i * rampNanosPerSession - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            connects.add(session.connect(httpClient, wsBaseUrl, docIds[i % docs], tokens[user]));
+        }
+        try {
+            CompletableFuture.allOf(connects.toArray(CompletableFuture<?>[]::new)).get(60, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            // 失败的连接已计入 connectFailed
+        }
+        System.out.printf("建连完成: opened=%d failed=%d%n", stats.opened.sum(), stats.connectFailed.sum());
+
+        // 3. 按速率驱动消息
+        String body = body(docSize);
+        ScheduledExecutorService driver = Executors.newScheduledThreadPool(4);
+        long periodMicros = (long) (1_000_000 / rate);
+        List<ScheduledFuture<?>> ticks = new ArrayList<>(sessions);
+        for (LoadSession session : loadSessions) {
+            long initialDelay = ThreadLocalRandom.current().nextLong(periodMicros);
+            ticks.add(driver.scheduleAtFixedRate(() -> session.tick(mix, body), initialDelay, periodMicros, TimeUnit.MICROSECONDS));
+        }
+
+        System.out.printf("预热 %d 秒...%n", warmup);
+        TimeUnit.SECONDS.sleep(warmup);
+        stats.startRecording();
+        stats.interval();
+
+        double heapMax = 0;
+        double heapSum = 0;
+        int heapSamples = 0;
+        long start = System.nanoTime();
+        long elapsed = 0;
+        while (elapsed < duration) {
+            int step = (int) Math.min(interval, duration - elapsed);
+            TimeUnit.SECONDS.sleep(step);
+            elapsed += step;
+            Histogram h = stats.interval();
+            double heap = api.serverHeapUsed();
+            if (heap >= 0) {
+                heapMax = Math.max(heapMax, heap);
+                heapSum += heap;
+                heapSamples++;
+            }
+            System.out.printf("[%4ds] open=%d edits=%d delivered=%d p50=%.2fms p99=%.2fms p999=%.2fms heap=%s%n",
+                    elapsed, stats.opened.sum() - stats.closedByServer.sum(), stats.sentEdit.sum(), h.getTotalCount(),
+                    millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(99)),
+                    millis(h.getValueAtPercentile(99.9)), heap >= 0 ? mb(heap) : "n/a");
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        // 4. 停止发送，等待在途消息到达后关闭
+        ticks.forEach(t -> t.cancel(false));
+        driver.shutdown();
+        TimeUnit.SECONDS.sleep(2);
+        stats.interval();
+        loadSessions.forEach(LoadSession::close);
+
+        Map<String, Object> report = report(options, stats, seconds, heapMax, heapSamples == 0 ? -1 : heapSum / heapSamples);
+        printReport(report);
+        File reportFile = new File(reportPath);
+        if (reportFile.getParentFile() != null) {
+            reportFile.getParentFile().mkdirs();
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(reportFile, report);
+        System.out.println("报告已写入: " + reportFile.getAbsolutePath());
+
+        TimeUnit.SECONDS.sleep(1);
+        httpExecutor.shutdownNow();
+        System.exit(0);
+    }
+
+    private static String[] registerUsers(ApiClient api, String runId, int users) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> futures = new ArrayList<>(users);
+            for (int u = 0; u < users; u++) {
+                String username = "lt" + runId + "_" + u;
+                futures.add(pool.submit(() -> api.registerAndLogin(username, "loadtest")));
+            }
+            String[] tokens = new String[users];
+            for (int u = 0; u < users; u++) {
+                tokens[u] = futures.get(u).get();
+            }
+            return tokens;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 让每个会话对应的用户成为该文档的协作者
+     */
+    private static void joinCollaborators(ApiClient api, String[] tokens, String[] inviteCodes,
+                                          int users, int docs, int sessions) throws Exception {
+        Set<Long> pairs = new HashSet<>();
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < sessions; i++) {
+                int doc = i % docs;
+                int user = (i / docs) % users;
+                if (user == doc % users || !pairs.add((long) user * docs + doc)) {
+                    continue;
+                }
+                futures.add(pool.submit(() -> {
+                    api.join(tokens[user], inviteCodes[doc]);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 生成可直接嵌入 JSON 字符串的文档内容（固定种子，不含需要转义的字符）
+     */
+    private static String body(int chars) {
+        Random random = new Random(20240501L);
+        StringBuilder sb = new StringBuilder(chars);
+        while (sb.length() < chars) {
+            sb.append(random.nextInt(10) == 0 ? ' ' : (char) ('a' + random.nextInt(26)));
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, Object> report(Map<String, String> options, LoadStats stats, double seconds,
+                                              double heapMax, double heapAvg) {
+        Histogram h = stats.total();
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("count", h.getTotalCount());
+        latency.put("p50Ms", millis(h.getValueAtPercentile(50)));
+        latency.put("p90Ms", millis(h.getValueAtPercentile(90)));
+        latency.put("p99Ms", millis(h.getValueAtPercentile(99)));
+        latency.put("p999Ms", millis(h.getValueAtPercentile(99.9)));
+        latency.put("maxMs", millis(h.getMaxValue()));
+
+        Map<String, Object> throughput = new LinkedHashMap<>();
+        long sent = stats.sentEdit.sum() + stats.sentCursor.sum() + stats.sentPing.sum();
+        throughput.put("sentPerSec", sent / seconds);
+        throughput.put("editsPerSec", stats.sentEdit.sum() / seconds);
+        throughput.put("cursorsPerSec", stats.sentCursor.sum() / seconds);
+        throughput.put("pingsPerSec", stats.sentPing.sum() / seconds);
+        throughput.put("receivedPerSec", stats.received.sum() / seconds);
+        throughput.put("editDeliveriesPerSec", stats.editDelivered.sum() / seconds);
+        throughput.put("outboundMBps", stats.sentBytes.sum() / seconds / 1048576);
+        throughput.put("inboundMBps", stats.receivedBytes.sum() / seconds / 1048576);
+
+        Map<String, Object> sessions = new LinkedHashMap<>();
+        sessions.put("opened", stats.opened.sum());
+        sessions.put("connectFailed", stats.connectFailed.sum());
+        sessions.put("closedByServer", stats.closedByServer.sum());
+        sessions.put("errors", stats.errors.sum());
+        sessions.put("sendFailed", stats.sendFailed.sum());
+        sessions.put("skippedBackpressure", stats.skipped.sum());
+        Map<String, Long> reasons = new HashMap<>();
+        stats.closeReasons.forEach((k, v) -> reasons.put(k, v.sum()));
+        sessions.put("closeReasons", reasons);
+
+        Map<String, Object> heap = new LinkedHashMap<>();
+        heap.put("maxMB", heapMax / 1048576);
+        heap.put("avgMB", heapAvg < 0 ? -1 : heapAvg / 1048576);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", options);
+        report.put("durationSec", seconds);
+        report.put("sessions", sessions);
+        report.put("editLatency", latency);
+        report.put("throughput", throughput);
+        report.put("serverHeap", heap);
+        return report;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void printReport(Map<String, Object> report) {
+        System.out.println();
+        System.out.println("========== 压测报告 ==========");
+        for (String section : List.of("sessions", "editLatency", "throughput", "serverHeap")) {
+            System.out.println(section + ":");
+            ((Map<String, Object>) report.get(section)).forEach((k, v) ->
+                    System.out.printf("  %-22s %s%n", k, v instanceof Double d ? String.format("%.3f", d) : v));
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                int eq = arg.indexOf('=');
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+
+    private static int intOption(Map<String, String> options, String key, int defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static String mb(double bytes) {
+        return String.format("%.1fMB", bytes / 1048576);
+    }
+}
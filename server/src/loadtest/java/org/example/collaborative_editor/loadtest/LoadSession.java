@@ -0,0 +1,180 @@
+package org.example.collaborative_editor.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个压测 WebSocket 会话
+ * EDIT 内容以 "#lt <发送时刻 nanoTime>" 开头，接收方据此计算编辑到达同文档其他用户的延迟。
+ */
+public class LoadSession implements WebSocket.Listener {
+
+    static final String STAMP = "#lt ";
+
+    private static final String STAMP_FIELD = "\"data\":\"" + STAMP;
+
+    private final int index;
+    private final String username;
+    private final LoadStats stats;
+    private final StringBuilder partial = new StringBuilder();
+
+    private volatile WebSocket webSocket;
+    private volatile CompletableFuture<WebSocket> lastSend = CompletableFuture.completedFuture(null);
+    private volatile boolean closed;
+    private final AtomicLong seq = new AtomicLong();
+
+    public LoadSession(int index, String username, LoadStats stats) {
+        this.index = index;
+        this.username = username;
+        this.stats = stats;
+    }
+
+    public CompletableFuture<WebSocket> connect(HttpClient httpClient, String wsBaseUrl, String docId, String token) {
+        URI uri = URI.create(wsBaseUrl + "/editor/" + docId + "?token=" + token
+                + "&username=" + URLEncoder.encode(username, StandardCharsets.UTF_8));
+        return httpClient.newWebSocketBuilder()
+                .connectTimeout(Duration.ofSeconds(30))
+                .buildAsync(uri, this)
+                .whenComplete((ws, e) -> {
+                    if (e == null) {
+                        webSocket = ws;
+                        stats.opened.increment();
+                    } else {
+                        closed = true;
+                        stats.connectFailed.increment();
+                    }
+                });
+    }
+
+    /**
+     * 按消息配比发送一条消息；上一条尚未发送完成时跳过（客户端背压）
+     */
+    public void tick(MessageMix mix, String body) {
+        WebSocket ws = webSocket;
+        if (ws == null || closed) {
+            return;
+        }
+        if (!lastSend.isDone()) {
+            stats.skipped.increment();
+            return;
+        }
+        String type = mix.next();
+        String json;
+        switch (type) {
+            case "EDIT" -> {
+                String data = STAMP + System.nanoTime() + " " + index + ":" + seq.incrementAndGet() + "\\n" + body;
+                json = "{\"type\":\"EDIT\",\"sender\":\"" + username + "\",\"data\":\"" + data + "\"}";
+                stats.sentEdit.increment();
+            }
+            case "CURSOR" -> {
+                ThreadLocalRandom r = ThreadLocalRandom.current();
+                json = "{\"type\":\"CURSOR\",\"sender\":\"" + username + "\",\"data\":\"{\\\"line\\\":"
+                        + r.nextInt(100) + ",\\\"ch\\\":" + r.nextInt(80) + "}\"}";
+                stats.sentCursor.increment();
+            }
+            default -> {
+                json = "{\"type\":\"PING\",\"sender\":\"system\",\"data\":\"ping\"}";
+                stats.sentPing.increment();
+            }
+        }
+        stats.sentBytes.add(json.length());
+        lastSend = ws.sendText(json, true).exceptionally(e -> {
+            stats.sendFailed.increment();
+            return null;
+        });
+    }
+
+    public void close() {
+        closed = true;
+        WebSocket ws = webSocket;
+        if (ws != null) {
+            ws.sendClose(WebSocket.NORMAL_CLOSURE, "done").exceptionally(e -> null);
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket ws, CharSequence data, boolean last) {
+        long now = System.nanoTime();
+        String frame;
+        if (!last || partial.length() > 0) {
+            partial.append(data);
+            if (!last) {
+                ws.request(1);
+                return null;
+            }
+            frame = partial.toString();
+            partial.setLength(0);
+        } else {
+            frame = data.toString();
+        }
+
+        stats.received.increment();
+        stats.receivedBytes.add(frame.length());
+        int i = frame.indexOf(STAMP_FIELD);
+        if (i >= 0) {
+            int start = i + STAMP_FIELD.length();
+            int end = frame.indexOf(' ', start);
+            if (end > start) {
+                long sentAt = Long.parseLong(frame, start, end, 10);
+                stats.recordEditLatency(now - sentAt);
+            }
+        }
+        ws.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket ws, int statusCode, String reason) {
+        if (!closed) {
+            closed = true;
+            stats.closedByServer.increment();
+            if (statusCode != WebSocket.NORMAL_CLOSURE) {
+                stats.recordCloseReason(statusCode + " " + reason);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket ws, Throwable error) {
+        closed = true;
+        stats.errors.increment();
+    }
+
+    /**
+     * EDIT / CURSOR / PING 配比
+     */
+    public record MessageMix(int edit, int cursor, int ping) {
+
+        public static MessageMix parse(String spec) {
+            int edit = 0, cursor = 0, ping = 0;
+            for (String part : spec.split(",")) {
+                String[] kv = part.split(":");
+                int weight = Integer.parseInt(kv[1].trim());
+                switch (kv[0].trim().toLowerCase()) {
+                    case "edit" -> edit = weight;
+                    case "cursor" -> cursor = weight;
+                    case "ping" -> ping = weight;
+                    default -> throw new IllegalArgumentException("未知消息类型: " + kv[0]);
+                }
+            }
+            return new MessageMix(edit, cursor, ping);
+        }
+
+        String next() {
+            int r = ThreadLocalRandom.current().nextInt(edit + cursor + ping);
+            if (r < edit) {
+                return "EDIT";
+            }
+            return r < edit + cursor ? "CURSOR" : "PING";
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.collaborative_editor.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 压测统计：计数器 + 编辑到达延迟直方图
+ */
+public class LoadStats {
+
+    final LongAdder opened = new LongAdder();
+    final LongAdder connectFailed = new LongAdder();
+    final LongAdder closedByServer = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    final LongAdder sentEdit = new LongAdder();
+    final LongAdder sentCursor = new LongAdder();
+    final LongAdder sentPing = new LongAdder();
+    final LongAdder sentBytes = new LongAdder();
+    final LongAdder sendFailed = new LongAdder();
+    final LongAdder skipped = new LongAdder();
+    final LongAdder received = new LongAdder();
+    final LongAdder receivedBytes = new LongAdder();
+    final LongAdder editDelivered = new LongAdder();
+
+    final Map<String, LongAdder> closeReasons = new ConcurrentHashMap<>();
+
+    /**
+     * 1 微秒 ~ 60 秒，3 位有效数字
+     */
+    private final Recorder latencyRecorder = new Recorder(TimeUnit.SECONDS.toNanos(60), 3);
+
+    private final Histogram total = new Histogram(TimeUnit.SECONDS.toNanos(60), 3);
+
+    private volatile boolean recording;
+
+    void recordEditLatency(long nanos) {
+        editDelivered.increment();
+        if (recording && nanos > 0) {
+            latencyRecorder.recordValue(Math.min(nanos, TimeUnit.SECONDS.toNanos(60)));
+        }
+    }
+
+    void recordCloseReason(String reason) {
+        closeReasons.computeIfAbsent(reason, r -> new LongAdder()).increment();
+    }
+
+    /**
+     * 预热结束后开始记录延迟，并清空预热期间的计数
+     */
+    void startRecording() {
+        latencyRecorder.reset();
+        sentEdit.reset();
+        sentCursor.reset();
+        sentPing.reset();
+        sentBytes.reset();
+        received.reset();
+        receivedBytes.reset();
+        editDelivered.reset();
+        skipped.reset();
+        recording = true;
+    }
+
+    /**
+     * 取出自上次调用以来的区间直方图，并累加到总直方图
+     */
+    Histogram interval() {
+        Histogram interval = latencyRecorder.getIntervalHistogram();
+        total.add(interval);
+        return interval;
+    }
+
+    Histogram total() {
+        return total;
+    }
+}
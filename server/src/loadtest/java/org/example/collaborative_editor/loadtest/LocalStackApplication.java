@@ -0,0 +1,40 @@
+package org.example.collaborative_editor.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.collaborative_editor.CollabEditorApplication;
+import org.springframework.boot.SpringApplication;
+import redis.embedded.RedisServer;
+
+/**
+ * 本地压测启动入口
+ * 先启动内嵌 Redis，再以 loadtest 配置（H2 MySQL 模式）启动后端，无需安装 MySQL / Redis。
+ */
+@Slf4j
+public class LocalStackApplication {
+
+    public static void main(String[] args) throws Exception {
+        int port = Integer.getInteger("loadtest.redis.port", 6390);
+        RedisServer redisServer = RedisServer.newRedisServer()
+                .port(port)
+                .setting("bind 127.0.0.1")
+                .setting("maxmemory 2gb")
+                .setting("save \"\"")
+                .setting("appendonly no")
+                .build();
+        redisServer.start();
+        log.warn("内嵌 Redis 已启动: port={}", port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                redisServer.stop();
+            } catch (Exception e) {
+                log.warn("停止内嵌 Redis 失败", e);
+            }
+        }));
+
+        // 命令行参数优先级高于 application.properties 中的 spring.profiles.active=dev
+        String[] appArgs = new String[args.length + 1];
+        appArgs[0] = "--spring.profiles.active=loadtest";
+        System.arraycopy(args, 0, appArgs, 1, args.length);
+        SpringApplication.run(CollabEditorApplication.class, appArgs);
+    }
+}
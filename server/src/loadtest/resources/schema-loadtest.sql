@@ -0,0 +1,63 @@
+-- ===========================
+-- 压测用 H2 (MySQL 模式) 表结构，与 scripts/init.sql 保持一致
+-- ===========================
+
+CREATE TABLE IF NOT EXISTS `user` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT,
+    `username` VARCHAR(50) NOT NULL,
+    `password` VARCHAR(255) NOT NULL,
+    `nickname` VARCHAR(50) DEFAULT NULL,
+    `email` VARCHAR(100) DEFAULT NULL,
+    `avatar` VARCHAR(255) DEFAULT NULL,
+    `status` TINYINT NOT NULL DEFAULT 1,
+    `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    `updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_username` (`username`),
+    UNIQUE KEY `uk_email` (`email`)
+);
+
+CREATE TABLE IF NOT EXISTS `document` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT,
+    `doc_id` VARCHAR(64) NOT NULL,
+    `title` VARCHAR(255) NOT NULL DEFAULT '无标题文档',
+    `content` LONGTEXT,
+    `block_manifest` TEXT,
+    `version` INT NOT NULL DEFAULT 0,
+    `content_edited_at` BIGINT DEFAULT NULL,
+    `owner_id` BIGINT NOT NULL,
+    `status` TINYINT NOT NULL DEFAULT 1,
+    `create_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    `update_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    `create_user` BIGINT DEFAULT NULL,
+    `update_user` BIGINT DEFAULT NULL,
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_doc_id` (`doc_id`),
+    KEY `idx_owner_id` (`owner_id`)
+);
+
+CREATE TABLE IF NOT EXISTS `document_block` (
+    `doc_id` VARCHAR(64) NOT NULL,
+    `block_hash` CHAR(16) NOT NULL,
+    `content` MEDIUMTEXT NOT NULL,
+    PRIMARY KEY (`doc_id`, `block_hash`)
+);
+
+CREATE TABLE IF NOT EXISTS `collaborator` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT,
+    `doc_id` VARCHAR(64) NOT NULL,
+    `user_id` BIGINT NOT NULL,
+    `permission` VARCHAR(16) NOT NULL DEFAULT 'edit',
+    `create_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_doc_user` (`doc_id`, `user_id`),
+    KEY `idx_user_id` (`user_id`)
+);
+
+CREATE TABLE IF NOT EXISTS `replica_heartbeat` (
+    `id` INT NOT NULL,
+    `beat` BIGINT NOT NULL,
+    PRIMARY KEY (`id`)
+);
+
+CREATE ALIAS IF NOT EXISTS FIND_IN_SET FOR "org.example.collaborative_editor.loadtest.H2Functions.findInSet";
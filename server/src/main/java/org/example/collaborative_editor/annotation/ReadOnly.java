@@ -0,0 +1,15 @@
+package org.example.collaborative_editor.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标识只读的 Mapper 查询，配置了从库时可路由到从库执行
+ * 只用于允许读到稍旧数据的列表类查询；当前用户刚写入过、或在事务中时仍读主库
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadOnly {
+}
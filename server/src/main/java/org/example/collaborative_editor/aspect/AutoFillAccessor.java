@@ -0,0 +1,102 @@
+package org.example.collaborative_editor.aspect;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.collaborative_editor.constant.AutoFillConstant;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.LocalDateTime;
+import java.util.function.BiConsumer;
+
+/**
+ * 公共字段 setter 访问器
+ * 每个实体类只解析一次，通过 LambdaMetafactory 生成 BiConsumer，调用时不再走反射。
+ */
+@Slf4j
+public final class AutoFillAccessor {
+
+    /**
+     * 按实体类缓存访问器，ClassValue 随类卸载自动释放
+     */
+    private static final ClassValue<AutoFillAccessor> CACHE = new ClassValue<>() {
+        @Override
+        protected AutoFillAccessor computeValue(Class<?> type) {
+            return new AutoFillAccessor(type);
+        }
+    };
+
+    private final BiConsumer<Object, Object> setCreateTime;
+    private final BiConsumer<Object, Object> setCreateUser;
+    private final BiConsumer<Object, Object> setUpdateTime;
+    private final BiConsumer<Object, Object> setUpdateUser;
+
+    private AutoFillAccessor(Class<?> entityClass) {
+        this.setCreateTime = resolve(entityClass, AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
+        this.setCreateUser = resolve(entityClass, AutoFillConstant.SET_CREATE_USER, Long.class);
+        this.setUpdateTime = resolve(entityClass, AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
+        this.setUpdateUser = resolve(entityClass, AutoFillConstant.SET_UPDATE_USER, Long.class);
+    }
+
+    /**
+     * 获取实体类对应的访问器（首次调用时解析）
+     */
+    public static AutoFillAccessor of(Class<?> entityClass) {
+        return CACHE.get(entityClass);
+    }
+
+    /**
+     * 插入时填充 4 个公共字段
+     */
+    public void fillInsert(Object entity, LocalDateTime now, Long currentId) {
+        accept(setCreateTime, entity, now);
+        accept(setUpdateTime, entity, now);
+        if (currentId != null) {
+            accept(setCreateUser, entity, currentId);
+            accept(setUpdateUser, entity, currentId);
+        }
+    }
+
+    /**
+     * 更新时填充 2 个公共字段
+     */
+    public void fillUpdate(Object entity, LocalDateTime now, Long currentId) {
+        accept(setUpdateTime, entity, now);
+        if (currentId != null) {
+            accept(setUpdateUser, entity, currentId);
+        }
+    }
+
+    private static void accept(BiConsumer<Object, Object> setter, Object entity, Object value) {
+        if (setter != null) {
+            setter.accept(entity, value);
+        }
+    }
+
+    /**
+     * 将 setter 方法转换为 BiConsumer，实体类缺少该方法时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> resolve(Class<?> entityClass, String name, Class<?> argType) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(entityClass, MethodHandles.lookup());
+            MethodHandle target = lookup.findVirtual(entityClass, name, MethodType.methodType(void.class, argType));
+            CallSite site = LambdaMetafactory.metafactory(
+                    lookup,
+                    "accept",
+                    MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    target,
+                    MethodType.methodType(void.class, entityClass, argType));
+            return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+        } catch (NoSuchMethodException e) {
+            log.warn("实体类 {} 缺少公共字段方法 {}，跳过该字段的自动填充", entityClass.getName(), name);
+            return null;
+        } catch (Throwable e) {
+            log.error("解析公共字段方法失败: {}.{}", entityClass.getName(), name, e);
+            return null;
+        }
+    }
+}
@@ -1,19 +1,24 @@
 package org.example.collaborative_editor.aspect;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.example.collaborative_editor.annotation.AutoFill;
-import org.example.collaborative_editor.constant.AutoFillConstant;
 import org.example.collaborative_editor.context.BaseContext;
 import org.example.collaborative_editor.enumeration.OperationType;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Method;
 import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 自定义切面，实现公共字段自动填充处理逻辑
@@ -21,7 +26,15 @@ import java.time.LocalDateTime;
 @Aspect
 @Component
 @Slf4j
-public class AutoFillAspect {
+@RequiredArgsConstructor
+public class AutoFillAspect implements SmartInitializingSingleton {
+
+    private final ObjectProvider<SqlSessionFactory> sqlSessionFactoryProvider;
+
+    /**
+     * Mapper 方法到数据库操作类型的缓存
+     */
+    private final Map<Method, OperationType> operationTypes = new ConcurrentHashMap<>();
 
     /**
      * 切入点
@@ -32,72 +45,60 @@ public class AutoFillAspect {
 
     /**
      * 前置通知，在通知中进行公共字段的赋值
+     * 操作类型按方法缓存，setter 从 AutoFillAccessor 缓存中获取，调用路径上不再有反射和日志
      */
     @Before("autoFillPointCut()")
     public void autoFill(JoinPoint joinPoint) {
-        log.info("开始进行公共字段自动填充...");
-
-        // 1. 获取到当前被拦截的方法上的数据库操作类型
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature(); // 方法签名对象
-        AutoFill autoFill = signature.getMethod().getAnnotation(AutoFill.class); // 获得方法上的注解对象
-        OperationType operationType = autoFill.value(); // 获得数据库操作类型
-
-        // 2. 获取到当前被拦截的方法的参数--实体对象
+        // 1. 获取到当前被拦截的方法的参数--实体对象
         Object[] args = joinPoint.getArgs();
-        if (args == null || args.length == 0) {
+        if (args == null || args.length == 0 || args[0] == null) {
             return;
         }
 
-        Object entity = args[0];
+        // 2. 获取到当前被拦截的方法上的数据库操作类型
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        OperationType operationType = operationTypes.computeIfAbsent(method,
+                m -> m.getAnnotation(AutoFill.class).value());
 
-        // 3. 准备赋值的数据
+        fill(args[0], operationType);
+    }
+
+    /**
+     * 为实体对象填充公共字段
+     * 如果当前没有登录用户（如定时任务），则不更新操作人字段，由MyBatis的<if>标签控制
+     */
+    private void fill(Object entity, OperationType operationType) {
+        AutoFillAccessor accessor = AutoFillAccessor.of(entity.getClass());
         LocalDateTime now = LocalDateTime.now();
         Long currentId = BaseContext.getCurrentId();
 
-        // 如果当前没有登录用户（如定时任务），则不更新操作人，或者设置为系统用户ID（如0）
-        // 这里选择如果为null则不更新操作人字段，由MyBatis的<if>标签控制
-
-        // 4. 根据当前不同的操作类型，为对应的属性通过反射来赋值
         if (operationType == OperationType.INSERT) {
-            // 为4个公共字段赋值
-            try {
-                Method setCreateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_TIME,
-                        LocalDateTime.class);
-                Method setCreateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_USER,
-                        Long.class);
-                Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME,
-                        LocalDateTime.class);
-                Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER,
-                        Long.class);
-
-                // 通过反射为对象属性赋值
-                setCreateTime.invoke(entity, now);
-                setUpdateTime.invoke(entity, now);
-
-                if (currentId != null) {
-                    setCreateUser.invoke(entity, currentId);
-                    setUpdateUser.invoke(entity, currentId);
-                }
-            } catch (Exception e) {
-                log.error("公共字段自动填充失败", e);
-            }
+            accessor.fillInsert(entity, now, currentId);
         } else if (operationType == OperationType.UPDATE) {
-            // 为2个公共字段赋值
-            try {
-                Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME,
-                        LocalDateTime.class);
-                Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER,
-                        Long.class);
-
-                // 通过反射为对象属性赋值
-                setUpdateTime.invoke(entity, now);
+            accessor.fillUpdate(entity, now, currentId);
+        }
+    }
 
-                if (currentId != null) {
-                    setUpdateUser.invoke(entity, currentId);
+    /**
+     * 启动时遍历已注册的 Mapper，预先解析所有 @AutoFill 方法参数实体的访问器
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        SqlSessionFactory sqlSessionFactory = sqlSessionFactoryProvider.getIfAvailable();
+        if (sqlSessionFactory == null) {
+            return;
+        }
+        int count = 0;
+        for (Class<?> mapper : sqlSessionFactory.getConfiguration().getMapperRegistry().getMappers()) {
+            for (Method method : mapper.getMethods()) {
+                AutoFill autoFill = method.getAnnotation(AutoFill.class);
+                if (autoFill != null && method.getParameterCount() > 0) {
+                    operationTypes.put(method, autoFill.value());
+                    AutoFillAccessor.of(method.getParameterTypes()[0]);
+                    count++;
                 }
-            } catch (Exception e) {
-                log.error("公共字段自动填充失败", e);
             }
         }
+        log.info("公共字段自动填充访问器预热完成，共 {} 个 Mapper 方法", count);
     }
 }
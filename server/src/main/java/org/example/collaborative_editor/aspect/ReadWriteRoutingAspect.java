@@ -0,0 +1,211 @@
+package org.example.collaborative_editor.aspect;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.example.collaborative_editor.cache.TrackedRedisCache;
+import org.example.collaborative_editor.config.ReplicaRoutingDataSource;
+import org.example.collaborative_editor.constant.RedisKeyConstant;
+import org.example.collaborative_editor.context.BaseContext;
+import org.example.collaborative_editor.context.DataSourceContext;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读写分离切面
+ * 1. @ReadOnly 查询：不在事务中、且有从库已追上当前用户最近一次写入时，切换到该从库执行，否则读主库；从库取不到连接时改读主库
+ * 2. 其余写操作（INSERT / UPDATE / DELETE）：记录当前用户的写入时间（主库时钟），保证用户随后的列表查询能读到自己的修改；
+ *    在事务中时于提交后记录，时间点不早于提交，且回滚的写入不记录
+ * 写入时间记在 Redis 中（经客户端缓存读取），用户的下一个请求落到其他节点时同样生效
+ */
+@Aspect
+@Component
+@Slf4j
+@ConditionalOnProperty("codoc.datasource.replica-urls")
+public class ReadWriteRoutingAspect {
+
+    private final ReplicaRoutingDataSource dataSource;
+    private final ObjectProvider<SqlSessionFactory> sqlSessionFactoryProvider;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final TrackedRedisCache trackedRedisCache;
+
+    private final Counter replicaReads;
+    private final Counter primaryReads;
+
+    /**
+     * Mapper 方法是否为写操作的缓存
+     */
+    private final Map<Method, Boolean> writeMethods = new ConcurrentHashMap<>();
+
+    public ReadWriteRoutingAspect(ReplicaRoutingDataSource dataSource,
+                                  ObjectProvider<SqlSessionFactory> sqlSessionFactoryProvider,
+                                  RedisTemplate<String, Object> redisTemplate,
+                                  TrackedRedisCache trackedRedisCache,
+                                  MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        this.sqlSessionFactoryProvider = sqlSessionFactoryProvider;
+        this.redisTemplate = redisTemplate;
+        this.trackedRedisCache = trackedRedisCache;
+        this.replicaReads = readCounter(meterRegistry, "replica");
+        this.primaryReads = readCounter(meterRegistry, "primary");
+    }
+
+    /**
+     * 只读查询切入点
+     */
+    @Pointcut("execution(* org.example.collaborative_editor.mapper.*.*(..)) && @annotation(org.example.collaborative_editor.annotation.ReadOnly)")
+    public void readOnlyPointCut() {
+    }
+
+    /**
+     * 全部 Mapper 方法切入点
+     */
+    @Pointcut("execution(* org.example.collaborative_editor.mapper.*.*(..))")
+    public void mapperPointCut() {
+    }
+
+    @Around("readOnlyPointCut()")
+    public Object route(ProceedingJoinPoint joinPoint) throws Throwable {
+        // 事务中的查询沿用事务已绑定的主库连接
+        String replica = TransactionSynchronizationManager.isActualTransactionActive() ? null : pickReplica();
+        if (replica == null) {
+            primaryReads.increment();
+            return joinPoint.proceed();
+        }
+        DataSourceContext.set(replica);
+        try {
+            Object result = joinPoint.proceed();
+            replicaReads.increment();
+            return result;
+        } catch (Exception e) {
+            // 从库不可用时本次查询改读主库，查询本身的错误照常抛出
+            CannotGetJdbcConnectionException failure = connectionFailure(e);
+            if (failure == null) {
+                throw e;
+            }
+            log.warn("从库 {} 获取连接失败，改读主库: {}", replica, failure.getMessage());
+        } finally {
+            DataSourceContext.clear();
+        }
+        primaryReads.increment();
+        return joinPoint.proceed();
+    }
+
+    @AfterReturning("mapperPointCut()")
+    public void recordWrite(JoinPoint joinPoint) {
+        Long userId = BaseContext.getCurrentId();
+        if (userId == null) {
+            return;
+        }
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        if (!writeMethods.computeIfAbsent(method, this::isWrite)) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            stampWrite(userId);
+            return;
+        }
+        // 同一事务只登记一次，提交后记录
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, userId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                stampWrite(userId);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ReadWriteRoutingAspect.this);
+            }
+        });
+    }
+
+    private void stampWrite(Long userId) {
+        try {
+            redisTemplate.opsForValue().set(RedisKeyConstant.USER_LAST_WRITE_PREFIX + userId,
+                    String.valueOf(dataSource.primaryTimeMillis()),
+                    dataSource.readYourWritesWindowMs(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("记录用户 {} 写入时间失败: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 选择可读到当前用户最近一次写入的从库，Redis 不可用时读主库
+     */
+    private String pickReplica() {
+        long lastWrite = 0;
+        Long userId = BaseContext.getCurrentId();
+        if (userId != null) {
+            try {
+                String value = trackedRedisCache.get(RedisKeyConstant.USER_LAST_WRITE_PREFIX + userId);
+                if (value != null) {
+                    lastWrite = Long.parseLong(value);
+                }
+            } catch (Exception e) {
+                log.warn("读取用户 {} 写入时间失败，改读主库: {}", userId, e.getMessage());
+                return null;
+            }
+        }
+        return dataSource.pickReplica(lastWrite);
+    }
+
+    /**
+     * 按 MappedStatement 的 SQL 类型判断 Mapper 方法是否写库
+     */
+    private boolean isWrite(Method method) {
+        SqlSessionFactory sqlSessionFactory = sqlSessionFactoryProvider.getIfAvailable();
+        if (sqlSessionFactory == null) {
+            return false;
+        }
+        Configuration configuration = sqlSessionFactory.getConfiguration();
+        String statementId = method.getDeclaringClass().getName() + "." + method.getName();
+        if (!configuration.hasStatement(statementId)) {
+            return false;
+        }
+        SqlCommandType type = configuration.getMappedStatement(statementId).getSqlCommandType();
+        return type == SqlCommandType.INSERT || type == SqlCommandType.UPDATE || type == SqlCommandType.DELETE;
+    }
+
+    /**
+     * MyBatis 会把获取连接失败包装成 MyBatisSystemException，需沿异常链查找
+     */
+    private static CannotGetJdbcConnectionException connectionFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CannotGetJdbcConnectionException failure) {
+                return failure;
+            }
+        }
+        return null;
+    }
+
+    private static Counter readCounter(MeterRegistry meterRegistry, String target) {
+        return Counter.builder("codoc.datasource.reads")
+                .description("@ReadOnly 查询次数：replica 为在从库执行，primary 为读主库（事务中、从库延迟、读己之写或从库不可用）")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+}
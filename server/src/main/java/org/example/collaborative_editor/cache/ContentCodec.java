@@ -0,0 +1,198 @@
+package org.example.collaborative_editor.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Redis 中文档内容的编码
+ * 压缩后的值以 8 字节头开始：0x00 'C' 'Z'、算法编号、原始 UTF-8 长度（int，大端）；
+ * 不以该头开始的值按未压缩的 UTF-8 读取，升级前写入的内容与低于阈值的小内容都是这种格式。
+ * 热数据使用 LZ4（编辑路径上压缩，速度优先），温数据使用 Deflate（很少读取，压缩率优先）。
+ */
+@Component
+@RequiredArgsConstructor
+public class ContentCodec {
+
+    private static final int HEADER_LENGTH = 8;
+
+    private static final byte ALGORITHM_LZ4 = 1;
+
+    private static final byte ALGORITHM_DEFLATE = 2;
+
+    private static final LZ4Compressor LZ4_COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+
+    private static final LZ4SafeDecompressor LZ4_DECOMPRESSOR = LZ4Factory.fastestInstance().safeDecompressor();
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${codoc.redis.compression.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 热数据 UTF-8 长度达到该值才压缩，过小的内容压缩收益不抵解压开销
+     */
+    @Value("${codoc.redis.compression.threshold-bytes:4096}")
+    private int thresholdBytes;
+
+    private Counter rawBytes;
+    private Counter storedBytes;
+    private DistributionSummary ratio;
+
+    @PostConstruct
+    public void init() {
+        rawBytes = Counter.builder("codoc.redis.compression.bytes")
+                .description("写入 Redis 的文档内容字节数：raw 为原始 UTF-8，stored 为实际写入")
+                .tag("stage", "raw")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        storedBytes = Counter.builder("codoc.redis.compression.bytes")
+                .description("写入 Redis 的文档内容字节数：raw 为原始 UTF-8，stored 为实际写入")
+                .tag("stage", "stored")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        ratio = DistributionSummary.builder("codoc.redis.compression.ratio")
+                .description("压缩后与原始大小之比（仅统计达到阈值并压缩写入的值）")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 编码热数据（整体内容或单个块），未达到阈值或压缩无收益时原样写入 UTF-8
+     */
+    public byte[] encode(String content) {
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        byte[] stored = raw;
+        if (enabled && raw.length >= thresholdBytes) {
+            byte[] out = new byte[HEADER_LENGTH + LZ4_COMPRESSOR.maxCompressedLength(raw.length)];
+            int length = LZ4_COMPRESSOR.compress(raw, 0, raw.length, out, HEADER_LENGTH);
+            if (HEADER_LENGTH + length < raw.length) {
+                writeHeader(out, ALGORITHM_LZ4, raw.length);
+                stored = Arrays.copyOf(out, HEADER_LENGTH + length);
+                ratio.record((double) stored.length / raw.length);
+            }
+        }
+        rawBytes.increment(raw.length);
+        storedBytes.increment(stored.length);
+        return stored;
+    }
+
+    /**
+     * 编码温数据，总是压缩，使读取时能与升级前的纯 Deflate 温数据区分
+     */
+    public byte[] encodeWarm(String content) {
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 3));
+            byte[] header = new byte[HEADER_LENGTH];
+            writeHeader(header, ALGORITHM_DEFLATE, raw.length);
+            out.write(header, 0, HEADER_LENGTH);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            byte[] stored = out.toByteArray();
+            rawBytes.increment(raw.length);
+            storedBytes.increment(stored.length);
+            if (raw.length >= thresholdBytes) {
+                ratio.record((double) stored.length / raw.length);
+            }
+            return stored;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 解码热数据，null 原样返回
+     */
+    public String decode(byte[] value) {
+        if (value == null) {
+            return null;
+        }
+        if (!isEncoded(value)) {
+            return new String(value, StandardCharsets.UTF_8);
+        }
+        int length = ByteBuffer.wrap(value, 4, 4).getInt();
+        return switch (value[3]) {
+            case ALGORITHM_LZ4 -> decompressLz4(value, length);
+            case ALGORITHM_DEFLATE -> inflate(value, HEADER_LENGTH, length);
+            default -> throw new IllegalStateException("未知的内容压缩算法: " + value[3]);
+        };
+    }
+
+    /**
+     * 解码温数据；升级前的温数据没有头，整体为 Deflate 数据
+     */
+    public String decodeWarm(byte[] value) {
+        if (value == null) {
+            return null;
+        }
+        return isEncoded(value) ? decode(value) : inflate(value, 0, value.length * 4);
+    }
+
+    private static boolean isEncoded(byte[] value) {
+        // 文档内容是 HTML 文本，不会以 NUL 字符开头
+        return value.length >= HEADER_LENGTH && value[0] == 0 && value[1] == 'C' && value[2] == 'Z';
+    }
+
+    private static void writeHeader(byte[] out, byte algorithm, int rawLength) {
+        out[0] = 0;
+        out[1] = 'C';
+        out[2] = 'Z';
+        out[3] = algorithm;
+        ByteBuffer.wrap(out, 4, 4).putInt(rawLength);
+    }
+
+    private static String decompressLz4(byte[] value, int length) {
+        byte[] raw = new byte[length];
+        try {
+            int n = LZ4_DECOMPRESSOR.decompress(value, HEADER_LENGTH, value.length - HEADER_LENGTH, raw, 0, length);
+            if (n != length) {
+                throw new IllegalStateException("文档内容不完整");
+            }
+        } catch (LZ4Exception e) {
+            throw new IllegalStateException("文档内容解压失败", e);
+        }
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    private static String inflate(byte[] data, int offset, int sizeHint) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, data.length - offset);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, sizeHint));
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && !inflater.finished() && inflater.needsInput()) {
+                    throw new IllegalStateException("温数据不完整");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("温数据解压失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
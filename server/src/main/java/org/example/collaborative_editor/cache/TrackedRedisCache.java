@@ -0,0 +1,175 @@
+package org.example.collaborative_editor.cache;
+
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.support.caching.CacheAccessor;
+import io.lettuce.core.support.caching.CacheFrontend;
+import io.lettuce.core.support.caching.ClientSideCaching;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Redis 客户端缓存（RESP3 CLIENT TRACKING）
+ * 读多写少的字符串 key 在本地保留一份副本，命中时不访问 Redis；任意节点修改或删除该 key 时，
+ * Redis 通过独立连接上的推送消息通知失效。连接断开期间失效通知可能丢失，此时清空本地副本并直接读 Redis，
+ * 重新开启 tracking 后再恢复缓存。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TrackedRedisCache {
+
+    private final LettuceConnectionFactory redisConnectionFactory;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${codoc.redis.client-cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 本地副本数上限，超过后整体清空（key 在 Redis 中仍在，下次读取重新缓存）
+     */
+    @Value("${codoc.redis.client-cache.max-entries:100000}")
+    private int maxEntries;
+
+    private final Map<String, String> entries = new ConcurrentHashMap<>();
+
+    private StatefulRedisConnection<String, String> connection;
+    private CacheFrontend<String, String> frontend;
+    private volatile boolean tracking;
+    private Counter hits;
+    private Counter misses;
+
+    @PostConstruct
+    public void init() {
+        hits = Counter.builder("codoc.redis.client_cache")
+                .description("客户端缓存读取次数：hit 为本地命中，miss 为读取 Redis")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        misses = Counter.builder("codoc.redis.client_cache")
+                .description("客户端缓存读取次数：hit 为本地命中，miss 为读取 Redis")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("codoc.redis.client_cache.size", entries, Map::size)
+                .description("客户端缓存中的 key 数")
+                .register(meterRegistry);
+
+        if (!enabled) {
+            return;
+        }
+        if (!(redisConnectionFactory.getRequiredNativeClient() instanceof RedisClient client)) {
+            log.warn("Redis 集群模式不支持客户端缓存，直接读取 Redis");
+            return;
+        }
+        // 与 RedisTemplate 共用同一个 RedisClient（ClientResources、指标），但使用单独的 RESP3 连接接收失效推送
+        connection = client.connect(StringCodec.UTF8);
+        try {
+            // 失效通知依赖 RESP3 推送，Redis 6 以下或协商为 RESP2 时开启失败，退化为直接读取
+            frontend = ClientSideCaching.enable(new CountingAccessor(), connection, TrackingArgs.Builder.enabled());
+        } catch (RuntimeException e) {
+            log.warn("Redis 客户端缓存开启失败，直接读取 Redis: {}", e.getMessage());
+            return;
+        }
+        tracking = true;
+        client.addListener(new RedisConnectionStateListener() {
+            @Override
+            public void onRedisDisconnected(RedisChannelHandler<?, ?> handler) {
+                if (handler == connection) {
+                    // 断开期间收不到失效通知，停止使用本地副本
+                    tracking = false;
+                    entries.clear();
+                }
+            }
+
+            @Override
+            public void onRedisConnected(RedisChannelHandler<?, ?> handler, SocketAddress address) {
+                if (handler == connection) {
+                    retrack();
+                }
+            }
+        });
+        log.info("Redis 客户端缓存已开启");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (frontend != null) {
+            frontend.close();
+        }
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * 读取字符串 key，本地有副本时直接返回；不存在时返回 null（不存在的 key 不缓存）
+     */
+    public String get(String key) {
+        if (!tracking) {
+            misses.increment();
+            return connection != null ? connection.sync().get(key) : (String) redisTemplate.opsForValue().get(key);
+        }
+        return frontend.get(key);
+    }
+
+    /**
+     * 重连后在新连接上重新开启 tracking，成功前读请求直接访问 Redis
+     */
+    private void retrack() {
+        connection.async().clientTracking(TrackingArgs.Builder.enabled()).whenComplete((result, error) -> {
+            if (error != null) {
+                log.warn("重新开启 Redis 客户端缓存失败，暂时直接读取 Redis: {}", error.getMessage());
+                return;
+            }
+            entries.clear();
+            tracking = true;
+            log.info("Redis 重连后已重新开启客户端缓存");
+        });
+    }
+
+    /**
+     * 本地副本存取，统计命中率并限制条目数
+     */
+    private final class CountingAccessor implements CacheAccessor<String, String> {
+
+        @Override
+        public String get(String key) {
+            String value = entries.get(key);
+            (value != null ? hits : misses).increment();
+            return value;
+        }
+
+        @Override
+        public void put(String key, String value) {
+            if (!tracking) {
+                return;
+            }
+            if (entries.size() >= maxEntries) {
+                entries.clear();
+            }
+            entries.put(key, value);
+        }
+
+        @Override
+        public void evict(String key) {
+            entries.remove(key);
+        }
+    }
+}
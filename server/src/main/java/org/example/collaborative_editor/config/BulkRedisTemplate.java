@@ -0,0 +1,29 @@
+package org.example.collaborative_editor.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * 批量读写专用的 RedisTemplate
+ * 定时落库、降级压缩、分层统计会读写整篇文档或扫描大量 key；Lettuce 默认所有命令共用一条连接，
+ * 这些大响应会排在 EDIT 写入前面。该模板使用独立的连接，批量操作不再阻塞编辑写入。
+ */
+public class BulkRedisTemplate extends RedisTemplate<String, Object> implements DisposableBean {
+
+    /**
+     * 独立创建的连接工厂，随模板一起销毁；与默认模板共用时为 null
+     */
+    private final LettuceConnectionFactory ownedFactory;
+
+    public BulkRedisTemplate(LettuceConnectionFactory ownedFactory) {
+        this.ownedFactory = ownedFactory;
+    }
+
+    @Override
+    public void destroy() {
+        if (ownedFactory != null) {
+            ownedFactory.destroy();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.collaborative_editor.config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 读写分离配置
+ * 配置了 codoc.datasource.replica-urls（逗号分隔）时，按 spring.datasource.* 创建主库连接池、按每个从库地址创建从库连接池，
+ * 并以 ReplicaRoutingDataSource 作为应用唯一的 DataSource（Druid 自动配置随之跳过）；未配置时保持单库。
+ */
+@Configuration
+@Slf4j
+@ConditionalOnProperty("codoc.datasource.replica-urls")
+public class ReadReplicaConfiguration {
+
+    @Bean
+    @Primary
+    public ReplicaRoutingDataSource dataSource(
+            @Value("${spring.datasource.driver-class-name}") String driverClassName,
+            @Value("${spring.datasource.url}") String url,
+            @Value("${spring.datasource.username}") String username,
+            @Value("${spring.datasource.password:}") String password,
+            @Value("${codoc.datasource.replica-urls}") List<String> replicaUrls,
+            @Value("${codoc.datasource.replica-username:${spring.datasource.username}}") String replicaUsername,
+            @Value("${codoc.datasource.replica-password:${spring.datasource.password:}}") String replicaPassword,
+            @Value("${codoc.datasource.max-lag-ms:3000}") long maxLagMs,
+            @Value("${codoc.datasource.read-your-writes-ms:5000}") long readYourWritesMs,
+            @Value("${codoc.datasource.lag-check-ms:1000}") long lagCheckMs,
+            @Value("${codoc.datasource.replica-max-wait-ms:500}") long replicaMaxWaitMs,
+            MeterRegistry meterRegistry) {
+        log.info("开始创建读写分离数据源，从库 {} 个", replicaUrls.size());
+        DataSource primary = druid("primary", driverClassName, url, username, password);
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            DruidDataSource replica = druid("replica-" + i, driverClassName, replicaUrls.get(i).trim(),
+                    replicaUsername, replicaPassword);
+            // 从库宕机时获取连接不能无限等待，超时后由 ReadWriteRoutingAspect 改读主库
+            replica.setMaxWait(replicaMaxWaitMs);
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primary, replicas, maxLagMs, readYourWritesMs, lagCheckMs, meterRegistry);
+    }
+
+    private static DruidDataSource druid(String name, String driverClassName, String url,
+                                         String username, String password) {
+        DruidDataSource dataSource = new DruidDataSource();
+        dataSource.setName(name);
+        dataSource.setDriverClassName(driverClassName);
+        dataSource.setUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        return dataSource;
+    }
+}
@@ -1,9 +1,13 @@
 package org.example.collaborative_editor.config;
 
+import io.lettuce.core.metrics.MicrometerOptions;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
@@ -12,11 +16,45 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
 public class RedisConfiguration {
 
     @Bean
+    @Primary
     public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory) {
         log.info("开始创建redis模板对象...");
         RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
         // 设置redis的连接工厂对象
         redisTemplate.setConnectionFactory(redisConnectionFactory);
+        configureSerializers(redisTemplate);
+        return redisTemplate;
+    }
+
+    /**
+     * 批量操作使用的模板：复制默认连接工厂的配置单独建立连接（共享 ClientResources 与指标），
+     * codoc.redis.bulk-connection.enabled=false 时与默认模板共用连接
+     */
+    @Bean
+    public BulkRedisTemplate bulkRedisTemplate(LettuceConnectionFactory redisConnectionFactory,
+                                               @Value("${codoc.redis.bulk-connection.enabled:true}") boolean dedicated) {
+        LettuceConnectionFactory factory = null;
+        if (dedicated) {
+            if (redisConnectionFactory.getClusterConfiguration() != null) {
+                factory = new LettuceConnectionFactory(redisConnectionFactory.getClusterConfiguration(),
+                        redisConnectionFactory.getClientConfiguration());
+            } else if (redisConnectionFactory.getSentinelConfiguration() != null) {
+                factory = new LettuceConnectionFactory(redisConnectionFactory.getSentinelConfiguration(),
+                        redisConnectionFactory.getClientConfiguration());
+            } else {
+                factory = new LettuceConnectionFactory(redisConnectionFactory.getStandaloneConfiguration(),
+                        redisConnectionFactory.getClientConfiguration());
+            }
+            factory.afterPropertiesSet();
+            factory.start();
+        }
+        BulkRedisTemplate template = new BulkRedisTemplate(factory);
+        template.setConnectionFactory(factory != null ? factory : redisConnectionFactory);
+        configureSerializers(template);
+        return template;
+    }
+
+    private static void configureSerializers(RedisTemplate<String, Object> redisTemplate) {
         // 设置redis key的序列化器
         redisTemplate.setKeySerializer(new StringRedisSerializer());
         // 设置redis value的序列化器
@@ -26,7 +64,14 @@ public class RedisConfiguration {
         redisTemplate.setHashKeySerializer(new StringRedisSerializer());
         // Hash Value 序列化
         redisTemplate.setHashValueSerializer(new StringRedisSerializer());
+    }
 
-        return redisTemplate;
+    /**
+     * Lettuce 命令延迟指标（lettuce.command.completion / firstresponse）
+     * 由 Actuator 自动挂到 RedisTemplate 使用的连接上，这里开启直方图以便 Prometheus 计算分位数
+     */
+    @Bean
+    public MicrometerOptions micrometerOptions() {
+        return MicrometerOptions.builder().histogram(true).build();
     }
 }
@@ -0,0 +1,215 @@
+package org.example.collaborative_editor.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collaborative_editor.context.DataSourceContext;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 读写分离数据源
+ * 默认使用主库；ReadWriteRoutingAspect 为 @ReadOnly 查询选定从库后，通过 DataSourceContext 切换到该从库。
+ * 后台线程每 lag-check-ms 向主库 replica_heartbeat 写入主库的 CURRENT_TIMESTAMP(3) 并从各从库读回，读回的值即该从库已追上的主库时间点：
+ * 落后超过 max-lag-ms 的从库不再使用，用户最近一次写入晚于该时间点时该用户的查询仍走主库（读己之写）。
+ * 心跳、用户写入时间与延迟都以主库时钟计算（最近一次心跳读到的主库时间加上此后经过的单调时间），不受各节点本地时钟偏差影响。
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private static final String REPLICA_PREFIX = "replica-";
+
+    private final DataSource primary;
+
+    private final List<DataSource> replicas;
+
+    private final long maxLagMs;
+
+    private final long readYourWritesMs;
+
+    private final long lagCheckMs;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 各从库已追上的主库时间戳毫秒，0 表示尚未检查成功
+     */
+    private final AtomicLongArray caughtUpTo;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * 最近一次心跳读到的主库时间，尚未读到时为 null
+     */
+    private volatile PrimaryClock primaryClock;
+
+    private ScheduledExecutorService heartbeat;
+
+    /**
+     * @param maxLagMs         从库允许的最大延迟，0 表示不检查延迟（从库不支持心跳表时），此时按 readYourWritesMs 判断读己之写
+     * @param readYourWritesMs 不检查延迟时，用户写入后在该时间内的查询走主库
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, long maxLagMs,
+                                    long readYourWritesMs, long lagCheckMs, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.maxLagMs = maxLagMs;
+        this.readYourWritesMs = readYourWritesMs;
+        this.lagCheckMs = lagCheckMs;
+        this.meterRegistry = meterRegistry;
+        this.caughtUpTo = new AtomicLongArray(replicas.size());
+    }
+
+    /**
+     * 由容器在构造完成后调用：设置并解析目标数据源、注册延迟指标并启动心跳
+     */
+    @Override
+    public void afterPropertiesSet() {
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(REPLICA_PREFIX + i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        super.afterPropertiesSet();
+        for (int i = 0; i < replicas.size(); i++) {
+            int index = i;
+            Gauge.builder("codoc.datasource.replica.lag", this, ds -> ds.lagSeconds(index))
+                    .description("从库落后主库的秒数（按心跳表计算，未检查成功时为 NaN）")
+                    .tag("replica", String.valueOf(i))
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+        if (maxLagMs > 0) {
+            heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "replica-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            });
+            heartbeat.scheduleWithFixedDelay(this::checkLag, lagCheckMs, lagCheckMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return DataSourceContext.get();
+    }
+
+    /**
+     * 选择一个可以读到用户最近一次写入的从库（轮询），没有时返回 null 表示使用主库
+     *
+     * @param lastWriteMillis 当前用户最近一次写入的时间戳毫秒，没有写入记录时为 0
+     */
+    public String pickReplica(long lastWriteMillis) {
+        long now = primaryTimeMillis();
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            int index = (start + i) % replicas.size();
+            long position = maxLagMs > 0 ? caughtUpTo.get(index) : now - readYourWritesMs;
+            if (position > lastWriteMillis && (maxLagMs <= 0 || now - position <= maxLagMs)) {
+                return REPLICA_PREFIX + index;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 当前的主库时间戳毫秒，用作用户写入时间；不检查延迟或尚未读到主库时间时使用本地时钟
+     */
+    public long primaryTimeMillis() {
+        PrimaryClock clock = primaryClock;
+        if (clock == null) {
+            return System.currentTimeMillis();
+        }
+        return clock.millis() + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - clock.nanos());
+    }
+
+    /**
+     * 用户写入标记需要保留的时间：超过后要么从库已追上，要么从库延迟过大不再使用
+     */
+    public long readYourWritesWindowMs() {
+        return Math.max(maxLagMs, readYourWritesMs);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
+        close(primary);
+        for (DataSource replica : replicas) {
+            close(replica);
+        }
+    }
+
+    private void checkLag() {
+        try (Connection connection = primary.getConnection();
+             PreparedStatement clock = connection.prepareStatement(
+                     "SELECT FLOOR(UNIX_TIMESTAMP(CURRENT_TIMESTAMP(3)) * 1000.0)");
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE replica_heartbeat SET beat = ? WHERE id = 1")) {
+            long now;
+            try (ResultSet rs = clock.executeQuery()) {
+                rs.next();
+                now = rs.getLong(1);
+            }
+            primaryClock = new PrimaryClock(now, System.nanoTime());
+            update.setLong(1, now);
+            if (update.executeUpdate() == 0) {
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO replica_heartbeat (id, beat) VALUES (1, ?)")) {
+                    insert.setLong(1, now);
+                    insert.executeUpdate();
+                }
+            }
+        } catch (SQLException e) {
+            // 其他节点同时插入首行时主键冲突，下一轮改为更新
+            log.warn("写入主库心跳失败: {}", e.getMessage());
+        }
+        for (int i = 0; i < replicas.size(); i++) {
+            try (Connection connection = replicas.get(i).getConnection();
+                 PreparedStatement query = connection.prepareStatement(
+                         "SELECT beat FROM replica_heartbeat WHERE id = 1");
+                 ResultSet rs = query.executeQuery()) {
+                caughtUpTo.set(i, rs.next() ? rs.getLong(1) : 0);
+            } catch (SQLException e) {
+                caughtUpTo.set(i, 0);
+                log.warn("读取从库 {} 心跳失败，暂不使用该从库: {}", i, e.getMessage());
+            }
+        }
+    }
+
+    private double lagSeconds(int index) {
+        long position = caughtUpTo.get(index);
+        if (maxLagMs <= 0 || position == 0) {
+            return Double.NaN;
+        }
+        return Math.max(0, primaryTimeMillis() - position) / 1000.0;
+    }
+
+    private static void close(DataSource dataSource) throws Exception {
+        if (dataSource instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    /**
+     * 主库时间戳毫秒及读到它时的本地 nanoTime
+     */
+    private record PrimaryClock(long millis, long nanos) {
+    }
+}
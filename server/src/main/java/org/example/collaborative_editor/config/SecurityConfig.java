@@ -2,6 +2,7 @@ package org.example.collaborative_editor.config;
 
 import lombok.RequiredArgsConstructor;
 import org.example.collaborative_editor.security.JwtAuthenticationFilter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -43,6 +44,9 @@ public class SecurityConfig {
                 // 允许访问的公开接口
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/editor/**").permitAll()  // WebSocket 端点
+                // 监控端点只开放健康检查与 Prometheus 抓取，其余（含 searchindex 重建等写操作）只允许 codoc.actuator.admins 中的用户
+                .requestMatchers("/actuator/health/**", "/actuator/prometheus").permitAll()
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
                 .requestMatchers("/").permitAll()
                 // 其他请求需要认证
                 .anyRequest().authenticated()
@@ -54,8 +58,9 @@ public class SecurityConfig {
     }
     
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${codoc.auth.bcrypt-strength:10}") int strength) {
+        // 调整强度后，旧哈希在用户下次登录时按新强度重新计算（见 PasswordHasher）
+        return new BCryptPasswordEncoder(strength);
     }
     
     @Bean
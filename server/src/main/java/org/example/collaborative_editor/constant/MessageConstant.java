@@ -14,6 +14,7 @@ public class MessageConstant {
     public static final String ACCOUNT_DISABLED = "账号已被禁用";
     public static final String LOGIN_SUCCESS = "登录成功";
     public static final String REGISTER_SUCCESS = "注册成功";
+    public static final String AUTH_BUSY = "登录请求过多，请稍后重试";
 
     // ========== 认证相关 ==========
     public static final String TOKEN_INVALID = "无效的令牌";
@@ -27,9 +28,11 @@ public class MessageConstant {
     public static final String DOCUMENT_UPDATE_SUCCESS = "文档更新成功";
     public static final String DOCUMENT_DELETE_SUCCESS = "文档删除成功";
     public static final String DOCUMENT_NO_PERMISSION = "无权限操作此文档";
+    public static final String SEARCH_DISABLED = "搜索功能未启用";
 
     // ========== 协作相关 ==========
     public static final String INVITE_CODE_INVALID = "邀请码无效或已过期";
+    public static final String PERMISSION_INVALID = "无效的权限类型";
     public static final String COLLABORATOR_EXIST = "该用户已是协作者";
     public static final String COLLABORATOR_NOT_FOUND = "协作者不存在";
     public static final String COLLABORATOR_ADD_SUCCESS = "添加协作者成功";
@@ -0,0 +1,112 @@
+package org.example.collaborative_editor.constant;
+
+/**
+ * Redis Key 常量类
+ */
+public class RedisKeyConstant {
+
+    /**
+     * 文档内容缓存，完整 key 为 doc:{docId}
+     */
+    public static final String DOC_PREFIX = "doc:";
+
+    /**
+     * 大文档分块存储（HASH），完整 key 为 doc_blocks:{docId}
+     * 字段为块哈希 -> 块内容，另有 manifest（当前块清单）与 persisted（已落库的块清单）
+     */
+    public static final String DOC_BLOCKS_PREFIX = "doc_blocks:";
+
+    public static final String BLOCK_MANIFEST_FIELD = "manifest";
+
+    public static final String BLOCK_PERSISTED_FIELD = "persisted";
+
+    /**
+     * 温数据：无人在线的文档压缩后存放（带 TTL），完整 key 为 doc_warm:{docId}
+     */
+    public static final String DOC_WARM_PREFIX = "doc_warm:";
+
+    /**
+     * 热数据最近一次编辑的时间（HASH，docId -> 写入节点的时间戳毫秒，只增不减），与内容在同一脚本中写入；
+     * 编辑日志据此判断 Redis 中的内容是否早于本节点记录的编辑（如故障切换到落后的副本）
+     */
+    public static final String DOC_EDITED_AT = "doc_edited_at";
+
+    /**
+     * 冷文档加载锁，集群内同一时刻只有一个节点从温数据 / MySQL 加载，完整 key 为 doc_load_lock:{docId}
+     */
+    public static final String DOC_LOAD_LOCK_PREFIX = "doc_load_lock:";
+
+    /**
+     * 文档在整个集群中的在线会话数，完整 key 为 doc_online:{docId}
+     */
+    public static final String DOC_ONLINE_PREFIX = "doc_online:";
+
+    /**
+     * 文档所有者 ID（文档不存在时为 -），完整 key 为 doc_owner:{docId}，节点通过客户端缓存读取
+     */
+    public static final String DOC_OWNER_PREFIX = "doc_owner:";
+
+    /**
+     * 协作者权限（不是协作者时为 -），完整 key 为 doc_acl:{docId}:{userId}，节点通过客户端缓存读取
+     */
+    public static final String DOC_ACL_PREFIX = "doc_acl:";
+
+    /**
+     * 邀请码，完整 key 为 invite:{code}；有效期内可重复使用，只在加入文档时读取，不经客户端缓存
+     */
+    public static final String INVITE_PREFIX = "invite:";
+
+    /**
+     * 邀请码值中 docId 与权限的分隔符（旧格式只有 docId，视为 edit）
+     */
+    public static final String INVITE_PERMISSION_SEPARATOR = ":";
+
+    /**
+     * 待同步到 MySQL 的脏文档（ZSET，score 为首次标脏的时间戳毫秒）
+     */
+    public static final String DIRTY_DOCS = "dirty_docs_zset";
+
+    /**
+     * 脏文档最近一次编辑的时间（ZSET，score 为时间戳毫秒），与 DIRTY_DOCS 同时写入和移除，用于判断文档是否已停止编辑
+     */
+    public static final String DIRTY_TOUCHED = "dirty_docs_touched";
+
+    /**
+     * 参与落库的节点心跳（ZSET，score 为最近一次续约的时间戳毫秒）
+     */
+    public static final String SYNC_NODES = "sync_nodes";
+
+    /**
+     * 落库分区租约前缀，值为持有该分区的节点 ID
+     */
+    public static final String SYNC_OWNER_PREFIX = "sync_owner:";
+
+    /**
+     * 文档分层统计结果（HASH，字段如 hot.count / cold.bytes），由持有 0 号落库分区的节点定期计算，各节点读取后更新指标
+     */
+    public static final String DOC_TIER_STATS = "doc_tier_stats";
+
+    /**
+     * 旧版脏文档集合（SET），仅用于升级时迁移
+     */
+    public static final String LEGACY_DIRTY_DOCS = "dirty_docs";
+
+    /**
+     * 需要更新搜索索引的文档（ZSET，score 为落库或元数据变更的时间戳毫秒），各节点按各自的进度增量索引
+     */
+    public static final String SEARCH_CHANGES = "search_changes";
+
+    /**
+     * 已删除文档的 WebSocket 准入票据吊销记录（ZSET，score 为删除时间戳毫秒），只保留票据有效期内的记录
+     */
+    public static final String TICKET_REVOKED = "ticket_revoked";
+
+    /**
+     * 用户最近一次写库的时间戳毫秒前缀，存在期间该用户的只读查询按从库进度决定是否读主库
+     */
+    public static final String USER_LAST_WRITE_PREFIX = "user_last_write:";
+
+    private RedisKeyConstant() {
+        // 私有构造方法，防止实例化
+    }
+}
@@ -11,15 +11,31 @@ public class WsMessageType {
     public static final String EDIT = "EDIT";
 
     /**
-     * 同步消息 - 服务器向新用户同步当前文档内容
+     * 增量编辑消息 - 只发送给连接时携带 delta=1 的客户端，ops 为相对上一条内容的替换列表
+     */
+    public static final String EDIT_DELTA = "EDIT_DELTA";
+
+    /**
+     * 同步消息 - 服务器向新用户同步当前文档内容；客户端发送 SYNC 时服务器重新下发完整内容
      */
     public static final String SYNC = "SYNC";
 
+    /**
+     * 分块同步消息 - 大文档按块顺序下发，客户端拼接后以最后一条 SYNC 结束
+     * 仅发送给连接时携带 chunks=1 的客户端
+     */
+    public static final String SYNC_CHUNK = "SYNC_CHUNK";
+
     /**
      * 光标消息 - 同步用户光标位置（预留）
      */
     public static final String CURSOR = "CURSOR";
 
+    /**
+     * 光标锚点快照 - data 为用户名到纯文本偏移的 JSON，加入时与 EDIT 平移锚点后发送给携带 anchors=1 的客户端
+     */
+    public static final String CURSORS = "CURSORS";
+
     /**
      * 用户加入消息（预留）
      */
@@ -45,11 +61,46 @@ public class WsMessageType {
      */
     public static final String DOC_DELETED = "DOC_DELETED";
 
+    /**
+     * 心跳请求 - 客户端发送
+     */
+    public static final String PING = "PING";
+
+    /**
+     * 心跳响应 - 服务器回复
+     */
+    public static final String PONG = "PONG";
+
+    /**
+     * 重连消息 - 节点下线前通知客户端在 data 毫秒后重连到其他节点
+     */
+    public static final String RECONNECT = "RECONNECT";
+
+    /**
+     * 角色消息 - 连接建立后告知客户端本次连接的权限，data 为 edit 或 view
+     */
+    public static final String ROLE = "ROLE";
+
     /**
      * 系统发送者标识
      */
     public static final String SENDER_SERVER = "server";
 
+    /**
+     * 多路复用连接：订阅文档（频道 ch 为文档 ID），服务端按普通连接的流程发送 ROLE / USER_LIST / SYNC
+     */
+    public static final String SUBSCRIBE = "SUBSCRIBE";
+
+    /**
+     * 多路复用连接：取消订阅文档
+     */
+    public static final String UNSUBSCRIBE = "UNSUBSCRIBE";
+
+    /**
+     * 多路复用连接：服务端关闭了某个频道，data 为 "<关闭码> <原因>"
+     */
+    public static final String CLOSED = "CLOSED";
+
     private WsMessageType() {
         // 私有构造方法，防止实例化
     }
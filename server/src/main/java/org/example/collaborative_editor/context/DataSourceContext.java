@@ -0,0 +1,22 @@
+package org.example.collaborative_editor.context;
+
+/**
+ * 基于ThreadLocal保存当前查询使用的数据源，未设置时使用主库
+ */
+public class DataSourceContext {
+
+    private static final ThreadLocal<String> threadLocal = new ThreadLocal<>();
+
+    public static void set(String key) {
+        threadLocal.set(key);
+    }
+
+    public static String get() {
+        return threadLocal.get();
+    }
+
+    public static void clear() {
+        threadLocal.remove();
+    }
+
+}
@@ -3,10 +3,13 @@ package org.example.collaborative_editor.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.collaborative_editor.common.Result;
+import org.example.collaborative_editor.constant.PermissionConstant;
 import org.example.collaborative_editor.context.BaseContext;
 import org.example.collaborative_editor.dto.CreateDocumentRequest;
 import org.example.collaborative_editor.entity.Document;
+import org.example.collaborative_editor.security.UserPrincipal;
 import org.example.collaborative_editor.service.DocumentService;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import org.example.collaborative_editor.vo.DocumentVO;
@@ -51,6 +54,16 @@ public class DocumentController {
         return Result.success(documentService.listDocuments(userId));
     }
 
+    /**
+     * 全文搜索有权访问的文档
+     */
+    @GetMapping("/search")
+    public Result<java.util.List<DocumentVO>> searchDocuments(@RequestParam("q") String keyword) {
+        Long userId = BaseContext.getCurrentId();
+        log.info("搜索文档, userId: {}, q: {}", userId, keyword);
+        return Result.success(documentService.searchDocuments(userId, keyword));
+    }
+
     /**
      * 删除文档
      */
@@ -65,9 +78,10 @@ public class DocumentController {
      * 生成邀请码
      */
     @PostMapping("/{docId}/invite")
-    public Result<String> createInviteCode(@PathVariable String docId) {
-        log.info("生成邀请码: {}", docId);
-        return Result.success(documentService.createInviteCode(docId));
+    public Result<String> createInviteCode(@PathVariable String docId,
+                                           @RequestParam(defaultValue = PermissionConstant.EDIT) String permission) {
+        log.info("生成邀请码: {}, 权限: {}", docId, permission);
+        return Result.success(documentService.createInviteCode(docId, permission));
     }
 
     /**
@@ -80,6 +94,15 @@ public class DocumentController {
         return Result.success(documentService.joinByInviteCode(code));
     }
 
+    /**
+     * 签发 WebSocket 准入票据，连接时用于代替 Token 与权限查询
+     */
+    @PostMapping("/{docId}/ticket")
+    public Result<String> createTicket(@PathVariable String docId, @AuthenticationPrincipal UserPrincipal principal) {
+        log.debug("签发准入票据: {}, userId: {}", docId, principal.getUserId());
+        return Result.success(documentService.createTicket(docId, principal.getUserId(), principal.getUsername()));
+    }
+
     /**
      * 修改文档标题
      */
@@ -0,0 +1,32 @@
+package org.example.collaborative_editor.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 增量 EDIT 消息（EDIT_DELTA），发送给连接时携带 delta=1 的客户端
+ * 替换列表直接作为 JSON 数组下发，不再嵌套在 data 字符串中，避免插入内容被二次转义。
+ */
+@Data
+public class WsDeltaMessage {
+
+    private String type;
+
+    private String sender;
+
+    /**
+     * 基准内容指纹（ContentDiff.hash），与客户端当前内容不一致时客户端发送 SYNC 请求全量内容
+     */
+    private int base;
+
+    /**
+     * 基准内容长度（UTF-16 码元）
+     */
+    private int length;
+
+    /**
+     * 替换列表，每项为 [位置, 删除长度, 插入内容]，位置基于基准内容且升序
+     */
+    private List<Object[]> ops;
+}
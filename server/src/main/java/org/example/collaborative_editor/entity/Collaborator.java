@@ -15,5 +15,9 @@ public class Collaborator {
     private Long id;
     private String docId;
     private Long userId;
+    /**
+     * 权限：edit / view，见 PermissionConstant
+     */
+    private String permission;
     private LocalDateTime createTime;
 }
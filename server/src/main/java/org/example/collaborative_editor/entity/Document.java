@@ -27,6 +27,21 @@ public class Document {
 
     private String content;
 
+    /**
+     * 分块存储时的块清单（按顺序的块哈希，逗号分隔），为 null 表示内容存放在 content 字段
+     */
+    private String blockManifest;
+
+    /**
+     * 内容版本号，每次内容落库加 1；落库时按版本号条件更新，避免旧内容覆盖新内容
+     */
+    private Integer version;
+
+    /**
+     * 已落库内容对应的编辑时间（Redis doc_edited_at 中的时间戳毫秒），为 null 表示未知；编辑日志据此判断记录是否已落库
+     */
+    private Long contentEditedAt;
+
     /**
      * 创建者ID
      */
@@ -0,0 +1,19 @@
+package org.example.collaborative_editor.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 文档内容块，大文档按块存储，块标识为内容哈希
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DocumentBlock {
+    private String docId;
+    private String blockHash;
+    private String content;
+}
@@ -0,0 +1,546 @@
+package org.example.collaborative_editor.journal;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collaborative_editor.constant.RedisKeyConstant;
+import org.example.collaborative_editor.entity.Document;
+import org.example.collaborative_editor.mapper.DocumentMapper;
+import org.example.collaborative_editor.service.DocumentContentService;
+import org.example.collaborative_editor.util.ContentDiff;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * 节点本地的编辑日志（内存映射文件）
+ * 在 Redis SET 之前追加每次 EDIT，弥补 Redis 故障切换或淘汰到 DocumentSyncTask 落库之间的数据丢失窗口。
+ * 文档在每个段内的第一条记录为完整内容，之后只记录相对上一条的变化；写入只是内存拷贝，由后台线程按组提交 fsync。
+ * 启动时以及每轮全量扫描时，将 Redis 中缺失或早于日志记录（按 doc_edited_at 判断）的未落库内容回写 Redis 并标脏，
+ * 文档同步到 MySQL 后对应的日志段会被删除。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EditJournal {
+
+    /**
+     * 核对快照中的文档是否仍脏时每次 ZMSCORE 查询的文档数
+     */
+    private static final int DIRTY_CHECK_BATCH = 500;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final DocumentMapper documentMapper;
+    private final DocumentContentService documentContentService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${codoc.journal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${codoc.journal.dir:./data/journal}")
+    private String dir;
+
+    @Value("${codoc.journal.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    /**
+     * 组提交间隔：后台线程每隔该时间对新写入的数据执行一次 fsync
+     */
+    @Value("${codoc.journal.fsync-interval-ms:20}")
+    private long fsyncIntervalMs;
+
+    /**
+     * 是否在写 Redis 之前等待本条记录 fsync 完成（更强的持久性，增加编辑延迟）
+     */
+    @Value("${codoc.journal.await-fsync:false}")
+    private boolean awaitFsync;
+
+    @Value("${codoc.journal.await-timeout-ms:200}")
+    private long awaitTimeoutMs;
+
+    /**
+     * 运行时核对只检查早于该时间的记录，避免与正在写 Redis 的编辑竞争
+     */
+    @Value("${codoc.journal.reconcile-grace-ms:5000}")
+    private long reconcileGraceMs;
+
+    /**
+     * 写锁，保护当前段、seq 和各类索引
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Object durableMonitor = new Object();
+
+    private Path directory;
+    private JournalSegment active;
+    private final List<JournalSegment> sealed = new ArrayList<>();
+    private long lastSeq;
+    private volatile long durableSeq;
+
+    /**
+     * 每个文档最后一次追加的 seq
+     */
+    private final Map<String, Long> lastSeqByDoc = new HashMap<>();
+
+    /**
+     * 每个文档最后一次追加的内容：当前段内的增量基准，以及运行时核对 Redis 用的内容；落库后清理
+     */
+    private final Map<String, JournalSegment.JournalRecord> latestByDoc = new HashMap<>();
+
+    /**
+     * 当前段内已写过记录（可以写增量）的文档，滚动段时清空
+     */
+    private final Set<String> inActive = new HashSet<>();
+
+    /**
+     * 每个文档已确认落库的 seq
+     */
+    private final Map<String, Long> persistedSeq = new ConcurrentHashMap<>();
+
+    /**
+     * 上一轮同步开始时的 lastSeqByDoc 快照
+     */
+    private Map<String, Long> previousSnapshot = Map.of();
+
+    private volatile boolean running;
+    private Thread flusher;
+    private Timer appendTimer;
+    private Timer fsyncTimer;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        directory = Paths.get(dir).toAbsolutePath();
+        Files.createDirectories(directory);
+
+        appendTimer = Timer.builder("codoc.journal.append").description("编辑日志追加耗时").register(meterRegistry);
+        fsyncTimer = Timer.builder("codoc.journal.fsync").description("编辑日志组提交 fsync 耗时").register(meterRegistry);
+        Gauge.builder("codoc.journal.segments", this, j -> j.sealed.size() + 1)
+                .description("编辑日志段文件数").register(meterRegistry);
+
+        replay();
+        active = JournalSegment.create(directory, lastSeq + 1, segmentSizeBytes());
+        durableSeq = lastSeq;
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "edit-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("编辑日志已启用: dir={}, 组提交间隔={}ms, 等待fsync={}", directory, fsyncIntervalMs, awaitFsync);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled || !running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            active.force(active.position);
+            active.close();
+            sealed.forEach(JournalSegment::close);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 追加一次编辑，返回记录的 seq；未启用时返回 0
+     */
+    public long append(String docId, String content) {
+        if (!enabled) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        String text = content == null ? "" : content;
+        byte[] docIdBytes = docId.getBytes(StandardCharsets.UTF_8);
+        byte[] contentBytes = text.getBytes(StandardCharsets.UTF_8);
+
+        // 在锁外计算增量：先取当前段内的增量基准，追加时基准未变才使用增量，否则写完整内容
+        JournalSegment.JournalRecord base;
+        lock.lock();
+        try {
+            base = inActive.contains(docId) ? latestByDoc.get(docId) : null;
+        } finally {
+            lock.unlock();
+        }
+        byte[] encoded = null;
+        if (base != null) {
+            // 只记录公共前缀与后缀之间的变化，编码后不比完整内容小时仍写完整内容
+            encoded = JournalSegment.encodeDelta(ContentDiff.diff(base.content(), text, 0, 0));
+            if (encoded.length >= contentBytes.length) {
+                encoded = null;
+            }
+        }
+
+        long seq;
+        lock.lock();
+        try {
+            seq = ++lastSeq;
+            long now = System.currentTimeMillis();
+            byte[] body = contentBytes;
+            boolean delta = false;
+            if (encoded != null && inActive.contains(docId) && latestByDoc.get(docId) == base) {
+                body = encoded;
+                delta = true;
+            }
+            if (!active.append(seq, now, docIdBytes, body, delta)) {
+                // 新段内的第一条记录必须是完整内容
+                roll(seq, JournalSegment.recordSize(docIdBytes, contentBytes));
+                active.append(seq, now, docIdBytes, contentBytes, false);
+            }
+            active.maxSeqByDoc.put(docId, seq);
+            lastSeqByDoc.put(docId, seq);
+            latestByDoc.put(docId, new JournalSegment.JournalRecord(seq, now, docId, text));
+            inActive.add(docId);
+        } catch (IOException e) {
+            log.error("编辑日志追加失败: docId={}", docId, e);
+            return 0;
+        } finally {
+            lock.unlock();
+        }
+        appendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (awaitFsync) {
+            awaitDurable(seq);
+        }
+        return seq;
+    }
+
+    /**
+     * 等待指定 seq 被组提交刷盘，超时后直接返回
+     */
+    private void awaitDurable(long seq) {
+        LockSupport.unpark(flusher);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(awaitTimeoutMs);
+        synchronized (durableMonitor) {
+            while (durableSeq < seq) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    log.warn("等待编辑日志刷盘超时: seq={}", seq);
+                    return;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(durableMonitor, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 组提交：每次 fsync 覆盖上一次以来的所有追加
+     */
+    private void flushLoop() {
+        while (running) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMs));
+            JournalSegment segment;
+            int position;
+            long target;
+            lock.lock();
+            try {
+                segment = active;
+                position = segment.position;
+                target = lastSeq;
+            } finally {
+                lock.unlock();
+            }
+            if (target == durableSeq) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                segment.force(position);
+            } catch (Exception e) {
+                log.error("编辑日志刷盘失败", e);
+                continue;
+            }
+            fsyncTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            synchronized (durableMonitor) {
+                durableSeq = target;
+                durableMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 当前段写满，刷盘后封存并创建新段（调用方持有写锁）
+     */
+    private void roll(long firstSeq, int recordSize) throws IOException {
+        JournalSegment old = active;
+        old.force(old.position);
+        sealed.add(old);
+        active = JournalSegment.create(directory, firstSeq, Math.max(segmentSizeBytes(), recordSize + 4));
+        inActive.clear();
+    }
+
+    private int segmentSizeBytes() {
+        return segmentSizeMb * 1024 * 1024;
+    }
+
+    // ========== 与 DocumentSyncTask 协作 ==========
+
+    /**
+     * 文档当前最后一次追加的 seq，同步任务在读取 Redis 内容之前调用
+     */
+    public long lastSeq(String docId) {
+        if (!enabled) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            return lastSeqByDoc.getOrDefault(docId, 0L);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 标记文档 seq 及之前的编辑已写入 MySQL
+     */
+    public void markPersisted(String docId, long seq) {
+        if (enabled && seq > 0) {
+            persistedSeq.merge(docId, seq, Math::max);
+        }
+    }
+
+    /**
+     * 每轮全量扫描时调用：上一轮快照中已不在脏集合里的文档，说明其快照 seq 之前的编辑已被某个节点落库。
+     * 只按 ZMSCORE 分批查询快照中的文档，不读取整个脏集合
+     */
+    public void onSyncTick() {
+        if (!enabled) {
+            return;
+        }
+        List<String> docIds = new ArrayList<>(previousSnapshot.keySet());
+        for (int from = 0; from < docIds.size(); from += DIRTY_CHECK_BATCH) {
+            List<String> batch = docIds.subList(from, Math.min(docIds.size(), from + DIRTY_CHECK_BATCH));
+            List<Double> scores = redisTemplate.opsForZSet().score(RedisKeyConstant.DIRTY_DOCS, batch.toArray());
+            if (scores == null) {
+                continue;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                if (scores.get(i) == null) {
+                    markPersisted(batch.get(i), previousSnapshot.get(batch.get(i)));
+                }
+            }
+        }
+        lock.lock();
+        try {
+            previousSnapshot = new HashMap<>(lastSeqByDoc);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 删除所有文档都已落库的日志段；当前段全部落库时也会滚动并删除
+     */
+    public void truncate() {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (active.position > 0 && isPersisted(active)) {
+                roll(lastSeq + 1, 0);
+            }
+            Iterator<JournalSegment> it = sealed.iterator();
+            while (it.hasNext()) {
+                JournalSegment segment = it.next();
+                if (!isPersisted(segment)) {
+                    continue;
+                }
+                try {
+                    segment.delete();
+                } catch (IOException e) {
+                    // 保留在封存列表中，下一轮截断时重试
+                    log.warn("编辑日志段删除失败，稍后重试: {}", segment.path.getFileName(), e);
+                    continue;
+                }
+                it.remove();
+                log.debug("编辑日志段已截断: {}", segment.path.getFileName());
+            }
+            // 清理已全部落库且不再出现在任何段中的文档索引
+            lastSeqByDoc.entrySet().removeIf(e -> persistedSeq.getOrDefault(e.getKey(), 0L) >= e.getValue()
+                    && !isReferenced(e.getKey()));
+            persistedSeq.keySet().removeIf(docId -> !lastSeqByDoc.containsKey(docId));
+            // 已落库的内容不再需要核对；当前段内仍作为增量基准的保留
+            latestByDoc.values().removeIf(record -> !inActive.contains(record.docId())
+                    && persistedSeq.getOrDefault(record.docId(), 0L) >= record.seq());
+        } catch (IOException e) {
+            log.error("编辑日志截断失败", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isReferenced(String docId) {
+        if (active.maxSeqByDoc.containsKey(docId)) {
+            return true;
+        }
+        for (JournalSegment segment : sealed) {
+            if (segment.maxSeqByDoc.containsKey(docId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isPersisted(JournalSegment segment) {
+        for (Map.Entry<String, Long> entry : segment.maxSeqByDoc.entrySet()) {
+            if (persistedSeq.getOrDefault(entry.getKey(), 0L) < entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ========== 回放与核对 ==========
+
+    /**
+     * 运行时核对（每轮全量扫描时调用）：Redis 故障切换到落后的副本后，内容可能仍在但早于本节点已确认的编辑，
+     * 此时按日志回写；只检查本节点尚未确认落库、且早于 reconcile-grace-ms 的最新记录
+     */
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - reconcileGraceMs;
+        List<JournalSegment.JournalRecord> candidates = new ArrayList<>();
+        lock.lock();
+        try {
+            for (JournalSegment.JournalRecord record : latestByDoc.values()) {
+                if (record.timestamp() < cutoff
+                        && persistedSeq.getOrDefault(record.docId(), 0L) < record.seq()) {
+                    candidates.add(record);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        int restored = restore(candidates, false);
+        if (restored > 0) {
+            log.warn("编辑日志核对: Redis 中 {} 个文档早于本节点的编辑，已按日志回写", restored);
+        }
+    }
+
+    /**
+     * 读取所有日志段，取每个文档 seq 最大的记录，按 restore 的规则回写 Redis 并标脏，之后由 DocumentSyncTask 落库
+     */
+    private void replay() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(JournalSegment::isSegmentFile).sorted().toList();
+        }
+        Map<String, JournalSegment.JournalRecord> latest = new HashMap<>();
+        for (Path file : files) {
+            JournalSegment segment = JournalSegment.open(file);
+            segment.read(record -> {
+                latest.merge(record.docId(), record, (a, b) -> a.seq() >= b.seq() ? a : b);
+                segment.maxSeqByDoc.merge(record.docId(), record.seq(), Math::max);
+                lastSeq = Math.max(lastSeq, record.seq());
+            });
+            lastSeq = Math.max(lastSeq, segment.firstSeq);
+            sealed.add(segment);
+        }
+
+        for (JournalSegment.JournalRecord record : latest.values()) {
+            lastSeqByDoc.put(record.docId(), record.seq());
+        }
+        latestByDoc.putAll(latest);
+        int restored = restore(latest.values(), true);
+        if (!files.isEmpty()) {
+            log.info("编辑日志回放完成: 段文件 {} 个, 文档 {} 个, 回写 Redis {} 个", files.size(), latest.size(), restored);
+        }
+    }
+
+    /**
+     * Redis 中记录的编辑时间不早于日志时以 Redis 为准（可能是其他节点更新的编辑）；
+     * 否则只有日志比 MySQL 更新才回写，避免用旧内容覆盖其他节点已落库的编辑。
+     * 回写由 DocumentContentService.restore 在脚本中再次比较编辑时间，期间到达的新编辑不会被覆盖
+     *
+     * @param trustRedis Redis 较新时是否视为已落库（启动回放时由 Redis 中的内容和脏标记接管）
+     * @return 回写的文档数
+     */
+    private int restore(Collection<JournalSegment.JournalRecord> records, boolean trustRedis) {
+        if (records.isEmpty()) {
+            return 0;
+        }
+        List<JournalSegment.JournalRecord> ordered = List.copyOf(records);
+        List<Object> editedAt = redisTemplate.opsForHash().multiGet(RedisKeyConstant.DOC_EDITED_AT,
+                ordered.stream().map(record -> (Object) record.docId()).toList());
+        int restored = 0;
+        for (int i = 0; i < ordered.size(); i++) {
+            JournalSegment.JournalRecord record = ordered.get(i);
+            Object edited = editedAt == null ? null : editedAt.get(i);
+            if (edited != null && Long.parseLong(edited.toString()) >= record.timestamp()) {
+                if (trustRedis) {
+                    markPersisted(record.docId(), record.seq());
+                }
+                continue;
+            }
+            if (!newerThanDatabase(record)) {
+                markPersisted(record.docId(), record.seq());
+                continue;
+            }
+            if (documentContentService.restore(record.docId(), record.content(), record.timestamp())) {
+                redisTemplate.opsForZSet().addIfAbsent(RedisKeyConstant.DIRTY_DOCS, record.docId(), record.timestamp());
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    /**
+     * 与随内容落库的编辑时间比较，不受标题、状态等更新影响；
+     * 同一编辑的日志时间不晚于 Redis 中的编辑时间，相等时也回写（同一文档的编辑串行，最多重复写回一次已落库内容）
+     */
+    private boolean newerThanDatabase(JournalSegment.JournalRecord record) {
+        Document document = documentMapper.getContentVersion(record.docId());
+        if (document == null) {
+            return false;
+        }
+        if (document.getContentEditedAt() == null) {
+            return true;
+        }
+        return record.timestamp() >= document.getContentEditedAt();
+    }
+}
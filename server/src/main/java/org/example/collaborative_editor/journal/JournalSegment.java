@@ -0,0 +1,268 @@
+package org.example.collaborative_editor.journal;
+
+import org.example.collaborative_editor.util.ContentDiff;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * 编辑日志段文件
+ * 预分配固定大小并整体映射到内存，记录格式:
+ * [int 负载长度][int CRC32C][long seq][long 时间戳][short docId 长度][docId][内容]
+ * 负载长度为 0 表示段内数据结束（预分配区域全为 0）。
+ * docId 长度的最高位为 1 表示增量记录，内容为相对同一段内该文档上一条记录的替换列表：
+ * [int 替换数]{[int pos][int delete][int insert 字节数][insert]}；每个段内文档的第一条记录总是完整内容，
+ * 因此段可以独立回放和删除。
+ */
+final class JournalSegment {
+
+    static final int HEADER_BYTES = 8;
+
+    private static final int DELTA_FLAG = 0x8000;
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+
+    /**
+     * Unsafe.invokeCleaner，用于删除段文件前立即解除内存映射（Windows 下映射未释放时无法删除文件）；不可用时为 null，映射随 GC 释放
+     */
+    private static final MethodHandle INVOKE_CLEANER = lookupCleaner();
+
+    final Path path;
+    final long firstSeq;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    /**
+     * 映射是否已解除，解除后不能再访问 buffer；由本对象的同步保护
+     */
+    private boolean unmapped;
+
+    /**
+     * 已写入位置，由 EditJournal 的写锁保护
+     */
+    int position;
+
+    /**
+     * 已 fsync 到的位置，由 force 的同步保护（刷盘线程与滚动段时都会调用）
+     */
+    int forcedPosition;
+
+    /**
+     * 段内每个文档的最大 seq，用于判断该段是否已全部持久化到 MySQL
+     */
+    final Map<String, Long> maxSeqByDoc = new HashMap<>();
+
+    private JournalSegment(Path path, long firstSeq, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.firstSeq = firstSeq;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static JournalSegment create(Path dir, long firstSeq, int size) throws IOException {
+        Path path = dir.resolve(String.format("%s%020d%s", PREFIX, firstSeq, SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return new JournalSegment(path, firstSeq, channel, buffer);
+    }
+
+    static JournalSegment open(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        long firstSeq = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        return new JournalSegment(path, firstSeq, channel, buffer);
+    }
+
+    static boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    static int recordSize(byte[] docId, byte[] body) {
+        return HEADER_BYTES + 8 + 8 + 2 + docId.length + body.length;
+    }
+
+    /**
+     * 将替换列表编码为增量记录的内容
+     */
+    static byte[] encodeDelta(List<ContentDiff.Op> ops) {
+        List<byte[]> inserts = new ArrayList<>(ops.size());
+        int size = 4;
+        for (ContentDiff.Op op : ops) {
+            byte[] insert = op.insert().getBytes(StandardCharsets.UTF_8);
+            inserts.add(insert);
+            size += 12 + insert.length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(ops.size());
+        for (int i = 0; i < ops.size(); i++) {
+            ContentDiff.Op op = ops.get(i);
+            out.putInt(op.pos()).putInt(op.delete()).putInt(inserts.get(i).length).put(inserts.get(i));
+        }
+        return out.array();
+    }
+
+    private static List<ContentDiff.Op> decodeDelta(ByteBuffer in) {
+        int count = in.getInt();
+        List<ContentDiff.Op> ops = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int pos = in.getInt();
+            int delete = in.getInt();
+            byte[] insert = new byte[in.getInt()];
+            in.get(insert);
+            ops.add(new ContentDiff.Op(pos, delete, new String(insert, StandardCharsets.UTF_8)));
+        }
+        return ops;
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * 追加一条记录，空间不足时返回 false
+     *
+     * @param delta body 是否为 encodeDelta 编码的增量
+     */
+    boolean append(long seq, long timestamp, byte[] docId, byte[] body, boolean delta) {
+        int size = recordSize(docId, body);
+        // 末尾保留 4 字节的 0 作为结束标记
+        if (position + size + 4 > buffer.capacity()) {
+            return false;
+        }
+        int payloadStart = position + HEADER_BYTES;
+        buffer.putLong(payloadStart, seq);
+        buffer.putLong(payloadStart + 8, timestamp);
+        buffer.putShort(payloadStart + 16, (short) (delta ? docId.length | DELTA_FLAG : docId.length));
+        buffer.put(payloadStart + 18, docId);
+        buffer.put(payloadStart + 18 + docId.length, body);
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(payloadStart, size - HEADER_BYTES));
+        buffer.putInt(position + 4, (int) crc.getValue());
+        // 长度最后写入，保证崩溃时不会读到半条记录
+        buffer.putInt(position, size - HEADER_BYTES);
+        position += size;
+        return true;
+    }
+
+    /**
+     * 将 [forcedPosition, upTo) 区间刷到磁盘
+     */
+    synchronized void force(int upTo) {
+        // 刷盘线程可能仍持有已滚动并被截断的段
+        if (unmapped) {
+            return;
+        }
+        if (upTo > forcedPosition) {
+            buffer.force(forcedPosition, upTo - forcedPosition);
+            forcedPosition = upTo;
+        }
+    }
+
+    /**
+     * 顺序读取段内所有完整且校验通过的记录（增量记录还原为完整内容），遇到损坏或结束标记即停止
+     */
+    void read(Consumer<JournalRecord> consumer) {
+        int pos = 0;
+        CRC32C crc = new CRC32C();
+        Map<String, String> contentByDoc = new HashMap<>();
+        while (pos + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(pos);
+            if (length <= 18 || pos + HEADER_BYTES + length > buffer.capacity()) {
+                break;
+            }
+            int payloadStart = pos + HEADER_BYTES;
+            crc.reset();
+            crc.update(buffer.slice(payloadStart, length));
+            if ((int) crc.getValue() != buffer.getInt(pos + 4)) {
+                break;
+            }
+            long seq = buffer.getLong(payloadStart);
+            long timestamp = buffer.getLong(payloadStart + 8);
+            int flags = buffer.getShort(payloadStart + 16) & 0xFFFF;
+            int docIdLength = flags & ~DELTA_FLAG;
+            byte[] docIdBytes = new byte[docIdLength];
+            buffer.get(payloadStart + 18, docIdBytes);
+            String docId = new String(docIdBytes, StandardCharsets.UTF_8);
+            byte[] body = new byte[length - 18 - docIdLength];
+            buffer.get(payloadStart + 18 + docIdLength, body);
+            pos += HEADER_BYTES + length;
+
+            String content;
+            if ((flags & DELTA_FLAG) == 0) {
+                content = new String(body, StandardCharsets.UTF_8);
+            } else {
+                String base = contentByDoc.get(docId);
+                if (base == null) {
+                    // 写入时保证段内先有完整内容，缺少基准说明记录不可用
+                    continue;
+                }
+                content = ContentDiff.apply(base, decodeDelta(ByteBuffer.wrap(body)));
+            }
+            contentByDoc.put(docId, content);
+            consumer.accept(new JournalRecord(seq, timestamp, docId, content));
+        }
+        position = pos;
+        forcedPosition = pos;
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // 关闭失败不影响数据，映射会在 GC 时释放
+        }
+    }
+
+    /**
+     * 关闭通道并解除映射后删除文件；删除失败时抛出异常，可再次调用重试
+     */
+    synchronized void delete() throws IOException {
+        close();
+        if (!unmapped && INVOKE_CLEANER != null) {
+            unmapped = true;
+            try {
+                INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+            } catch (Throwable ignored) {
+                // 解除失败时映射随 GC 释放
+            }
+        }
+        Files.deleteIfExists(path);
+    }
+
+    private static MethodHandle lookupCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    record JournalRecord(long seq, long timestamp, String docId, String content) {
+    }
+}
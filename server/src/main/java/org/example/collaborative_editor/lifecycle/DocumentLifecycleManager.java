@@ -0,0 +1,266 @@
+package org.example.collaborative_editor.lifecycle;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collaborative_editor.config.BulkRedisTemplate;
+import org.example.collaborative_editor.constant.RedisKeyConstant;
+import org.example.collaborative_editor.mapper.DocumentBlockMapper;
+import org.example.collaborative_editor.mapper.DocumentMapper;
+import org.example.collaborative_editor.service.DocumentContentService;
+import org.example.collaborative_editor.task.DocumentSyncTask;
+import org.example.collaborative_editor.task.SyncPartitions;
+import org.example.collaborative_editor.ws.EditorServer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文档生命周期管理
+ * 热：有人在线，内容未压缩地存放在 Redis；温：最后一个会话离开并落库后压缩存放，带 TTL；
+ * 冷：温数据过期后只保存在 MySQL，下次打开时重新加载。
+ * 分层统计需要扫描全部文档 key 并汇总 MySQL，只由持有 0 号落库分区的节点计算并写入 Redis，其他节点读取结果。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DocumentLifecycleManager {
+
+    private static final String HOT = "hot";
+    private static final String WARM = "warm";
+    private static final String COLD = "cold";
+
+    private static final int SCAN_BATCH = 500;
+
+    /**
+     * 一批 key 占用的内存字节数之和
+     */
+    private static final RedisScript<Long> MEMORY_USAGE_SCRIPT = new DefaultRedisScript<>("""
+            local total = 0
+            for _, key in ipairs(KEYS) do
+                total = total + (redis.call('MEMORY', 'USAGE', key) or 0)
+            end
+            return total
+            """, Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 分层统计扫描全部文档 key，使用独立连接
+     */
+    private final BulkRedisTemplate bulkRedisTemplate;
+    private final DocumentContentService documentContentService;
+    private final DocumentSyncTask documentSyncTask;
+    private final DocumentMapper documentMapper;
+    private final DocumentBlockMapper documentBlockMapper;
+    private final SyncPartitions syncPartitions;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 最后一个会话离开后等待多久再降级，避免刷新页面时反复压缩 / 解压
+     */
+    @Value("${codoc.lifecycle.demote-delay-seconds:30}")
+    private long demoteDelaySeconds;
+
+    private final Map<String, ScheduledFuture<?>> pendingDemotions = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicLong> tierCounts = Map.of(
+            HOT, new AtomicLong(), WARM, new AtomicLong(), COLD, new AtomicLong());
+
+    private final Map<String, AtomicLong> tierBytes = Map.of(
+            HOT, new AtomicLong(), WARM, new AtomicLong(), COLD, new AtomicLong());
+
+    private ScheduledExecutorService executor;
+    private Counter demotions;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "doc-lifecycle");
+            thread.setDaemon(true);
+            return thread;
+        });
+        demotions = Counter.builder("codoc.doc.demotions")
+                .description("热数据降为温数据的次数")
+                .register(meterRegistry);
+        for (String tier : List.of(HOT, WARM, COLD)) {
+            Gauge.builder("codoc.doc.tier.count", tierCounts.get(tier), AtomicLong::get)
+                    .tag("tier", tier)
+                    .description("各层文档数（定期统计，集群共享）")
+                    .register(meterRegistry);
+            Gauge.builder("codoc.doc.tier.bytes", tierBytes.get(tier), AtomicLong::get)
+                    .tag("tier", tier)
+                    .baseUnit("bytes")
+                    .description("各层文档占用字节数：热 / 温为 Redis 内存，冷为不在 Redis 中的文档的 MySQL 内容")
+                    .register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 会话加入文档：取消待执行的降级，增加集群在线数
+     */
+    public void onJoin(String docId) {
+        ScheduledFuture<?> pending = pendingDemotions.remove(docId);
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        String key = RedisKeyConstant.DOC_ONLINE_PREFIX + docId;
+        redisTemplate.opsForValue().increment(key);
+        // 节点异常退出时计数无法归零，由 TTL 兜底
+        redisTemplate.expire(key, 1, TimeUnit.DAYS);
+    }
+
+    /**
+     * 会话离开文档：集群内已无人在线时延迟降级
+     *
+     * @param roomEmpty 本节点上该文档是否已无会话
+     */
+    public void onLeave(String docId, boolean roomEmpty) {
+        Long online = redisTemplate.opsForValue().decrement(RedisKeyConstant.DOC_ONLINE_PREFIX + docId);
+        if (!roomEmpty || (online != null && online > 0)) {
+            return;
+        }
+        pendingDemotions.compute(docId, (id, previous) -> {
+            if (previous != null) {
+                previous.cancel(false);
+            }
+            return executor.schedule(() -> demote(id), demoteDelaySeconds, TimeUnit.SECONDS);
+        });
+    }
+
+    private void demote(String docId) {
+        pendingDemotions.remove(docId);
+        try {
+            if (EditorServer.hasSessions(docId)) {
+                return;
+            }
+            Object online = redisTemplate.opsForValue().get(RedisKeyConstant.DOC_ONLINE_PREFIX + docId);
+            if (online != null && Long.parseLong(online.toString()) > 0) {
+                return;
+            }
+            // 先落库再降级；落库失败时保留热数据，由定时任务重试
+            if (!documentSyncTask.flushNow(docId)) {
+                return;
+            }
+            if (documentContentService.demote(docId)) {
+                redisTemplate.delete(RedisKeyConstant.DOC_ONLINE_PREFIX + docId);
+                demotions.increment();
+                log.debug("文档 {} 已降为温数据", docId);
+            }
+        } catch (Exception e) {
+            log.warn("文档 {} 降级失败: {}", docId, e.getMessage());
+        }
+    }
+
+    /**
+     * 定期统计各层文档数与占用字节数：持有 0 号分区的节点计算后写入 Redis，各节点从 Redis 读取结果更新指标
+     */
+    @Scheduled(fixedDelayString = "${codoc.lifecycle.stats-interval-ms:600000}", initialDelay = 30000)
+    public void refreshTierStats() {
+        try {
+            Map<String, Long> stats = syncPartitions.isLeader() ? computeTierStats() : loadTierStats();
+            for (String tier : List.of(HOT, WARM, COLD)) {
+                tierCounts.get(tier).set(stats.getOrDefault(tier + ".count", 0L));
+                tierBytes.get(tier).set(stats.getOrDefault(tier + ".bytes", 0L));
+            }
+        } catch (Exception e) {
+            log.warn("统计文档分层信息失败: {}", e.getMessage());
+        }
+    }
+
+    private Map<String, Long> computeTierStats() {
+        Set<String> hot = new HashSet<>();
+        long hotBytes = scan(RedisKeyConstant.DOC_PREFIX, hot) + scan(RedisKeyConstant.DOC_BLOCKS_PREFIX, hot);
+        Set<String> warm = new HashSet<>();
+        long warmBytes = scan(RedisKeyConstant.DOC_WARM_PREFIX, warm);
+
+        // 冷数据 = MySQL 全部文档减去热 / 温数据仍在 Redis 中的文档
+        Set<String> resident = new HashSet<>(hot);
+        resident.addAll(warm);
+        long residentCount = 0;
+        long residentBytes = 0;
+        List<String> ids = new ArrayList<>(resident);
+        for (int from = 0; from < ids.size(); from += SCAN_BATCH) {
+            List<String> batch = ids.subList(from, Math.min(ids.size(), from + SCAN_BATCH));
+            residentCount += documentMapper.countActiveByIds(batch);
+            residentBytes += documentMapper.sumContentLengthByIds(batch) + documentBlockMapper.sumContentLengthByIds(batch);
+        }
+        long total = documentMapper.countActive();
+        long mysqlBytes = documentMapper.sumContentLength() + documentBlockMapper.sumContentLength();
+
+        Map<String, Long> stats = new HashMap<>();
+        stats.put(HOT + ".count", (long) hot.size());
+        stats.put(HOT + ".bytes", hotBytes);
+        stats.put(WARM + ".count", (long) warm.size());
+        stats.put(WARM + ".bytes", warmBytes);
+        stats.put(COLD + ".count", Math.max(0, total - residentCount));
+        stats.put(COLD + ".bytes", Math.max(0, mysqlBytes - residentBytes));
+        Map<String, String> values = new HashMap<>();
+        stats.forEach((field, value) -> values.put(field, String.valueOf(value)));
+        redisTemplate.opsForHash().putAll(RedisKeyConstant.DOC_TIER_STATS, values);
+        return stats;
+    }
+
+    private Map<String, Long> loadTierStats() {
+        Map<String, Long> stats = new HashMap<>();
+        redisTemplate.opsForHash().entries(RedisKeyConstant.DOC_TIER_STATS)
+                .forEach((field, value) -> stats.put(field.toString(), Long.parseLong(value.toString())));
+        return stats;
+    }
+
+    /**
+     * 扫描指定前缀的 key，收集 docId 并返回占用的内存字节数
+     */
+    private long scan(String prefix, Set<String> docIds) {
+        long bytes = 0;
+        List<String> batch = new ArrayList<>(SCAN_BATCH);
+        ScanOptions options = ScanOptions.scanOptions().match(prefix + "*").count(SCAN_BATCH).build();
+        try (Cursor<String> cursor = bulkRedisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                docIds.add(key.substring(prefix.length()));
+                batch.add(key);
+                if (batch.size() == SCAN_BATCH) {
+                    bytes += memoryUsage(batch);
+                    batch.clear();
+                }
+            }
+        }
+        return bytes + memoryUsage(batch);
+    }
+
+    private long memoryUsage(List<String> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        Long bytes = bulkRedisTemplate.execute(MEMORY_USAGE_SCRIPT, keys);
+        return bytes == null ? 0 : bytes;
+    }
+}
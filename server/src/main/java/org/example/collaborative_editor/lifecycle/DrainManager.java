@@ -0,0 +1,130 @@
+package org.example.collaborative_editor.lifecycle;
+
+import jakarta.websocket.CloseReason;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collaborative_editor.task.DocumentSyncTask;
+import org.example.collaborative_editor.ws.EditorServer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 节点下线排空
+ * 应用关闭时（滚动发布、SIGTERM）先于 Web 容器停止：拒绝新连接并附带重连提示，
+ * 通知在线客户端在随机延迟后重连到其他节点，再在限定时间内把本节点持有的脏文档落库。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DrainManager implements SmartLifecycle {
+
+    private final DocumentSyncTask documentSyncTask;
+
+    /**
+     * 客户端重连延迟的随机分布区间，避免所有客户端同时涌向其他节点
+     */
+    @Value("${codoc.drain.reconnect-spread-ms:5000}")
+    private long reconnectSpreadMs;
+
+    /**
+     * 排空总时限：等待客户端主动重连 + 落库，超时后强制关闭剩余连接并放弃未完成的落库
+     */
+    @Value("${codoc.drain.timeout-ms:20000}")
+    private long timeoutMs;
+
+    private volatile boolean running;
+    private volatile boolean draining;
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        try {
+            drain();
+        } finally {
+            running = false;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 最先停止：Web 容器的优雅关闭阶段（DEFAULT_PHASE - 1024）之前连接仍可用
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE;
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * 拒绝连接时的关闭原因，retry 为建议的重连延迟（毫秒）
+     */
+    public String retryHint() {
+        return "Server draining, retry=" + randomDelay();
+    }
+
+    private long randomDelay() {
+        return reconnectSpreadMs <= 0 ? 0 : ThreadLocalRandom.current().nextLong(reconnectSpreadMs);
+    }
+
+    private void drain() {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        draining = true;
+        Set<String> docIds = EditorServer.activeDocIds();
+        log.info("节点开始排空：{} 个会话，{} 个文档", EditorServer.sessionCount(), docIds.size());
+
+        // 1. 通知客户端各自在随机延迟后重连，等待其主动断开
+        EditorServer.requestReconnect(this::randomDelay);
+        long waitUntil = Math.min(deadline, System.currentTimeMillis() + reconnectSpreadMs + 1000);
+        while (EditorServer.sessionCount() > 0 && System.currentTimeMillis() < waitUntil) {
+            if (!sleep()) {
+                break;
+            }
+        }
+
+        // 2. 仍未断开的连接由服务端关闭，客户端收到 1012 后同样按随机延迟重连
+        int remaining = EditorServer.sessionCount();
+        if (remaining > 0) {
+            EditorServer.closeAll(() -> new CloseReason(CloseReason.CloseCodes.SERVICE_RESTART, retryHint()));
+        }
+
+        // 3. 在时限内落库本节点持有的脏文档；未完成的仍留在脏集合中，由其他节点的定时任务同步
+        int processed = 0;
+        int failed = 0;
+        for (String docId : docIds) {
+            if (System.currentTimeMillis() >= deadline) {
+                break;
+            }
+            if (!documentSyncTask.flushNow(docId)) {
+                failed++;
+            }
+            processed++;
+        }
+        log.info("节点排空完成：强制关闭 {} 个会话，落库 {} 个文档，失败 {} 个，超时未处理 {} 个",
+                remaining, processed - failed, failed, docIds.size() - processed);
+    }
+
+    private static boolean sleep() {
+        try {
+            Thread.sleep(100);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package org.example.collaborative_editor.mapper;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.example.collaborative_editor.annotation.ReadOnly;
 import org.example.collaborative_editor.entity.Collaborator;
 
 import java.util.List;
@@ -10,12 +12,16 @@ import java.util.List;
 @Mapper
 public interface CollaboratorMapper {
 
-    @Insert("insert into collaborator (doc_id, user_id, create_time) values (#{docId}, #{userId}, #{createTime})")
+    @Insert("insert into collaborator (doc_id, user_id, permission, create_time) values (#{docId}, #{userId}, #{permission}, #{createTime})")
     void insert(Collaborator collaborator);
 
+    @Update("update collaborator set permission = #{permission} where doc_id = #{docId} and user_id = #{userId}")
+    void updatePermission(String docId, Long userId, String permission);
+
     @Select("select * from collaborator where doc_id = #{docId} and user_id = #{userId}")
     Collaborator getByDocIdAndUserId(String docId, Long userId);
 
+    @ReadOnly
     @Select("select doc_id from collaborator where user_id = #{userId}")
     List<String> listDocIdsByUserId(Long userId);
 }
@@ -0,0 +1,40 @@
+package org.example.collaborative_editor.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.example.collaborative_editor.annotation.ReadOnly;
+import org.example.collaborative_editor.entity.DocumentBlock;
+
+import java.util.List;
+
+@Mapper
+public interface DocumentBlockMapper {
+
+    /**
+     * 批量插入块，已存在的块（相同内容哈希）忽略
+     */
+    void insertBatch(List<DocumentBlock> blocks);
+
+    @Select("select block_hash, content from document_block where doc_id = #{docId}")
+    List<DocumentBlock> listByDocId(String docId);
+
+    /**
+     * 删除不在块清单（逗号分隔的块哈希）中的块，返回删除的行数
+     */
+    @Delete("delete from document_block where doc_id = #{docId} and find_in_set(block_hash, #{manifest}) = 0")
+    int deleteUnreferenced(String docId, String manifest);
+
+    @Delete("delete from document_block where doc_id = #{docId}")
+    void deleteByDocId(String docId);
+
+    @ReadOnly
+    @Select("select coalesce(sum(length(content)), 0) from document_block")
+    long sumContentLength();
+
+    /**
+     * 统计指定文档的块内容总字节数
+     */
+    @ReadOnly
+    long sumContentLengthByIds(List<String> docIds);
+}
@@ -2,7 +2,9 @@ package org.example.collaborative_editor.mapper;
 
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 import org.example.collaborative_editor.annotation.AutoFill;
+import org.example.collaborative_editor.annotation.ReadOnly;
 import org.example.collaborative_editor.entity.Document;
 import org.example.collaborative_editor.enumeration.OperationType;
 
@@ -24,18 +26,83 @@ public interface DocumentMapper {
     Document getByDocId(String docId);
 
     /**
-     * 更新文档内容
+     * 查询未删除文档的所有者 ID，连接时校验权限使用（不读取内容）
+     */
+    @Select("select owner_id from document where doc_id = #{docId} and status = 1")
+    Long getOwnerId(String docId);
+
+    /**
+     * 更新文档元数据（标题、状态），只更新非空字段；内容只通过 updateContent 更新
      */
     @AutoFill(OperationType.UPDATE)
     void update(Document document);
 
+    /**
+     * 更新文档内容（整体内容或块清单）并将版本号加 1，不读取旧内容；
+     * version 不为空时仅在版本号一致时更新，返回 0 表示文档已删除或已被其他节点更新
+     */
+    @AutoFill(OperationType.UPDATE)
+    int updateContent(Document document);
+
+    /**
+     * 查询未删除文档的内容版本号、块清单与内容编辑时间（不读取内容），落库前及编辑日志核对时使用
+     */
+    @Select("select version, block_manifest, content_edited_at from document where doc_id = #{docId} and status = 1")
+    Document getContentVersion(String docId);
+
+    /**
+     * 文档内容改回整体存储时清除块清单
+     */
+    @Update("update document set block_manifest = null where doc_id = #{docId}")
+    void clearBlockManifest(String docId);
+
+    /**
+     * 统计未删除的文档数
+     */
+    @ReadOnly
+    @Select("select count(*) from document where status = 1")
+    long countActive();
+
+    /**
+     * 统计未删除文档整体存储内容的总字节数
+     */
+    @ReadOnly
+    @Select("select coalesce(sum(length(content)), 0) from document where status = 1")
+    long sumContentLength();
+
+    /**
+     * 统计指定文档中未删除的文档数
+     */
+    @ReadOnly
+    long countActiveByIds(java.util.List<String> docIds);
+
+    /**
+     * 统计指定文档中未删除文档整体存储内容的总字节数
+     */
+    @ReadOnly
+    long sumContentLengthByIds(java.util.List<String> docIds);
+
+    /**
+     * 所有未删除文档的 docId，全量重建搜索索引时使用
+     */
+    @Select("select doc_id from document where status = 1")
+    java.util.List<String> listActiveDocIds();
+
     /**
      * 查询用户文档列表
      */
+    @ReadOnly
     java.util.List<DocumentVO> listByOwnerId(Long ownerId);
 
     /**
      * 根据ID列表查询文档
      */
+    @ReadOnly
     java.util.List<DocumentVO> listByIds(java.util.List<String> docIds);
+
+    /**
+     * 根据ID列表查询文档摘要（不含内容），用于搜索结果
+     */
+    @ReadOnly
+    java.util.List<DocumentVO> listSummaryByIds(java.util.List<String> docIds);
 }
@@ -0,0 +1,272 @@
+package org.example.collaborative_editor.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collaborative_editor.constant.WsMessageType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * 实时编辑链路指标
+ * 所有 Meter 在启动或房间创建时注册，热路径上只做 nanoTime 差值记录和原子计数，可在生产环境常开。
+ */
+@Slf4j
+@Component
+public class EditorMetrics {
+
+    /**
+     * 预注册 Timer 的入站消息类型，其余类型统一归为 OTHER，避免标签基数失控
+     */
+    private static final List<String> KNOWN_TYPES = List.of(
+            WsMessageType.EDIT, WsMessageType.CURSOR, WsMessageType.PING);
+
+    private static final String OTHER_TYPE = "OTHER";
+
+    private final MeterRegistry registry;
+
+    private final boolean docGaugesEnabled;
+
+    private final Map<String, Timer> inboundTimers = new ConcurrentHashMap<>();
+
+    private final Timer fanoutTimer;
+
+    private final Timer fanoutRecipientTimer;
+
+    private final Timer fanoutPartitionTimer;
+
+    private final Counter droppedFrames;
+
+    private final Counter conflatedFrames;
+
+    private final AtomicInteger pendingSends = new AtomicInteger();
+
+    private final Map<String, Gauge> docGauges = new ConcurrentHashMap<>();
+
+    private final Timer flushTimer;
+
+    private final Counter flushFailures;
+
+    private final Counter flushConflicts;
+
+    private final Timer flushDelayTimer;
+
+    private final Counter flushDeferred;
+
+    private final AtomicLong oldestDirtyMillis = new AtomicLong();
+
+    private final AtomicInteger dirtyDocs = new AtomicInteger();
+
+    public EditorMetrics(MeterRegistry registry,
+                         @Value("${codoc.metrics.doc-gauges.enabled:true}") boolean docGaugesEnabled) {
+        this.registry = registry;
+        this.docGaugesEnabled = docGaugesEnabled;
+
+        for (String type : KNOWN_TYPES) {
+            inboundTimers.put(type, inboundTimer(type));
+        }
+        inboundTimers.put(OTHER_TYPE, inboundTimer(OTHER_TYPE));
+
+        this.fanoutTimer = Timer.builder("codoc.ws.fanout")
+                .description("一次广播对全部接收者的总耗时")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.fanoutRecipientTimer = Timer.builder("codoc.ws.fanout.recipient")
+                .description("从广播开始到单个接收者发送完成的耗时")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.fanoutPartitionTimer = Timer.builder("codoc.ws.fanout.partition")
+                .description("热点房间从广播开始到单个分区全部发送完成的耗时")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.droppedFrames = Counter.builder("codoc.ws.frames.dropped")
+                .description("发送失败被丢弃的出站帧数")
+                .register(registry);
+        this.conflatedFrames = Counter.builder("codoc.ws.frames.conflated")
+                .description("接收者发送未完成期间被更新内容覆盖、不再发送的 EDIT / SYNC 帧数")
+                .register(registry);
+        Gauge.builder("codoc.ws.outbound.pending", pendingSends, AtomicInteger::get)
+                .description("正在阻塞发送中的出站帧数")
+                .register(registry);
+
+        this.flushTimer = Timer.builder("codoc.sync.flush")
+                .description("DocumentSyncTask 一轮调度（有文档落库时）的耗时")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.flushFailures = Counter.builder("codoc.sync.flush.failures")
+                .description("文档同步失败次数")
+                .register(registry);
+        this.flushConflicts = Counter.builder("codoc.sync.flush.conflicts")
+                .description("落库时版本号不一致（其他节点已写入更新的内容）的次数")
+                .register(registry);
+        this.flushDelayTimer = Timer.builder("codoc.sync.flush.delay")
+                .description("文档从首次标脏到开始落库的时间")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.flushDeferred = Counter.builder("codoc.sync.flush.deferred")
+                .description("已到期但因写入预算用完推迟到下一轮的落库次数")
+                .register(registry);
+        Gauge.builder("codoc.sync.lag", oldestDirtyMillis, EditorMetrics::syncLagSeconds)
+                .description("最早一个脏文档距今的秒数")
+                .baseUnit("seconds")
+                .register(registry);
+        Gauge.builder("codoc.sync.dirty", dirtyDocs, AtomicInteger::get)
+                .description("上一次同步时的脏文档数")
+                .register(registry);
+    }
+
+    private Timer inboundTimer(String type) {
+        return Timer.builder("codoc.ws.inbound")
+                .description("入站 WebSocket 消息处理耗时")
+                .tag("type", type)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    // ========== WebSocket ==========
+
+    /**
+     * 绑定在线房间表，注册房间数与会话总数
+     */
+    public void bindRooms(Map<String, ? extends Collection<?>> rooms) {
+        Gauge.builder("codoc.ws.rooms", rooms, Map::size)
+                .description("当前有在线用户的文档数")
+                .register(registry);
+        Gauge.builder("codoc.ws.sessions", rooms, r -> r.values().stream().mapToInt(Collection::size).sum())
+                .description("当前在线会话总数")
+                .register(registry);
+    }
+
+    /**
+     * 注册热点房间数与扇出通道排队数
+     */
+    public void bindHotRooms(Collection<?> hotRooms) {
+        Gauge.builder("codoc.ws.rooms.hot", hotRooms, Collection::size)
+                .description("使用分区扇出的热点房间数")
+                .register(registry);
+    }
+
+    public void bindFanoutQueue(IntSupplier queued) {
+        Gauge.builder("codoc.ws.fanout.queued", queued, IntSupplier::getAsInt)
+                .description("热点房间扇出通道中排队的分区与等待发送内容帧的会话数")
+                .register(registry);
+    }
+
+    /**
+     * 房间创建时注册该文档的在线会话数 Gauge
+     */
+    public void registerRoom(String docId, Collection<?> sessions) {
+        if (!docGaugesEnabled) {
+            return;
+        }
+        docGauges.computeIfAbsent(docId, id -> Gauge.builder("codoc.ws.doc.sessions", sessions, Collection::size)
+                .description("单个文档的在线会话数")
+                .tag("docId", id)
+                .register(registry));
+    }
+
+    /**
+     * 房间清空时注销该文档的 Gauge
+     */
+    public void removeRoom(String docId) {
+        Gauge gauge = docGauges.remove(docId);
+        if (gauge != null) {
+            registry.remove(gauge);
+        }
+    }
+
+    public void recordInbound(String type, long nanos) {
+        Timer timer = type == null ? null : inboundTimers.get(type);
+        if (timer == null) {
+            timer = inboundTimers.get(OTHER_TYPE);
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFanout(long nanos) {
+        fanoutTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFanoutRecipient(long nanos) {
+        fanoutRecipientTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFanoutPartition(long nanos) {
+        fanoutPartitionTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void sendStarted() {
+        pendingSends.incrementAndGet();
+    }
+
+    public void sendFinished() {
+        pendingSends.decrementAndGet();
+    }
+
+    public void frameDropped() {
+        droppedFrames.increment();
+    }
+
+    public void frameConflated() {
+        conflatedFrames.increment();
+    }
+
+    // ========== 同步任务 ==========
+
+    public void recordFlush(long nanos) {
+        flushTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void flushFailed() {
+        flushFailures.increment();
+    }
+
+    public void flushConflict() {
+        flushConflicts.increment();
+    }
+
+    public void recordFlushDelay(long millis) {
+        flushDelayTimer.record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public void flushDeferred(int count) {
+        flushDeferred.increment(count);
+    }
+
+    /**
+     * 绑定本节点持有的落库分区数
+     */
+    public void bindSyncPartitions(IntSupplier owned) {
+        Gauge.builder("codoc.sync.partitions.owned", owned, IntSupplier::getAsInt)
+                .description("本节点持有的落库分区数")
+                .strongReference(true)
+                .register(registry);
+    }
+
+    /**
+     * 更新脏文档概况
+     *
+     * @param count        脏文档数
+     * @param oldestMillis 最早脏文档的标脏时间戳，没有时传 0
+     */
+    public void updateDirty(int count, long oldestMillis) {
+        dirtyDocs.set(count);
+        oldestDirtyMillis.set(oldestMillis);
+    }
+
+    private static double syncLagSeconds(AtomicLong oldestDirtyMillis) {
+        long oldest = oldestDirtyMillis.get();
+        return oldest == 0 ? 0 : (System.currentTimeMillis() - oldest) / 1000.0;
+    }
+}
@@ -0,0 +1,356 @@
+package org.example.collaborative_editor.search;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.custom.CustomAnalyzer;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.QueryBuilder;
+import org.example.collaborative_editor.constant.RedisKeyConstant;
+import org.example.collaborative_editor.entity.Document;
+import org.example.collaborative_editor.mapper.DocumentMapper;
+import org.example.collaborative_editor.service.DocumentContentService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 文档全文索引
+ * 每个节点在本地磁盘维护一份 Lucene 索引。文档落库、改名、删除时写入 Redis ZSET search_changes，
+ * 各节点的索引线程按各自的进度（保存在索引提交数据中）增量拉取变更并重建对应文档，索引开销只与变更的文档数成正比。
+ * 进度落后于变更保留时间（节点长时间离线）或索引为空时自动全量重建；也可通过 /actuator/searchindex 手动触发。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DocumentSearchIndex {
+
+    private static final String FIELD_DOC_ID = "docId";
+    private static final String FIELD_OWNER = "owner";
+    private static final String FIELD_TITLE = "title";
+    private static final String FIELD_CONTENT = "content";
+
+    /**
+     * 提交数据中记录的进度：已索引到的变更时间戳毫秒
+     */
+    private static final String COMMIT_WATERMARK = "watermark";
+
+    /**
+     * 拉取变更时向前回退的毫秒数，容忍节点间的时钟偏差；重复索引同一文档没有副作用
+     */
+    private static final long CLOCK_SKEW_MS = 5000;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final DocumentMapper documentMapper;
+    private final DocumentContentService documentContentService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${codoc.search.enabled:true}")
+    private boolean enabled;
+
+    @Value("${codoc.search.dir:./data/search}")
+    private String dir;
+
+    @Value("${codoc.search.poll-interval-ms:2000}")
+    private long pollIntervalMs;
+
+    /**
+     * search_changes 中变更的保留时间，超过后清理；进度早于此时间的节点需要全量重建
+     */
+    @Value("${codoc.search.changelog-retention-hours:168}")
+    private long retentionHours;
+
+    @Value("${codoc.search.max-results:50}")
+    private int maxResults;
+
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+
+    /**
+     * 回退窗口内已索引的变更（docId -> 变更时间），只在索引线程中访问
+     */
+    private final Map<String, Long> recentlyIndexed = new HashMap<>();
+
+    private FSDirectory directory;
+    private Analyzer analyzer;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private ScheduledExecutorService indexer;
+    private Timer updateTimer;
+    private volatile long watermark;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        // 内容为编辑器的 HTML：先去掉标签，中文按双字切分并保留单字，英文转小写
+        analyzer = CustomAnalyzer.builder()
+                .addCharFilter("htmlStrip")
+                .withTokenizer("standard")
+                .addTokenFilter("cjkWidth")
+                .addTokenFilter("lowercase")
+                .addTokenFilter("cjkBigram", "outputUnigrams", "true")
+                .build();
+        directory = FSDirectory.open(Path.of(dir));
+        writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        searcherManager = new SearcherManager(writer, null);
+        watermark = readWatermark();
+
+        updateTimer = Timer.builder("codoc.search.update")
+                .description("一轮增量索引的耗时")
+                .register(meterRegistry);
+        Gauge.builder("codoc.search.docs", writer, w -> w.getDocStats().numDocs)
+                .description("搜索索引中的文档数")
+                .register(meterRegistry);
+
+        indexer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "search-indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        indexer.scheduleWithFixedDelay(this::poll, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("搜索索引已打开: dir={}, 文档数={}, 进度={}", dir, writer.getDocStats().numDocs, watermark);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        indexer.shutdown();
+        try {
+            indexer.awaitTermination(10, TimeUnit.SECONDS);
+            searcherManager.close();
+            writer.close();
+            directory.close();
+        } catch (IOException e) {
+            log.warn("关闭搜索索引失败", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录文档已变更（内容落库、标题修改、删除），所有节点的索引线程随后会重建该文档的索引
+     */
+    public void markChanged(String docId) {
+        if (enabled) {
+            redisTemplate.opsForZSet().add(RedisKeyConstant.SEARCH_CHANGES, docId, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 请求后台全量重建，重建期间搜索仍使用旧索引
+     */
+    public void requestRebuild() {
+        rebuildRequested.set(true);
+    }
+
+    /**
+     * 索引状态，供运维端点查看
+     */
+    public Map<String, Object> status() {
+        return Map.of(
+                "enabled", enabled,
+                "docs", enabled ? writer.getDocStats().numDocs : 0,
+                "watermark", watermark,
+                "rebuildPending", rebuildRequested.get());
+    }
+
+    /**
+     * 在用户有权访问的文档（自己创建的或参与协作的）中搜索标题和正文
+     *
+     * @param userId       当前用户
+     * @param collabDocIds 当前用户参与协作的文档
+     * @return 按相关度排序的文档 ID
+     */
+    public List<String> search(String keyword, Long userId, Collection<String> collabDocIds) {
+        QueryBuilder builder = new QueryBuilder(analyzer);
+        Query title = builder.createBooleanQuery(FIELD_TITLE, keyword, BooleanClause.Occur.MUST);
+        Query content = builder.createBooleanQuery(FIELD_CONTENT, keyword, BooleanClause.Occur.MUST);
+        if (title == null && content == null) {
+            return List.of();
+        }
+        BooleanQuery.Builder match = new BooleanQuery.Builder().setMinimumNumberShouldMatch(1);
+        if (title != null) {
+            match.add(new BoostQuery(title, 2f), BooleanClause.Occur.SHOULD);
+        }
+        if (content != null) {
+            match.add(content, BooleanClause.Occur.SHOULD);
+        }
+
+        BooleanQuery.Builder acl = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(FIELD_OWNER, userId.toString())), BooleanClause.Occur.SHOULD);
+        if (!collabDocIds.isEmpty()) {
+            List<BytesRef> ids = collabDocIds.stream().map(BytesRef::new).toList();
+            acl.add(new TermInSetQuery(FIELD_DOC_ID, ids), BooleanClause.Occur.SHOULD);
+        }
+        Query query = new BooleanQuery.Builder()
+                .add(match.build(), BooleanClause.Occur.MUST)
+                .add(acl.build(), BooleanClause.Occur.FILTER)
+                .build();
+
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs top = searcher.search(query, maxResults);
+                List<String> result = new ArrayList<>(top.scoreDocs.length);
+                for (ScoreDoc hit : top.scoreDocs) {
+                    result.add(searcher.storedFields().document(hit.doc, Set.of(FIELD_DOC_ID)).get(FIELD_DOC_ID));
+                }
+                return result;
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 索引线程：处理重建请求，否则拉取上次进度之后的变更
+     */
+    private void poll() {
+        try {
+            long expireBefore = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(retentionHours);
+            redisTemplate.opsForZSet().removeRangeByScore(RedisKeyConstant.SEARCH_CHANGES, 0, expireBefore);
+            if (rebuildRequested.getAndSet(false) || watermark < expireBefore) {
+                rebuild();
+                return;
+            }
+            update();
+        } catch (Exception e) {
+            log.error("更新搜索索引失败", e);
+        }
+    }
+
+    private void update() throws IOException {
+        Set<ZSetOperations.TypedTuple<Object>> changes = redisTemplate.opsForZSet().rangeByScoreWithScores(
+                RedisKeyConstant.SEARCH_CHANGES, Math.max(0, watermark - CLOCK_SKEW_MS), Double.POSITIVE_INFINITY);
+        if (changes == null || changes.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        long latest = watermark;
+        int fresh = 0;
+        for (ZSetOperations.TypedTuple<Object> change : changes) {
+            String docId = (String) change.getValue();
+            long changedAt = change.getScore() == null ? 0 : change.getScore().longValue();
+            // 回退窗口内已经索引过的同一次变更不重复处理
+            Long indexed = recentlyIndexed.get(docId);
+            if (indexed != null && indexed == changedAt) {
+                continue;
+            }
+            index(docId);
+            recentlyIndexed.put(docId, changedAt);
+            latest = Math.max(latest, changedAt);
+            fresh++;
+        }
+        if (fresh == 0) {
+            return;
+        }
+        commit(latest);
+        long windowStart = latest - CLOCK_SKEW_MS;
+        recentlyIndexed.values().removeIf(changedAt -> changedAt < windowStart);
+        updateTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("搜索索引增量更新 {} 个文档", fresh);
+    }
+
+    /**
+     * 全量重建：清空后逐个索引所有未删除的文档，完成后才对搜索可见
+     */
+    private void rebuild() throws IOException {
+        long startedAt = System.currentTimeMillis();
+        log.info("开始全量重建搜索索引");
+        writer.deleteAll();
+        recentlyIndexed.clear();
+        int count = 0;
+        for (String docId : documentMapper.listActiveDocIds()) {
+            index(docId);
+            count++;
+        }
+        // 重建期间发生的变更仍在 search_changes 中，下一轮增量更新会处理
+        commit(Math.max(1, startedAt - CLOCK_SKEW_MS));
+        log.info("搜索索引全量重建完成，共 {} 个文档，耗时 {} ms", count, System.currentTimeMillis() - startedAt);
+    }
+
+    /**
+     * 按 MySQL 中的最新状态重建单个文档的索引，文档已删除时从索引中移除
+     */
+    private void index(String docId) throws IOException {
+        Term id = new Term(FIELD_DOC_ID, docId);
+        Document document = documentMapper.getByDocId(docId);
+        String content = document == null ? null : documentContentService.loadPersisted(docId);
+        if (content == null) {
+            writer.deleteDocuments(id);
+            return;
+        }
+        org.apache.lucene.document.Document doc = new org.apache.lucene.document.Document();
+        doc.add(new StringField(FIELD_DOC_ID, docId, Field.Store.YES));
+        doc.add(new StringField(FIELD_OWNER, document.getOwnerId().toString(), Field.Store.NO));
+        doc.add(new TextField(FIELD_TITLE, document.getTitle() == null ? "" : document.getTitle(), Field.Store.NO));
+        doc.add(new TextField(FIELD_CONTENT, content, Field.Store.NO));
+        writer.updateDocument(id, doc);
+    }
+
+    private void commit(long newWatermark) throws IOException {
+        writer.setLiveCommitData(Map.of(COMMIT_WATERMARK, Long.toString(newWatermark)).entrySet());
+        writer.commit();
+        searcherManager.maybeRefresh();
+        watermark = newWatermark;
+    }
+
+    private long readWatermark() {
+        Iterable<Map.Entry<String, String>> data = writer.getLiveCommitData();
+        if (data != null) {
+            for (Map.Entry<String, String> entry : data) {
+                if (COMMIT_WATERMARK.equals(entry.getKey())) {
+                    return Long.parseLong(entry.getValue());
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.collaborative_editor.search;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 搜索索引运维端点
+ * GET /actuator/searchindex 查看本节点索引状态，POST 请求后台全量重建（只作用于本节点）。
+ */
+@Component
+@Endpoint(id = "searchindex")
+@RequiredArgsConstructor
+public class SearchIndexEndpoint {
+
+    private final DocumentSearchIndex documentSearchIndex;
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        return documentSearchIndex.status();
+    }
+
+    @WriteOperation
+    public Map<String, Object> rebuild() {
+        documentSearchIndex.requestRebuild();
+        return documentSearchIndex.status();
+    }
+}
@@ -8,7 +8,9 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.collaborative_editor.context.BaseContext;
 import org.example.collaborative_editor.util.JwtUtil;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
@@ -17,6 +19,8 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 /**
  * JWT 认证过滤器
@@ -28,6 +32,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
 
+    /**
+     * 可访问 health / prometheus 以外监控端点的用户名（授予 ROLE_ADMIN），为空时这些端点不对任何用户开放
+     */
+    @Value("${codoc.actuator.admins:}")
+    private Set<String> actuatorAdmins;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request,
             HttpServletResponse response,
@@ -45,7 +55,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 // 创建认证对象
                 UserPrincipal principal = new UserPrincipal(userId, username);
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(principal,
-                        null, Collections.emptyList());
+                        null, actuatorAdmins.contains(username)
+                                ? List.of(new SimpleGrantedAuthority("ROLE_ADMIN")) : Collections.emptyList());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
                 SecurityContextHolder.getContext().setAuthentication(authentication);
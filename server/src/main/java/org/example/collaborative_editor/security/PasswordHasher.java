@@ -0,0 +1,183 @@
+package org.example.collaborative_editor.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.example.collaborative_editor.constant.MessageConstant;
+import org.example.collaborative_editor.exception.BusinessException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 密码哈希线程池
+ * BCrypt 每次计算数十毫秒 CPU，登录 / 注册不在请求线程上直接计算，而是提交到固定大小的线程池，
+ * 队列满或排队超过 max-wait-ms 时直接拒绝（提示稍后重试）。故障恢复后的登录风暴最多占用
+ * threads + queue-capacity 个请求线程和 threads 个 CPU，其余 Tomcat 线程继续处理文档请求。
+ */
+@Component
+public class PasswordHasher {
+
+    private static final int HTTP_UNAVAILABLE = 503;
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final int strength;
+
+    private final long maxWaitNanos;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Timer encodeTimer;
+    private final Timer verifyTimer;
+    private final Timer rehashTimer;
+    private final Timer waitTimer;
+    private final Counter rejectedFull;
+    private final Counter rejectedTimeout;
+
+    /**
+     * 登录校验结果
+     *
+     * @param matched      密码是否正确
+     * @param upgradedHash 存储的哈希强度与配置不一致时按当前强度重新计算的哈希，否则为 null
+     */
+    public record Verification(boolean matched, String upgradedHash) {
+    }
+
+    public PasswordHasher(PasswordEncoder passwordEncoder, MeterRegistry meterRegistry,
+                          @Value("${codoc.auth.bcrypt-strength:10}") int strength,
+                          @Value("${codoc.auth.hash.threads:0}") int threads,
+                          @Value("${codoc.auth.hash.queue-capacity:64}") int queueCapacity,
+                          @Value("${codoc.auth.hash.max-wait-ms:3000}") long maxWaitMs) {
+        this.passwordEncoder = passwordEncoder;
+        this.strength = strength;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        // 默认只占一半 CPU，给文档请求留出余量
+        int count = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger index = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(count, count, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "password-hash-" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        encodeTimer = hashTimer(meterRegistry, "encode");
+        verifyTimer = hashTimer(meterRegistry, "verify");
+        rehashTimer = hashTimer(meterRegistry, "rehash");
+        waitTimer = Timer.builder("codoc.auth.hash.wait")
+                .description("密码哈希任务在队列中的等待时间")
+                .register(meterRegistry);
+        rejectedFull = rejectedCounter(meterRegistry, "queue_full");
+        rejectedTimeout = rejectedCounter(meterRegistry, "timeout");
+        Gauge.builder("codoc.auth.hash.queue", executor, e -> e.getQueue().size())
+                .description("等待中的密码哈希任务数")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 计算新密码的哈希（注册）
+     */
+    public String encode(String rawPassword) {
+        return submit(() -> record(encodeTimer, () -> passwordEncoder.encode(rawPassword)));
+    }
+
+    /**
+     * 校验密码（登录），强度与配置不一致时在同一任务中按当前强度重新哈希，由调用方写回
+     */
+    public Verification verify(String rawPassword, String encodedPassword) {
+        return submit(() -> {
+            boolean matched = record(verifyTimer, () -> passwordEncoder.matches(rawPassword, encodedPassword));
+            if (!matched || strength(encodedPassword) == strength) {
+                return new Verification(matched, null);
+            }
+            return new Verification(true, record(rehashTimer, () -> passwordEncoder.encode(rawPassword)));
+        });
+    }
+
+    private <T> T submit(Callable<T> task) {
+        long enqueued = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long waited = System.nanoTime() - enqueued;
+                waitTimer.record(waited, TimeUnit.NANOSECONDS);
+                // 排队过久的请求客户端多半已超时，不再计算
+                if (waited > maxWaitNanos) {
+                    rejectedTimeout.increment();
+                    throw new BusinessException(HTTP_UNAVAILABLE, MessageConstant.AUTH_BUSY);
+                }
+                return task.call();
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedFull.increment();
+            throw new BusinessException(HTTP_UNAVAILABLE, MessageConstant.AUTH_BUSY);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new BusinessException(HTTP_UNAVAILABLE, MessageConstant.AUTH_BUSY);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("密码哈希失败", e.getCause());
+        }
+    }
+
+    /**
+     * 解析 BCrypt 哈希（$2a$10$...）中的强度，无法解析时返回 -1
+     */
+    private static int strength(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$') {
+            return -1;
+        }
+        int end = encodedPassword.indexOf('$', 1);
+        try {
+            return Integer.parseInt(encodedPassword.substring(end + 1, end + 3));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static <T> T record(Timer timer, Callable<T> hash) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return hash.call();
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Timer hashTimer(MeterRegistry meterRegistry, String op) {
+        return Timer.builder("codoc.auth.hash")
+                .description("一次 BCrypt 计算的耗时：encode 注册，verify 登录校验，rehash 强度变更后重新哈希")
+                .tag("op", op)
+                .register(meterRegistry);
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("codoc.auth.hash.rejected")
+                .description("被拒绝的密码哈希请求：队列已满（queue_full）/ 排队超时（timeout）")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
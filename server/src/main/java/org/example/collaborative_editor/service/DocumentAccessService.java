@@ -0,0 +1,27 @@
+package org.example.collaborative_editor.service;
+
+/**
+ * 文档访问权限
+ * 连接文档时按 docId + userId 解析角色。结果缓存在 Redis 并通过客户端缓存保留本地副本，
+ * 所有者与协作者关系变化时删除对应 key，各节点的本地副本随之失效。
+ */
+public interface DocumentAccessService {
+
+    /**
+     * 解析用户在文档中的角色
+     *
+     * @return owner / edit / view，无权限时返回 null
+     * @throws org.example.collaborative_editor.exception.BusinessException 文档不存在或已删除
+     */
+    String resolveRole(String docId, Long userId);
+
+    /**
+     * 文档删除后清除缓存的所有者信息
+     */
+    void evictDocument(String docId);
+
+    /**
+     * 协作者加入或权限变更后清除缓存的权限，在事务中调用时提交后才清除
+     */
+    void evictCollaborator(String docId, Long userId);
+}
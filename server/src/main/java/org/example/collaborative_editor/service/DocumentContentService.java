@@ -0,0 +1,71 @@
+package org.example.collaborative_editor.service;
+
+import java.util.function.Consumer;
+
+/**
+ * 文档内容存取
+ * 小文档在 Redis / MySQL 中整体存储；超过阈值的大文档按内容分块存储，只写入和落库变化的块。
+ * Redis 中的内容分为热数据（有人在线，较大的内容以 LZ4 压缩）和温数据（无人在线，Deflate 压缩且带 TTL），都不存在时从 MySQL 加载。
+ */
+public interface DocumentContentService {
+
+    /**
+     * 确保文档内容已缓存在 Redis 中，缺失时从 MySQL 加载
+     */
+    void ensureCached(String docId);
+
+    /**
+     * 按顺序逐块读取文档内容（小文档只有一块），缓存缺失时从 MySQL 加载
+     */
+    void streamBlocks(String docId, Consumer<String> consumer);
+
+    /**
+     * 读取完整文档内容
+     */
+    String load(String docId);
+
+    /**
+     * 读取 MySQL 中已落库的完整内容，不读写 Redis；文档不存在或已删除时返回 null
+     */
+    String loadPersisted(String docId);
+
+    /**
+     * 保存编辑后的完整内容到 Redis
+     */
+    void save(String docId, String content);
+
+    /**
+     * 用编辑日志中的内容恢复热数据：只有 Redis 中记录的编辑时间早于 editedAt（或没有记录）时才写入，
+     * 判断与写入在同一脚本中完成，不会覆盖期间到达的新编辑
+     *
+     * @return 是否已写入
+     */
+    boolean restore(String docId, String content, long editedAt);
+
+    /**
+     * 将 Redis 中的内容同步到 MySQL，Redis 中没有该文档时返回 false
+     */
+    boolean persist(String docId);
+
+    /**
+     * Redis 中是否已有该文档内容
+     */
+    boolean isCached(String docId);
+
+    /**
+     * 删除 Redis 中的文档内容
+     */
+    void evict(String docId);
+
+    /**
+     * 文档在本节点已无在线会话，释放本地缓存
+     */
+    void release(String docId);
+
+    /**
+     * 将已落库的热数据压缩为带 TTL 的温数据并删除热数据；文档仍有未落库的编辑时不降级
+     *
+     * @return 是否已降级
+     */
+    boolean demote(String docId);
+}
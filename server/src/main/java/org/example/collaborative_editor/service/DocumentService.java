@@ -17,14 +17,14 @@ public interface DocumentService {
     Document getDocument(String docId);
 
     /**
-     * 保存文档内容
+     * 获取用户文档列表
      */
-    void saveContent(String docId, String content);
+    java.util.List<DocumentVO> listDocuments(Long userId);
 
     /**
-     * 获取用户文档列表
+     * 在用户有权访问的文档中全文搜索标题和正文，按相关度排序
      */
-    java.util.List<DocumentVO> listDocuments(Long userId);
+    java.util.List<DocumentVO> searchDocuments(Long userId, String keyword);
 
     /**
      * 删除文档
@@ -33,14 +33,21 @@ public interface DocumentService {
 
     /**
      * 生成邀请码
+     *
+     * @param permission 加入后获得的权限：edit / view
      */
-    String createInviteCode(String docId);
+    String createInviteCode(String docId, String permission);
 
     /**
-     * 使用邀请码加入文档
+     * 使用邀请码加入文档，已是只读协作者时可通过编辑邀请码升级为可编辑
      */
     Document joinByInviteCode(String code);
 
+    /**
+     * 校验用户对文档的权限后签发 WebSocket 准入票据
+     */
+    String createTicket(String docId, Long userId, String username);
+
     /**
      * 修改文档标题
      */
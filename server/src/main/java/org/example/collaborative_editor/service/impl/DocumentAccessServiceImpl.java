@@ -0,0 +1,96 @@
+package org.example.collaborative_editor.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.example.collaborative_editor.cache.TrackedRedisCache;
+import org.example.collaborative_editor.constant.MessageConstant;
+import org.example.collaborative_editor.constant.PermissionConstant;
+import org.example.collaborative_editor.constant.RedisKeyConstant;
+import org.example.collaborative_editor.entity.Collaborator;
+import org.example.collaborative_editor.exception.BusinessException;
+import org.example.collaborative_editor.mapper.CollaboratorMapper;
+import org.example.collaborative_editor.mapper.DocumentMapper;
+import org.example.collaborative_editor.service.DocumentAccessService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
+
+@Service
+@RequiredArgsConstructor
+public class DocumentAccessServiceImpl implements DocumentAccessService {
+
+    /**
+     * 缓存中表示“不存在”的值：文档不存在，或用户不是协作者
+     */
+    private static final String NONE = "-";
+
+    private final DocumentMapper documentMapper;
+    private final CollaboratorMapper collaboratorMapper;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final TrackedRedisCache trackedRedisCache;
+
+    /**
+     * 缓存的权限在 Redis 中的 TTL，兜底处理失效与回填并发时留下的旧值
+     */
+    @Value("${codoc.redis.client-cache.acl-ttl-seconds:600}")
+    private long aclTtlSeconds;
+
+    @Override
+    public String resolveRole(String docId, Long userId) {
+        String ownerKey = RedisKeyConstant.DOC_OWNER_PREFIX + docId;
+        String owner = trackedRedisCache.get(ownerKey);
+        if (owner == null) {
+            Long ownerId = documentMapper.getOwnerId(docId);
+            owner = ownerId == null ? NONE : ownerId.toString();
+            redisTemplate.opsForValue().set(ownerKey, owner, aclTtlSeconds, TimeUnit.SECONDS);
+        }
+        if (NONE.equals(owner)) {
+            throw new BusinessException(MessageConstant.DOCUMENT_NOT_FOUND);
+        }
+        if (owner.equals(userId.toString())) {
+            return PermissionConstant.OWNER;
+        }
+
+        String aclKey = aclKey(docId, userId);
+        String permission = trackedRedisCache.get(aclKey);
+        if (permission == null) {
+            Collaborator collaborator = collaboratorMapper.getByDocIdAndUserId(docId, userId);
+            permission = collaborator == null ? NONE : collaborator.getPermission();
+            redisTemplate.opsForValue().set(aclKey, permission, aclTtlSeconds, TimeUnit.SECONDS);
+        }
+        return NONE.equals(permission) ? null : permission;
+    }
+
+    @Override
+    public void evictDocument(String docId) {
+        afterCommit(RedisKeyConstant.DOC_OWNER_PREFIX + docId);
+    }
+
+    @Override
+    public void evictCollaborator(String docId, Long userId) {
+        afterCommit(aclKey(docId, userId));
+    }
+
+    private static String aclKey(String docId, Long userId) {
+        return RedisKeyConstant.DOC_ACL_PREFIX + docId + ":" + userId;
+    }
+
+    /**
+     * 删除缓存 key；在事务中时等提交后再删，避免其他节点在提交前回填旧值
+     */
+    private void afterCommit(String key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            redisTemplate.delete(key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                redisTemplate.delete(key);
+            }
+        });
+    }
+}
@@ -0,0 +1,838 @@
+package org.example.collaborative_editor.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collaborative_editor.cache.ContentCodec;
+import org.example.collaborative_editor.config.BulkRedisTemplate;
+import org.example.collaborative_editor.constant.MessageConstant;
+import org.example.collaborative_editor.constant.RedisKeyConstant;
+import org.example.collaborative_editor.entity.Document;
+import org.example.collaborative_editor.entity.DocumentBlock;
+import org.example.collaborative_editor.exception.BusinessException;
+import org.example.collaborative_editor.mapper.DocumentBlockMapper;
+import org.example.collaborative_editor.mapper.DocumentMapper;
+import org.example.collaborative_editor.service.DocumentContentService;
+import org.example.collaborative_editor.util.ContentChunker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class DocumentContentServiceImpl implements DocumentContentService {
+
+    /**
+     * 每次从 Redis 读取 / 向 MySQL 写入的块数
+     */
+    private static final int BATCH_BLOCKS = 16;
+
+    /**
+     * 整体保存小文档并刷新热数据 TTL，同时删除可能残留的分块存储和温数据；记录编辑时间（只增不减）
+     * KEYS[1] 整体存储的 key，KEYS[2] 分块 HASH，KEYS[3] 温数据，KEYS[4] 编辑时间 HASH；
+     * ARGV[1] 内容，ARGV[2] TTL 秒，ARGV[3] docId，ARGV[4] 编辑时间（空串表示不是编辑，不记录），
+     * ARGV[5] 为 1 时只在已记录的编辑时间早于 ARGV[4] 时写入，否则返回 -1
+     */
+    private static final RedisScript<Long> SAVE_CONTENT_SCRIPT = new DefaultRedisScript<>("""
+            if ARGV[4] ~= '' then
+                local edited = redis.call('HGET', KEYS[4], ARGV[3])
+                if edited and tonumber(edited) >= tonumber(ARGV[4]) then
+                    if ARGV[5] == '1' then
+                        return -1
+                    end
+                else
+                    redis.call('HSET', KEYS[4], ARGV[3], ARGV[4])
+                end
+            end
+            redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2])
+            return redis.call('DEL', KEYS[2], KEYS[3])
+            """, Long.class);
+
+    /**
+     * 写入新块并更新块清单；清单引用的块不存在时（本地缓存过期）不更新清单，返回缺失的块哈希
+     * KEYS[1] 分块 HASH，KEYS[2] 整体存储的 key，KEYS[3] 温数据，KEYS[4] 编辑时间 HASH；
+     * ARGV[1] 块清单，ARGV[2] TTL 秒，ARGV[3..5] 同 SAVE_CONTENT_SCRIPT 的 ARGV[3..5]，ARGV[6..] 为块哈希、块内容交替；
+     * 只在更新时写入且已有更新的编辑时返回 {STALE}
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SAVE_BLOCKS_SCRIPT = new DefaultRedisScript<>("""
+            local edited = ARGV[4] ~= '' and redis.call('HGET', KEYS[4], ARGV[3])
+            local newer = not edited or tonumber(edited) < tonumber(ARGV[4])
+            if ARGV[5] == '1' and not newer then
+                return { 'stale' }
+            end
+            for i = 6, #ARGV, 2 do
+                redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])
+            end
+            local missing = {}
+            for id in string.gmatch(ARGV[1], '[^,]+') do
+                if redis.call('HEXISTS', KEYS[1], id) == 0 then
+                    missing[#missing + 1] = id
+                end
+            end
+            if #missing == 0 then
+                redis.call('HSET', KEYS[1], 'manifest', ARGV[1])
+                redis.call('EXPIRE', KEYS[1], ARGV[2])
+                redis.call('DEL', KEYS[2], KEYS[3])
+                if ARGV[4] ~= '' and newer then
+                    redis.call('HSET', KEYS[4], ARGV[3], ARGV[4])
+                end
+            end
+            return missing
+            """, List.class);
+
+    /**
+     * 写入从温数据 / MySQL 加载的内容：热数据（整体存储或带清单的分块存储）已存在时不写入并返回 0，
+     * 避免覆盖其他节点加载后已应用的编辑；写入后删除温数据与残留的存储形式
+     * KEYS[1] 整体存储的 key，KEYS[2] 分块 HASH，KEYS[3] 温数据；
+     * ARGV[1] TTL 秒，ARGV[2] 为 content 时 ARGV[3] 为整体内容，否则 ARGV[3..] 为分块 HASH 的字段、值交替
+     */
+    private static final RedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 1 or redis.call('HEXISTS', KEYS[2], 'manifest') == 1 then
+                return 0
+            end
+            if ARGV[2] == 'content' then
+                redis.call('SET', KEYS[1], ARGV[3], 'EX', ARGV[1])
+                redis.call('DEL', KEYS[2], KEYS[3])
+            else
+                for i = 3, #ARGV, 2 do
+                    redis.call('HSET', KEYS[2], ARGV[i], ARGV[i + 1])
+                end
+                redis.call('EXPIRE', KEYS[2], ARGV[1])
+                redis.call('DEL', KEYS[3])
+            end
+            return 1
+            """, Long.class);
+
+    /**
+     * SAVE_BLOCKS_SCRIPT 中块参数之前的固定参数个数
+     */
+    private static final int SAVE_BLOCKS_FIXED_ARGS = 5;
+
+    private static final String STALE = "stale";
+
+    /**
+     * 块清单引用的块被其他节点回收时最多补发的轮数
+     */
+    private static final int SAVE_BLOCKS_MAX_ATTEMPTS = 3;
+
+    /**
+     * 删除不再被引用的块：保留当前清单和上一次落库清单中的块，
+     * 使稍早读到旧清单的加入者仍能读到完整内容
+     * KEYS[1] 分块 HASH；ARGV[1] 上一次落库的块清单
+     */
+    private static final RedisScript<Long> GC_BLOCKS_SCRIPT = new DefaultRedisScript<>("""
+            local manifest = redis.call('HGET', KEYS[1], 'manifest')
+            if not manifest then
+                return 0
+            end
+            local keep = { manifest = true, persisted = true }
+            for id in string.gmatch(manifest, '[^,]+') do
+                keep[id] = true
+            end
+            for id in string.gmatch(ARGV[1], '[^,]+') do
+                keep[id] = true
+            end
+            local removed = 0
+            for _, field in ipairs(redis.call('HKEYS', KEYS[1])) do
+                if not keep[field] then
+                    redis.call('HDEL', KEYS[1], field)
+                    removed = removed + 1
+                end
+            end
+            return removed
+            """, Long.class);
+
+    /**
+     * 热数据降为温数据：文档仍为脏（降级前又有编辑）时放弃，否则写入压缩内容并删除热数据与编辑时间
+     * KEYS[1] 整体存储的 key，KEYS[2] 分块 HASH，KEYS[3] 温数据，KEYS[4] 脏文档集合，KEYS[5] 编辑时间 HASH；
+     * ARGV[1] 压缩内容，ARGV[2] TTL 秒，ARGV[3] docId
+     */
+    private static final RedisScript<Long> DEMOTE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('ZSCORE', KEYS[4], ARGV[3]) then
+                return 0
+            end
+            if redis.call('EXISTS', KEYS[1], KEYS[2]) == 0 then
+                return 0
+            end
+            redis.call('SET', KEYS[3], ARGV[1], 'EX', ARGV[2])
+            redis.call('DEL', KEYS[1], KEYS[2])
+            redis.call('HDEL', KEYS[5], ARGV[3])
+            return 1
+            """, Long.class);
+
+    /**
+     * 释放冷文档加载锁：只删除自己持有的锁，超时后已被其他节点重新获取的锁不受影响
+     * KEYS[1] 锁；ARGV[1] 加锁时写入的令牌
+     */
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    /**
+     * 等待其他节点加载时轮询热数据的间隔
+     */
+    private static final long LOAD_POLL_MS = 50;
+
+    /**
+     * 本地版本号记录的条目上限，超过后整体清空（清空后落库时从数据库读取版本号）
+     */
+    private static final int MAX_PERSISTED_STATES = 10000;
+
+    private final DocumentMapper documentMapper;
+    private final DocumentBlockMapper documentBlockMapper;
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 落库与降级读取整篇文档，使用独立连接，不阻塞 EDIT 写入
+     */
+    private final BulkRedisTemplate bulkRedisTemplate;
+
+    /**
+     * 整体内容、块内容与温数据按压缩格式读写，manifest 等字段仍为普通字符串
+     */
+    private final ContentCodec contentCodec;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 内容长度（字符）达到该值时改为分块存储
+     */
+    @Value("${codoc.block.threshold-chars:262144}")
+    private int blockThreshold;
+
+    /**
+     * 热数据 TTL：每次编辑或加载时刷新，节点异常退出未能降级时由 TTL 兜底回收
+     */
+    @Value("${codoc.lifecycle.hot-ttl-hours:24}")
+    private long hotTtlHours;
+
+    /**
+     * 温数据 TTL：过期后文档只保存在 MySQL 中，下次打开时重新加载
+     */
+    @Value("${codoc.lifecycle.warm-ttl-hours:6}")
+    private long warmTtlHours;
+
+    /**
+     * 冷文档加载锁的过期时间，也是等待其他节点加载的最长时间；持锁节点异常退出时由过期释放
+     */
+    @Value("${codoc.lifecycle.load-lock-ttl-ms:5000}")
+    private long loadLockTtlMs;
+
+    /**
+     * 本节点已确认写入 Redis 的块，保存时只发送新块
+     */
+    private final Map<String, Set<String>> knownBlocks = new ConcurrentHashMap<>();
+
+    /**
+     * 本节点最近一次读到或写入的 MySQL 内容版本号，落库时据此条件更新而无需先读取旧行；
+     * 与数据库不一致时（其他节点已写入）更新失败，清除后下次从数据库读取
+     */
+    private final Map<String, PersistedState> persistedStates = new ConcurrentHashMap<>();
+
+    /**
+     * 本节点正在进行的冷文档加载，同一文档的并发打开共用一次加载结果
+     */
+    private final Map<String, CompletableFuture<List<String>>> loading = new ConcurrentHashMap<>();
+
+    private Counter coldLoads;
+    private Counter coalescedLoads;
+    private Counter remoteLoads;
+
+    @PostConstruct
+    public void init() {
+        coldLoads = Counter.builder("codoc.doc.loads")
+                .description("冷文档打开：loaded 为本节点从温数据 / MySQL 加载，coalesced 为等待本节点进行中的加载，remote 为等待其他节点加载")
+                .tag("result", "loaded")
+                .register(meterRegistry);
+        coalescedLoads = Counter.builder("codoc.doc.loads")
+                .description("冷文档打开：loaded 为本节点从温数据 / MySQL 加载，coalesced 为等待本节点进行中的加载，remote 为等待其他节点加载")
+                .tag("result", "coalesced")
+                .register(meterRegistry);
+        remoteLoads = Counter.builder("codoc.doc.loads")
+                .description("冷文档打开：loaded 为本节点从温数据 / MySQL 加载，coalesced 为等待本节点进行中的加载，remote 为等待其他节点加载")
+                .tag("result", "remote")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void ensureCached(String docId) {
+        if (!isCached(docId)) {
+            loadColdOnce(docId);
+        }
+    }
+
+    @Override
+    public void streamBlocks(String docId, Consumer<String> consumer) {
+        if (!streamHot(redisTemplate, docId, consumer)) {
+            loadColdOnce(docId).forEach(consumer);
+        }
+    }
+
+    /**
+     * 加载冷文档：本节点内同一文档只有一个线程加载，其余线程等待同一结果；
+     * 集群内通过 Redis 锁保证只有一个节点读取温数据 / MySQL，其他节点等待热数据出现
+     */
+    private List<String> loadColdOnce(String docId) {
+        CompletableFuture<List<String>> future = new CompletableFuture<>();
+        CompletableFuture<List<String>> inflight = loading.putIfAbsent(docId, future);
+        if (inflight != null) {
+            coalescedLoads.increment();
+            return await(docId, inflight);
+        }
+        try {
+            future.complete(loadColdLocked(docId));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        } finally {
+            loading.remove(docId, future);
+        }
+        return await(docId, future);
+    }
+
+    private List<String> loadColdLocked(String docId) {
+        String lockKey = RedisKeyConstant.DOC_LOAD_LOCK_PREFIX + docId;
+        String token = UUID.randomUUID().toString();
+        long deadline = System.currentTimeMillis() + loadLockTtlMs;
+        boolean waited = false;
+        while (true) {
+            Boolean locked = redisTemplate.opsForValue().setIfAbsent(lockKey, token, loadLockTtlMs, TimeUnit.MILLISECONDS);
+            if (Boolean.TRUE.equals(locked)) {
+                break;
+            }
+            // 其他节点正在加载，等待热数据出现；超过锁的过期时间仍未出现时自行加载
+            waited = true;
+            List<String> blocks = new ArrayList<>();
+            if (streamHot(redisTemplate, docId, blocks::add)) {
+                remoteLoads.increment();
+                return blocks;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                log.warn("等待其他节点加载文档超时，本节点加载: {}", docId);
+                break;
+            }
+            try {
+                Thread.sleep(LOAD_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待文档加载被中断: " + docId, e);
+            }
+        }
+        try {
+            if (waited) {
+                // 拿到锁前上一个持锁节点可能刚加载完成
+                List<String> blocks = new ArrayList<>();
+                if (streamHot(redisTemplate, docId, blocks::add)) {
+                    remoteLoads.increment();
+                    return blocks;
+                }
+            }
+            coldLoads.increment();
+            return loadCold(docId);
+        } finally {
+            redisTemplate.execute(UNLOCK_SCRIPT, List.of(lockKey), token);
+        }
+    }
+
+    private List<String> await(String docId, CompletableFuture<List<String>> future) {
+        try {
+            // 加载方自身最多等待一个锁周期再读取数据库，留出同样的时间
+            return future.get(loadLockTtlMs * 2, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("文档加载失败: " + docId, e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("等待文档加载超时: " + docId, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待文档加载被中断: " + docId, e);
+        }
+    }
+
+    /**
+     * 从热数据按顺序逐块读取，热数据不存在时返回 false
+     */
+    private boolean streamHot(RedisTemplate<String, Object> template, String docId, Consumer<String> consumer) {
+        String content = getContent(template, RedisKeyConstant.DOC_PREFIX + docId);
+        if (content != null) {
+            consumer.accept(content);
+            return true;
+        }
+
+        String blocksKey = RedisKeyConstant.DOC_BLOCKS_PREFIX + docId;
+        String manifest = (String) template.opsForHash().get(blocksKey, RedisKeyConstant.BLOCK_MANIFEST_FIELD);
+        if (manifest == null) {
+            return false;
+        }
+
+        // 按清单顺序分批读取，读到一批发送一批，不拼接完整内容
+        List<String> ids = parseManifest(manifest);
+        for (int from = 0; from < ids.size(); from += BATCH_BLOCKS) {
+            List<String> fields = ids.subList(from, Math.min(ids.size(), from + BATCH_BLOCKS));
+            List<String> blocks = getBlocks(template, blocksKey, fields);
+            for (int i = 0; i < blocks.size(); i++) {
+                if (blocks.get(i) == null) {
+                    throw new IllegalStateException("文档块缺失: " + docId + "/" + fields.get(i));
+                }
+                consumer.accept(blocks.get(i));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 热数据不存在时依次从温数据、MySQL 加载并提升为热数据
+     */
+    private List<String> loadCold(String docId) {
+        byte[] warm = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(utf8(RedisKeyConstant.DOC_WARM_PREFIX + docId)));
+        if (warm == null) {
+            return loadFromDatabase(docId);
+        }
+        String content = contentCodec.decodeWarm(warm);
+        // 温数据与 MySQL 一致，提升后无需标脏
+        if (content.length() < blockThreshold) {
+            return writeLoaded(docId, List.of(content), null, null);
+        }
+        List<String> blocks = ContentChunker.split(content);
+        List<String> ids = blocks.stream().map(ContentChunker::blockId).toList();
+        List<String> result = writeLoaded(docId, blocks, ids, String.join(",", ids));
+        log.debug("文档 {} 由温数据提升为热数据", docId);
+        return result;
+    }
+
+    /**
+     * 热数据不存在时把加载的内容写为热数据，返回写入的块；其他节点已写入（可能已有编辑）时不覆盖，返回重新读取的热数据
+     *
+     * @param ids      各块的哈希，与 blocks 一一对应；整体存储时为 null
+     * @param manifest 块清单，同时记为已落库的清单；整体存储时为 null
+     */
+    private List<String> writeLoaded(String docId, List<String> blocks, List<String> ids, String manifest) {
+        List<byte[]> args = new ArrayList<>();
+        args.add(utf8(String.valueOf(TimeUnit.HOURS.toSeconds(hotTtlHours))));
+        if (manifest == null) {
+            args.add(utf8("content"));
+            args.add(contentCodec.encode(blocks.get(0)));
+        } else {
+            args.add(utf8("blocks"));
+            Set<String> written = new HashSet<>();
+            for (int i = 0; i < ids.size(); i++) {
+                if (written.add(ids.get(i))) {
+                    args.add(utf8(ids.get(i)));
+                    args.add(contentCodec.encode(blocks.get(i)));
+                }
+            }
+            args.add(utf8(RedisKeyConstant.BLOCK_MANIFEST_FIELD));
+            args.add(utf8(manifest));
+            args.add(utf8(RedisKeyConstant.BLOCK_PERSISTED_FIELD));
+            args.add(utf8(manifest));
+        }
+        Long written = redisTemplate.execute(LOAD_SCRIPT, RedisSerializer.byteArray(),
+                new GenericToStringSerializer<>(Long.class),
+                List.of(RedisKeyConstant.DOC_PREFIX + docId, RedisKeyConstant.DOC_BLOCKS_PREFIX + docId,
+                        RedisKeyConstant.DOC_WARM_PREFIX + docId),
+                args.toArray());
+        if (written != null && written == 1) {
+            if (ids == null) {
+                knownBlocks.remove(docId);
+            } else {
+                knownBlocks.computeIfAbsent(docId, k -> ConcurrentHashMap.newKeySet()).addAll(ids);
+            }
+            return blocks;
+        }
+        log.debug("文档 {} 已由其他节点加载，读取热数据", docId);
+        List<String> current = new ArrayList<>();
+        return streamHot(redisTemplate, docId, current::add) ? current : blocks;
+    }
+
+    @Override
+    public String load(String docId) {
+        StringBuilder content = new StringBuilder();
+        streamBlocks(docId, content::append);
+        return content.toString();
+    }
+
+    @Override
+    public void save(String docId, String content) {
+        writeHot(docId, content, false, System.currentTimeMillis(), false);
+    }
+
+    @Override
+    public boolean restore(String docId, String content, long editedAt) {
+        return writeHot(docId, content, false, editedAt, true);
+    }
+
+    /**
+     * 写入热数据
+     *
+     * @param persisted   内容是否与 MySQL 一致（从温数据提升时），分块存储时据此记录已落库的块清单
+     * @param editedAt    编辑时间戳毫秒，0 表示不是编辑（从温数据提升），不记录编辑时间
+     * @param onlyIfNewer 只在 Redis 中记录的编辑时间早于 editedAt 时写入
+     * @return 是否已写入
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private boolean writeHot(String docId, String content, boolean persisted, long editedAt, boolean onlyIfNewer) {
+        String docKey = RedisKeyConstant.DOC_PREFIX + docId;
+        String blocksKey = RedisKeyConstant.DOC_BLOCKS_PREFIX + docId;
+        String warmKey = RedisKeyConstant.DOC_WARM_PREFIX + docId;
+        byte[] ttl = utf8(String.valueOf(TimeUnit.HOURS.toSeconds(hotTtlHours)));
+        byte[] edited = utf8(editedAt > 0 ? String.valueOf(editedAt) : "");
+        byte[] conditional = utf8(onlyIfNewer ? "1" : "0");
+        if (content.length() < blockThreshold) {
+            Long result = redisTemplate.execute(SAVE_CONTENT_SCRIPT, RedisSerializer.byteArray(),
+                    new GenericToStringSerializer<>(Long.class),
+                    List.of(docKey, blocksKey, warmKey, RedisKeyConstant.DOC_EDITED_AT),
+                    contentCodec.encode(content), ttl, utf8(docId), edited, conditional);
+            knownBlocks.remove(docId);
+            return result == null || result >= 0;
+        }
+
+        List<String> blocks = ContentChunker.split(content);
+        Set<String> known = knownBlocks.computeIfAbsent(docId, k -> ConcurrentHashMap.newKeySet());
+        Map<String, String> byId = new LinkedHashMap<>();
+        StringBuilder manifest = new StringBuilder(blocks.size() * 17);
+        for (String block : blocks) {
+            String id = ContentChunker.blockId(block);
+            byId.putIfAbsent(id, block);
+            if (!manifest.isEmpty()) {
+                manifest.append(',');
+            }
+            manifest.append(id);
+        }
+
+        // 只发送本节点未写过的块，未变化的块不再传输
+        List<byte[]> args = new ArrayList<>();
+        args.add(utf8(manifest.toString()));
+        args.add(ttl);
+        args.add(utf8(docId));
+        args.add(edited);
+        args.add(conditional);
+        byId.forEach((id, block) -> {
+            if (!known.contains(id)) {
+                args.add(utf8(id));
+                args.add(contentCodec.encode(block));
+            }
+        });
+        List<String> keys = List.of(blocksKey, docKey, warmKey, RedisKeyConstant.DOC_EDITED_AT);
+        RedisSerializer resultSerializer = RedisSerializer.string();
+        for (int attempt = 1; ; attempt++) {
+            List<Object> missing = redisTemplate.execute(SAVE_BLOCKS_SCRIPT, RedisSerializer.byteArray(),
+                    resultSerializer, keys, args.toArray());
+            if (missing != null && missing.contains(STALE)) {
+                return false;
+            }
+            if (missing == null || missing.isEmpty()) {
+                break;
+            }
+            // 其他节点已回收了本地认为存在的块（补发期间可能再次回收），补发后重试，清单写入成功前不记为已写入
+            missing.forEach(known::remove);
+            if (attempt >= SAVE_BLOCKS_MAX_ATTEMPTS) {
+                throw new IllegalStateException("文档块补发后仍缺失: " + docId + "/" + missing);
+            }
+            log.debug("文档 {} 有 {} 个块需要补发", docId, missing.size());
+            args.subList(SAVE_BLOCKS_FIXED_ARGS, args.size()).clear();
+            for (Object id : missing) {
+                args.add(utf8((String) id));
+                args.add(contentCodec.encode(byId.get((String) id)));
+            }
+        }
+        known.addAll(byId.keySet());
+        if (persisted) {
+            redisTemplate.opsForHash().put(blocksKey, RedisKeyConstant.BLOCK_PERSISTED_FIELD, manifest.toString());
+        }
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public boolean persist(String docId) {
+        // 先确定版本号再读取 Redis：读到的内容不会早于该版本已落库的内容
+        PersistedState state = persistedStates.get(docId);
+        if (state == null) {
+            Document row = documentMapper.getContentVersion(docId);
+            if (row == null) {
+                log.debug("文档 {} 已删除，跳过落库", docId);
+                return true;
+            }
+            state = new PersistedState(row.getVersion(), row.getBlockManifest() != null);
+        }
+        // 编辑时间先于内容读取：记录的时间不晚于本次落库内容中最新的编辑
+        Object edited = bulkRedisTemplate.opsForHash().get(RedisKeyConstant.DOC_EDITED_AT, docId);
+        Long editedAt = edited == null ? null : Long.valueOf(edited.toString());
+
+        String content = getContent(bulkRedisTemplate, RedisKeyConstant.DOC_PREFIX + docId);
+        if (content != null) {
+            persistContent(docId, content, state, editedAt);
+            return true;
+        }
+
+        String blocksKey = RedisKeyConstant.DOC_BLOCKS_PREFIX + docId;
+        List<Object> manifests = bulkRedisTemplate.opsForHash().multiGet(blocksKey,
+                List.of(RedisKeyConstant.BLOCK_MANIFEST_FIELD, RedisKeyConstant.BLOCK_PERSISTED_FIELD));
+        String manifest = (String) manifests.get(0);
+        if (manifest == null) {
+            return false;
+        }
+        if (manifest.equals(manifests.get(1))) {
+            return true;
+        }
+
+        // 以 MySQL 中的块清单为准计算增删（Redis 中的已落库清单可能因故障切换或重新加载而缺失）
+        Document row = documentMapper.getContentVersion(docId);
+        if (row == null) {
+            log.debug("文档 {} 已删除，跳过落库", docId);
+            return true;
+        }
+        String persisted = row.getBlockManifest();
+
+        // 只写入新增的块，删除不再引用的块，落库开销与编辑量成正比
+        Set<String> current = new LinkedHashSet<>(parseManifest(manifest));
+        Set<String> previous = new LinkedHashSet<>(parseManifest(persisted));
+        List<String> added = current.stream().filter(id -> !previous.contains(id)).toList();
+
+        for (int from = 0; from < added.size(); from += BATCH_BLOCKS) {
+            List<String> fields = added.subList(from, Math.min(added.size(), from + BATCH_BLOCKS));
+            List<String> texts = getBlocks(bulkRedisTemplate, blocksKey, fields);
+            List<DocumentBlock> rows = new ArrayList<>(fields.size());
+            for (int i = 0; i < fields.size(); i++) {
+                if (texts.get(i) == null) {
+                    throw new IllegalStateException("文档块缺失: " + docId + "/" + fields.get(i));
+                }
+                rows.add(DocumentBlock.builder()
+                        .docId(docId)
+                        .blockHash(fields.get(i))
+                        .content(texts.get(i))
+                        .build());
+            }
+            documentBlockMapper.insertBatch(rows);
+        }
+
+        Document document = Document.builder()
+                .docId(docId)
+                .blockManifest(manifest)
+                // 首次改为分块存储时清空整体内容字段
+                .content(persisted == null ? "" : null)
+                .version(state.version())
+                .contentEditedAt(editedAt)
+                .build();
+        updateVersioned(document, true);
+        // 版本号校验通过后本事务独占该文档的块，删除新清单之外的所有块（包括以往遗留的）
+        int removed = documentBlockMapper.deleteUnreferenced(docId, manifest);
+
+        bulkRedisTemplate.opsForHash().put(blocksKey, RedisKeyConstant.BLOCK_PERSISTED_FIELD, manifest);
+        bulkRedisTemplate.execute(GC_BLOCKS_SCRIPT, List.of(blocksKey), persisted == null ? "" : persisted);
+        log.debug("文档 {} 分块落库: 新增 {} 块, 删除 {} 块, 共 {} 块", docId, added.size(), removed, current.size());
+        return true;
+    }
+
+    /**
+     * 整体保存小文档；之前为分块存储时清理块数据
+     */
+    private void persistContent(String docId, String content, PersistedState state, Long editedAt) {
+        if (state.blocks()) {
+            documentBlockMapper.deleteByDocId(docId);
+            documentMapper.clearBlockManifest(docId);
+        }
+        updateVersioned(Document.builder()
+                .docId(docId)
+                .content(content)
+                .version(state.version())
+                .contentEditedAt(editedAt)
+                .build(), false);
+    }
+
+    /**
+     * 按版本号条件更新内容，版本号不一致时抛出异常回滚本次落库
+     */
+    private void updateVersioned(Document document, boolean blocks) {
+        String docId = document.getDocId();
+        if (documentMapper.updateContent(document) == 0) {
+            persistedStates.remove(docId);
+            throw new OptimisticLockingFailureException("文档 " + docId + " 已被其他节点更新或已删除，版本号 " + document.getVersion());
+        }
+        // 事务回滚时记录的版本号偏大，下次更新失败后会重新读取
+        rememberState(docId, new PersistedState(document.getVersion() + 1, blocks));
+    }
+
+    private void rememberState(String docId, PersistedState state) {
+        if (persistedStates.size() >= MAX_PERSISTED_STATES) {
+            persistedStates.clear();
+        }
+        persistedStates.put(docId, state);
+    }
+
+    @Override
+    public boolean isCached(String docId) {
+        Long count = redisTemplate.countExistingKeys(List.of(
+                RedisKeyConstant.DOC_PREFIX + docId,
+                RedisKeyConstant.DOC_BLOCKS_PREFIX + docId,
+                RedisKeyConstant.DOC_WARM_PREFIX + docId));
+        return count != null && count > 0;
+    }
+
+    @Override
+    public void evict(String docId) {
+        redisTemplate.delete(List.of(
+                RedisKeyConstant.DOC_PREFIX + docId,
+                RedisKeyConstant.DOC_BLOCKS_PREFIX + docId,
+                RedisKeyConstant.DOC_WARM_PREFIX + docId));
+        redisTemplate.opsForHash().delete(RedisKeyConstant.DOC_EDITED_AT, docId);
+        knownBlocks.remove(docId);
+        persistedStates.remove(docId);
+    }
+
+    @Override
+    public void release(String docId) {
+        knownBlocks.remove(docId);
+        persistedStates.remove(docId);
+    }
+
+    @Override
+    public boolean demote(String docId) {
+        StringBuilder content = new StringBuilder();
+        if (!streamHot(bulkRedisTemplate, docId, content::append)) {
+            return false;
+        }
+        byte[] compressed = contentCodec.encodeWarm(content.toString());
+        List<String> keys = List.of(
+                RedisKeyConstant.DOC_PREFIX + docId,
+                RedisKeyConstant.DOC_BLOCKS_PREFIX + docId,
+                RedisKeyConstant.DOC_WARM_PREFIX + docId,
+                RedisKeyConstant.DIRTY_DOCS,
+                RedisKeyConstant.DOC_EDITED_AT);
+        byte[] ttl = utf8(String.valueOf(TimeUnit.HOURS.toSeconds(warmTtlHours)));
+        Long result = bulkRedisTemplate.execute(DEMOTE_SCRIPT, RedisSerializer.byteArray(),
+                new GenericToStringSerializer<>(Long.class),
+                keys, compressed, ttl, utf8(docId));
+        knownBlocks.remove(docId);
+        return result != null && result == 1;
+    }
+
+    /**
+     * 从 MySQL 加载文档内容并写回 Redis，返回按顺序排列的块
+     */
+    private List<String> loadFromDatabase(String docId) {
+        Document document = documentMapper.getByDocId(docId);
+        if (document == null) {
+            throw new BusinessException(MessageConstant.DOCUMENT_NOT_FOUND);
+        }
+        rememberState(docId, new PersistedState(document.getVersion(), document.getBlockManifest() != null));
+
+        if (document.getBlockManifest() == null) {
+            String content = document.getContent() == null ? "" : document.getContent();
+            return writeLoaded(docId, List.of(content), null, null);
+        }
+
+        List<String> ids = parseManifest(document.getBlockManifest());
+        List<String> blocks = orderedBlocks(docId, ids, listPersistedBlocks(docId));
+        return writeLoaded(docId, blocks, ids, document.getBlockManifest());
+    }
+
+    @Override
+    public String loadPersisted(String docId) {
+        Document document = documentMapper.getByDocId(docId);
+        if (document == null) {
+            return null;
+        }
+        if (document.getBlockManifest() == null) {
+            return document.getContent() == null ? "" : document.getContent();
+        }
+        List<String> ids = parseManifest(document.getBlockManifest());
+        return String.join("", orderedBlocks(docId, ids, listPersistedBlocks(docId)));
+    }
+
+    private Map<String, String> listPersistedBlocks(String docId) {
+        Map<String, String> byHash = new HashMap<>();
+        for (DocumentBlock block : documentBlockMapper.listByDocId(docId)) {
+            byHash.put(block.getBlockHash(), block.getContent());
+        }
+        return byHash;
+    }
+
+    /**
+     * 按块清单顺序排列块内容，清单中的块缺失时抛出异常
+     */
+    private static List<String> orderedBlocks(String docId, List<String> ids, Map<String, String> byHash) {
+        List<String> blocks = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            String block = byHash.get(id);
+            if (block == null) {
+                throw new IllegalStateException("文档块缺失: " + docId + "/" + id);
+            }
+            blocks.add(block);
+        }
+        return blocks;
+    }
+
+    /**
+     * 读取整体存储的内容，不存在时返回 null
+     */
+    private String getContent(RedisTemplate<String, Object> template, String key) {
+        return contentCodec.decode(template.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(utf8(key))));
+    }
+
+    /**
+     * 按字段顺序读取块内容，缺失的块为 null
+     */
+    private List<String> getBlocks(RedisTemplate<String, Object> template, String blocksKey, List<String> ids) {
+        byte[][] fields = ids.stream().map(DocumentContentServiceImpl::utf8).toArray(byte[][]::new);
+        List<byte[]> values = template.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.hashCommands().hMGet(utf8(blocksKey), fields));
+        List<String> blocks = new ArrayList<>(ids.size());
+        for (byte[] value : values) {
+            blocks.add(contentCodec.decode(value));
+        }
+        return blocks;
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 数据库中的内容版本号，以及内容是否为分块存储
+     */
+    private record PersistedState(int version, boolean blocks) {
+    }
+
+    private static List<String> parseManifest(String manifest) {
+        if (manifest == null || manifest.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.asList(manifest.split(","));
+    }
+}
@@ -5,22 +5,33 @@ import lombok.extern.slf4j.Slf4j;
 import org.example.collaborative_editor.common.Result;
 import org.example.collaborative_editor.context.BaseContext;
 import org.example.collaborative_editor.constant.MessageConstant;
+import org.example.collaborative_editor.constant.PermissionConstant;
+import org.example.collaborative_editor.constant.RedisKeyConstant;
 import org.example.collaborative_editor.constant.StatusConstant;
 import org.example.collaborative_editor.entity.Document;
 import org.example.collaborative_editor.exception.BusinessException;
 import org.example.collaborative_editor.entity.Collaborator;
 import org.example.collaborative_editor.mapper.CollaboratorMapper;
 import org.example.collaborative_editor.mapper.DocumentMapper;
+import org.example.collaborative_editor.search.DocumentSearchIndex;
+import org.example.collaborative_editor.service.DocumentAccessService;
+import org.example.collaborative_editor.service.DocumentContentService;
 import org.example.collaborative_editor.service.DocumentService;
+import org.example.collaborative_editor.ws.AdmissionTickets;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.example.collaborative_editor.vo.DocumentVO;
 
@@ -32,6 +43,10 @@ public class DocumentServiceImpl implements DocumentService {
     private final DocumentMapper documentMapper;
     private final CollaboratorMapper collaboratorMapper;
     private final RedisTemplate<String, Object> redisTemplate;
+    private final DocumentContentService documentContentService;
+    private final DocumentSearchIndex documentSearchIndex;
+    private final DocumentAccessService documentAccessService;
+    private final AdmissionTickets admissionTickets;
 
     @Override
     @Transactional
@@ -44,6 +59,7 @@ public class DocumentServiceImpl implements DocumentService {
                 .content("")
                 .build(); // 默认内容为空
         documentMapper.insert(document);
+        documentSearchIndex.markChanged(document.getDocId());
         return document;
     }
 
@@ -56,15 +72,6 @@ public class DocumentServiceImpl implements DocumentService {
         return document;
     }
 
-    @Override
-    public void saveContent(String docId, String content) {
-        Document document = documentMapper.getByDocId(docId);
-        if (document != null) {
-            document.setContent(content);
-            documentMapper.update(document);
-        }
-    }
-
     @Override
     public java.util.List<DocumentVO> listDocuments(Long userId) {
         // 1. 获取自己创建的文档
@@ -90,24 +97,56 @@ public class DocumentServiceImpl implements DocumentService {
         return result;
     }
 
+    @Override
+    public List<DocumentVO> searchDocuments(Long userId, String keyword) {
+        if (!documentSearchIndex.isEnabled()) {
+            throw new BusinessException(MessageConstant.SEARCH_DISABLED);
+        }
+        if (keyword == null || keyword.isBlank()) {
+            return List.of();
+        }
+        Set<String> collabDocIds = new HashSet<>(collaboratorMapper.listDocIdsByUserId(userId));
+        List<String> hits = documentSearchIndex.search(keyword, userId, collabDocIds);
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+
+        // 索引可能落后于删除和权限变更，以数据库为准再过滤一次，并保持相关度顺序
+        Map<String, DocumentVO> byId = documentMapper.listSummaryByIds(hits).stream()
+                .filter(doc -> doc.getOwnerId().equals(userId) || collabDocIds.contains(doc.getDocId()))
+                .collect(Collectors.toMap(DocumentVO::getDocId, Function.identity()));
+        List<DocumentVO> result = new ArrayList<>(byId.size());
+        for (String docId : hits) {
+            DocumentVO doc = byId.get(docId);
+            if (doc != null) {
+                result.add(doc);
+            }
+        }
+        return result;
+    }
+
     @Override
     public void deleteDocument(String docId) {
-        Document document = documentMapper.getByDocId(docId);
-        if (document == null) {
+        Long ownerId = documentMapper.getOwnerId(docId);
+        if (ownerId == null) {
             throw new BusinessException(MessageConstant.DOCUMENT_NOT_FOUND);
         }
 
         Long currentUserId = BaseContext.getCurrentId();
-        if (!document.getOwnerId().equals(currentUserId)) {
+        if (!ownerId.equals(currentUserId)) {
             throw new BusinessException(MessageConstant.DOCUMENT_NO_PERMISSION);
         }
 
-        document.setStatus(StatusConstant.DISABLE);
-        documentMapper.update(document);
+        // 只更新状态列，不读取、不回写内容
+        documentMapper.update(Document.builder().docId(docId).status(StatusConstant.DISABLE).build());
 
         // 删除Redis缓存
-        redisTemplate.delete("doc:" + docId);
-        redisTemplate.opsForSet().remove("dirty_docs", docId);
+        documentContentService.evict(docId);
+        redisTemplate.opsForZSet().remove(RedisKeyConstant.DIRTY_DOCS, docId);
+        redisTemplate.opsForZSet().remove(RedisKeyConstant.DIRTY_TOUCHED, docId);
+        documentSearchIndex.markChanged(docId);
+        documentAccessService.evictDocument(docId);
+        admissionTickets.revoke(docId);
 
         // 广播删除消息
         org.example.collaborative_editor.ws.EditorServer.broadcastSystemMessage(
@@ -117,7 +156,10 @@ public class DocumentServiceImpl implements DocumentService {
     }
 
     @Override
-    public String createInviteCode(String docId) {
+    public String createInviteCode(String docId, String permission) {
+        if (!PermissionConstant.EDIT.equals(permission) && !PermissionConstant.VIEW.equals(permission)) {
+            throw new BusinessException(MessageConstant.PERMISSION_INVALID);
+        }
         // 检查文档是否存在
         Document document = documentMapper.getByDocId(docId);
         if (document == null) {
@@ -131,8 +173,11 @@ public class DocumentServiceImpl implements DocumentService {
 
         // 生成随机码
         String code = UUID.randomUUID().toString().replace("-", "").substring(0, 8);
-        // 存入Redis，有效期24小时
-        redisTemplate.opsForValue().set("invite:" + code, docId, 24, TimeUnit.HOURS);
+        // 存入Redis，有效期24小时；只读邀请在 docId 后附加权限
+        String value = PermissionConstant.VIEW.equals(permission)
+                ? docId + RedisKeyConstant.INVITE_PERMISSION_SEPARATOR + permission
+                : docId;
+        redisTemplate.opsForValue().set(RedisKeyConstant.INVITE_PREFIX + code, value, 24, TimeUnit.HOURS);
         return code;
     }
 
@@ -140,10 +185,17 @@ public class DocumentServiceImpl implements DocumentService {
     @Transactional
     public Document joinByInviteCode(String code) {
         // 验证邀请码
-        String docId = (String) redisTemplate.opsForValue().get("invite:" + code);
-        if (docId == null) {
+        String value = (String) redisTemplate.opsForValue().get(RedisKeyConstant.INVITE_PREFIX + code);
+        if (value == null) {
             throw new BusinessException(MessageConstant.INVITE_CODE_INVALID);
         }
+        String docId = value;
+        String permission = PermissionConstant.EDIT;
+        int separator = value.indexOf(RedisKeyConstant.INVITE_PERMISSION_SEPARATOR);
+        if (separator >= 0) {
+            docId = value.substring(0, separator);
+            permission = value.substring(separator + 1);
+        }
 
         // 检查文档
         Document document = documentMapper.getByDocId(docId);
@@ -164,29 +216,45 @@ public class DocumentServiceImpl implements DocumentService {
             collaborator = Collaborator.builder()
                     .docId(docId)
                     .userId(currentUserId)
+                    .permission(permission)
                     .createTime(LocalDateTime.now())
                     .build();
             collaboratorMapper.insert(collaborator);
+            documentAccessService.evictCollaborator(docId, currentUserId);
+        } else if (PermissionConstant.VIEW.equals(collaborator.getPermission())
+                && PermissionConstant.EDIT.equals(permission)) {
+            // 只升级不降级
+            collaboratorMapper.updatePermission(docId, currentUserId, permission);
+            documentAccessService.evictCollaborator(docId, currentUserId);
         }
 
         return document;
     }
 
+    @Override
+    public String createTicket(String docId, Long userId, String username) {
+        String role = documentAccessService.resolveRole(docId, userId);
+        if (role == null) {
+            throw new BusinessException(MessageConstant.DOCUMENT_NO_PERMISSION);
+        }
+        return admissionTickets.issue(docId, userId, role, username);
+    }
+
     @Override
     public void updateTitle(String docId, String title) {
-        Document document = documentMapper.getByDocId(docId);
-        if (document == null) {
+        Long ownerId = documentMapper.getOwnerId(docId);
+        if (ownerId == null) {
             throw new BusinessException(MessageConstant.DOCUMENT_NOT_FOUND);
         }
         
         // 权限检查：只有所有者可以修改标题
         Long currentUserId = BaseContext.getCurrentId();
-        if (!document.getOwnerId().equals(currentUserId)) {
+        if (!ownerId.equals(currentUserId)) {
             throw new BusinessException(MessageConstant.DOCUMENT_NO_PERMISSION);
         }
 
-        document.setTitle(title);
-        document.setUpdateTime(LocalDateTime.now());
-        documentMapper.update(document);
+        // 只更新标题列（更新时间由 AutoFill 填充），不读取、不回写内容
+        documentMapper.update(Document.builder().docId(docId).title(title).build());
+        documentSearchIndex.markChanged(docId);
     }
 }
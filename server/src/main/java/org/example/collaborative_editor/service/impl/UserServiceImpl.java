@@ -10,9 +10,9 @@ import org.example.collaborative_editor.dto.RegisterRequest;
 import org.example.collaborative_editor.entity.User;
 import org.example.collaborative_editor.exception.BusinessException;
 import org.example.collaborative_editor.mapper.UserMapper;
+import org.example.collaborative_editor.security.PasswordHasher;
 import org.example.collaborative_editor.service.UserService;
 import org.example.collaborative_editor.util.JwtUtil;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 /**
@@ -24,7 +24,7 @@ import org.springframework.stereotype.Service;
 public class UserServiceImpl implements UserService {
 
     private final UserMapper userMapper;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
     private final JwtUtil jwtUtil;
     
     @Override
@@ -46,7 +46,7 @@ public class UserServiceImpl implements UserService {
         // 创建用户
         User user = new User();
         user.setUsername(request.getUsername());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(passwordHasher.encode(request.getPassword()));
         user.setNickname(request.getNickname() != null ? request.getNickname() : request.getUsername());
         user.setEmail(request.getEmail());
         user.setStatus(StatusConstant.ENABLE);
@@ -72,11 +72,20 @@ public class UserServiceImpl implements UserService {
             throw new BusinessException(MessageConstant.ACCOUNT_DISABLED);
         }
 
-        // 验证密码
-        if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
+        // 验证密码（在独立的哈希线程池中计算）
+        PasswordHasher.Verification verification = passwordHasher.verify(request.getPassword(), user.getPassword());
+        if (!verification.matched()) {
             log.debug("密码验证失败: username={}", request.getUsername());
             throw new BusinessException(MessageConstant.PASSWORD_ERROR);
         }
+        // 哈希强度已调整，写回按新强度计算的哈希
+        if (verification.upgradedHash() != null) {
+            User upgrade = new User();
+            upgrade.setId(user.getId());
+            upgrade.setPassword(verification.upgradedHash());
+            userMapper.update(upgrade);
+            log.debug("密码哈希已升级: userId={}", user.getId());
+        }
 
         // 生成 JWT
         String token = jwtUtil.generateToken(user.getId(), user.getUsername());
@@ -2,59 +2,305 @@ package org.example.collaborative_editor.task;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.example.collaborative_editor.service.DocumentService;
+import org.example.collaborative_editor.config.BulkRedisTemplate;
+import org.example.collaborative_editor.constant.RedisKeyConstant;
+import org.example.collaborative_editor.journal.EditJournal;
+import org.example.collaborative_editor.metrics.EditorMetrics;
+import org.example.collaborative_editor.search.DocumentSearchIndex;
+import org.example.collaborative_editor.service.DocumentContentService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 /**
- * 文档同步定时任务
- * 负责将 Redis 中的文档内容同步到 MySQL
+ * 文档同步任务
+ * 负责将 Redis 中的文档内容同步到 MySQL。每个脏文档单独调度：停止编辑 quiet-ms 后落库，
+ * 持续编辑时最迟在首次标脏 max-delay-ms 后落库；到期的文档按标脏时间从早到晚处理（脏集合本身即按标脏时间排序的队列），
+ * 每秒写入数受集群预算 max-writes-per-second 限制，各节点按持有的分区（SyncPartitions）比例分摊预算与文档。
  */
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class DocumentSyncTask {
 
+    /**
+     * 标脏：保留首次标脏时间，同时记录最近一次编辑时间
+     * KEYS[1] 脏文档集合，KEYS[2] 最近编辑时间；ARGV[1] docId，ARGV[2] 当前时间戳毫秒
+     */
+    private static final RedisScript<Long> MARK_DIRTY_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('ZADD', KEYS[2], ARGV[2], ARGV[1])
+            return redis.call('ZADD', KEYS[1], 'NX', ARGV[2], ARGV[1])
+            """, Long.class);
+
+    /**
+     * 认领一个脏文档：从两个集合中移除，只有移除成功的节点负责落库；期间若有新的编辑会重新标脏，不会丢失
+     * KEYS[1] 脏文档集合，KEYS[2] 最近编辑时间；ARGV[1] docId
+     */
+    private static final RedisScript<Long> CLAIM_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('ZREM', KEYS[1], ARGV[1]) == 0 then
+                return 0
+            end
+            redis.call('ZREM', KEYS[2], ARGV[1])
+            return 1
+            """, Long.class);
+
+    /**
+     * 从旧版脏文档 SET 中弹出一批移入 ZSET；弹出与写入在同一脚本中完成，旧版节点在迁移期间新增的标记留给下一批
+     * KEYS[1] 旧版脏文档集合，KEYS[2] 脏文档集合；ARGV[1] 当前时间戳毫秒，ARGV[2] 每批数量
+     */
+    private static final RedisScript<Long> MIGRATE_LEGACY_SCRIPT = new DefaultRedisScript<>("""
+            local docIds = redis.call('SPOP', KEYS[1], ARGV[2])
+            for _, docId in ipairs(docIds) do
+                redis.call('ZADD', KEYS[2], 'NX', ARGV[1], docId)
+            end
+            return #docIds
+            """, Long.class);
+
+    private static final int LEGACY_MIGRATE_BATCH = 500;
+
+    private static final List<String> DIRTY_KEYS = List.of(RedisKeyConstant.DIRTY_DOCS, RedisKeyConstant.DIRTY_TOUCHED);
+
+    /**
+     * 编辑路径上的标脏使用主连接
+     */
     private final RedisTemplate<String, Object> redisTemplate;
-    private final DocumentService documentService;
+    /**
+     * 脏集合扫描与落库读取走独立连接，不阻塞 EDIT 写入
+     */
+    private final BulkRedisTemplate bulkRedisTemplate;
+    private final DocumentContentService documentContentService;
+    private final EditorMetrics editorMetrics;
+    private final EditJournal editJournal;
+    private final DocumentSearchIndex documentSearchIndex;
+    private final SyncPartitions syncPartitions;
+
+    /**
+     * 停止编辑多久后落库
+     */
+    @Value("${codoc.sync.quiet-ms:2000}")
+    private long quietMs;
+
+    /**
+     * 持续编辑的文档最迟在首次标脏多久后落库
+     */
+    @Value("${codoc.sync.max-delay-ms:10000}")
+    private long maxDelayMs;
+
+    /**
+     * 集群每秒最多落库的文档数，各节点按持有分区的比例分摊
+     */
+    @Value("${codoc.sync.max-writes-per-second:200}")
+    private double maxWritesPerSecond;
+
+    /**
+     * 定期维护（编辑日志按文档核对脏集合并截断、迁移旧版标记）的间隔
+     */
+    @Value("${codoc.sync.full-scan-ms:10000}")
+    private long fullScanMs;
+
+    /**
+     * 每轮分页读取到期脏文档的页大小与最多读取的条数，脏集合很大时每轮只读取凑够写入预算所需的部分
+     */
+    @Value("${codoc.sync.scan-batch:500}")
+    private int scanBatch;
+
+    @Value("${codoc.sync.max-scan:5000}")
+    private long maxScan;
+
+    private long lastFullScan;
+
+    /**
+     * 本节点的写入令牌，每轮按经过的时间补充，最多积累一秒的份额
+     */
+    private double writeTokens;
+
+    private long lastRefill = System.nanoTime();
+
+    /**
+     * 标脏（每次 EDIT 调用）
+     */
+    public void markDirty(String docId) {
+        redisTemplate.execute(MARK_DIRTY_SCRIPT, DIRTY_KEYS, docId, String.valueOf(System.currentTimeMillis()));
+    }
 
     /**
-     * 每 10 秒执行一次同步
+     * 每 tick-ms 调度一次：续约分区，落库本节点分区中已到期的脏文档
      */
-    @Scheduled(cron = "0/10 * * * * ?")
+    @Scheduled(fixedDelayString = "${codoc.sync.tick-ms:500}", initialDelayString = "${codoc.sync.tick-ms:500}")
     public void syncDocumentContent() {
-        // 1. 获取所有脏文档 ID
-        Set<Object> dirtyDocIds = redisTemplate.opsForSet().members("dirty_docs");
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        if (now - lastFullScan >= fullScanMs) {
+            lastFullScan = now;
+            fullScan(now);
+        }
 
-        if (CollectionUtils.isEmpty(dirtyDocIds)) {
+        Set<Integer> owned = syncPartitions.refresh();
+        double rate = maxWritesPerSecond * syncPartitions.share();
+        writeTokens = Math.min(Math.max(1, rate), writeTokens + rate * (start - lastRefill) / 1e9);
+        lastRefill = start;
+        if (owned.isEmpty()) {
             return;
         }
 
-        log.info("开始同步文档内容，共 {} 个文档需要同步: {}", dirtyDocIds.size(), dirtyDocIds);
+        // 1. 首次标脏早于 quiet-ms 的文档才可能到期，按标脏时间升序分页读取，凑够本轮预算或达到扫描上限即停止
+        int budget = (int) writeTokens;
+        List<ZSetOperations.TypedTuple<Object>> due = new ArrayList<>();
+        int deferred = 0;
+        for (long offset = 0; offset < maxScan; ) {
+            Set<ZSetOperations.TypedTuple<Object>> page = bulkRedisTemplate.opsForZSet()
+                    .rangeByScoreWithScores(RedisKeyConstant.DIRTY_DOCS, 0, now - quietMs, offset, scanBatch);
+            if (CollectionUtils.isEmpty(page)) {
+                break;
+            }
+            offset += page.size();
+            List<ZSetOperations.TypedTuple<Object>> mine = new ArrayList<>();
+            for (ZSetOperations.TypedTuple<Object> tuple : page) {
+                if (syncPartitions.owns((String) tuple.getValue())) {
+                    mine.add(tuple);
+                }
+            }
+            if (!mine.isEmpty()) {
+                // 2. 只查询本页候选的最近编辑时间，quiet-ms 内仍有编辑的文档未超过 max-delay-ms 时继续等待
+                List<Double> touched = bulkRedisTemplate.opsForZSet().score(RedisKeyConstant.DIRTY_TOUCHED,
+                        mine.stream().map(ZSetOperations.TypedTuple::getValue).toArray());
+                for (int i = 0; i < mine.size(); i++) {
+                    ZSetOperations.TypedTuple<Object> tuple = mine.get(i);
+                    Double touchedAt = touched == null ? null : touched.get(i);
+                    double dirtyAt = tuple.getScore() == null ? now : tuple.getScore();
+                    if (touchedAt != null && touchedAt > now - quietMs && dirtyAt > now - maxDelayMs) {
+                        continue;
+                    }
+                    // 3. 本轮预算用完，剩余的到期文档留到下一轮，届时仍按标脏时间优先
+                    if (due.size() < budget) {
+                        due.add(tuple);
+                    } else {
+                        deferred++;
+                    }
+                }
+            }
+            if (page.size() < scanBatch || due.size() >= budget) {
+                break;
+            }
+        }
 
-        for (Object idObj : dirtyDocIds) {
-            String docId = (String) idObj;
-            try {
-                // 2. 从 Redis 获取最新内容
-                String content = (String) redisTemplate.opsForValue().get("doc:" + docId);
+        int flushed = 0;
+        for (ZSetOperations.TypedTuple<Object> tuple : due) {
+            String docId = (String) tuple.getValue();
+            double dirtyAt = tuple.getScore() == null ? now : tuple.getScore();
+            writeTokens--;
+            editorMetrics.recordFlushDelay(now - (long) dirtyAt);
+            flush(docId, dirtyAt);
+            flushed++;
+        }
+        if (deferred > 0) {
+            editorMetrics.flushDeferred(deferred);
+        }
+        updateDirty();
+        if (flushed > 0) {
+            editorMetrics.recordFlush(System.nanoTime() - start);
+            log.debug("文档内容同步完成，落库 {} 个，预算不足推迟 {} 个", flushed, deferred);
+        }
+    }
 
-                if (content != null) {
-                    // 3. 保存到 MySQL
-                    documentService.saveContent(docId, content);
+    /**
+     * 定期维护：编辑日志按文档查询脏集合判断哪些文档已由某个节点落库，核对 Redis 内容后截断日志；清理过期的编辑时间记录
+     */
+    private void fullScan(long now) {
+        migrateLegacyDirtyDocs();
+        editJournal.onSyncTick();
+        editJournal.reconcile();
+        editJournal.truncate();
+        // 早于 max-delay-ms 的编辑时间不再影响调度（该文档已按最长延迟到期）
+        bulkRedisTemplate.opsForZSet().removeRangeByScore(RedisKeyConstant.DIRTY_TOUCHED, 0, now - maxDelayMs);
+    }
 
-                    // 4. 从脏集合中移除（同步成功）
-                    redisTemplate.opsForSet().remove("dirty_docs", docId);
-                    log.info("文档 {} 同步成功", docId);
-                } else {
-                    log.warn("文档 {} 内容为空，跳过同步", docId);
-                }
-            } catch (Exception e) {
-                log.error("文档 {} 同步失败", docId, e);
+    private void updateDirty() {
+        Long count = bulkRedisTemplate.opsForZSet().zCard(RedisKeyConstant.DIRTY_DOCS);
+        Set<ZSetOperations.TypedTuple<Object>> oldest =
+                bulkRedisTemplate.opsForZSet().rangeWithScores(RedisKeyConstant.DIRTY_DOCS, 0, 0);
+        Double score = CollectionUtils.isEmpty(oldest) ? null : oldest.iterator().next().getScore();
+        editorMetrics.updateDirty(count == null ? 0 : count.intValue(), score == null ? 0 : score.longValue());
+    }
+
+    /**
+     * 立即同步单个文档（文档降级前调用），文档不脏时直接返回 true
+     */
+    public boolean flushNow(String docId) {
+        Double score = bulkRedisTemplate.opsForZSet().score(RedisKeyConstant.DIRTY_DOCS, docId);
+        return score == null || flush(docId, score);
+    }
+
+    /**
+     * 同步单个脏文档，失败时按原标脏时间放回脏集合
+     */
+    private boolean flush(String docId, double score) {
+        try {
+            // 先认领再读取内容；其他节点（接管分区、排空下线）已认领时无需重复落库
+            Long claimed = bulkRedisTemplate.execute(CLAIM_SCRIPT, DIRTY_KEYS, docId);
+            if (claimed == null || claimed == 0) {
+                return true;
             }
+            long journalSeq = editJournal.lastSeq(docId);
+
+            // 将 Redis 中的最新内容保存到 MySQL（分块存储的文档只写入变化的块）
+            if (persist(docId)) {
+                editJournal.markPersisted(docId, journalSeq);
+                // 只有落库的文档需要更新搜索索引
+                documentSearchIndex.markChanged(docId);
+                log.debug("文档 {} 同步成功", docId);
+            } else {
+                log.warn("文档 {} 内容为空，跳过同步", docId);
+            }
+            return true;
+        } catch (Exception e) {
+            // 同步失败，按原标脏时间放回脏集合；编辑时间记为现在，至少 quiet-ms 后再重试
+            editorMetrics.flushFailed();
+            bulkRedisTemplate.opsForZSet().addIfAbsent(RedisKeyConstant.DIRTY_DOCS, docId, score);
+            bulkRedisTemplate.opsForZSet().add(RedisKeyConstant.DIRTY_TOUCHED, docId, System.currentTimeMillis());
+            log.error("文档 {} 同步失败", docId, e);
+            return false;
+        }
+    }
+
+    /**
+     * 落库；版本号冲突说明其他节点刚写入了同一文档，重新读取版本号与最新内容后重试一次
+     */
+    private boolean persist(String docId) {
+        try {
+            return documentContentService.persist(docId);
+        } catch (OptimisticLockingFailureException e) {
+            editorMetrics.flushConflict();
+            log.info("文档 {} 落库版本冲突，重试: {}", docId, e.getMessage());
+            return documentContentService.persist(docId);
+        }
+    }
+
+    /**
+     * 将旧版 SET 结构中的脏文档迁移到 ZSET
+     * 滚动发布期间旧版节点仍会写入旧集合，按批 SPOP 而不是读取后整体删除，避免丢失两次调用之间新增的标记
+     */
+    private void migrateLegacyDirtyDocs() {
+        List<String> keys = List.of(RedisKeyConstant.LEGACY_DIRTY_DOCS, RedisKeyConstant.DIRTY_DOCS);
+        String now = String.valueOf(System.currentTimeMillis());
+        long migrated = 0;
+        Long batch;
+        do {
+            batch = bulkRedisTemplate.execute(MIGRATE_LEGACY_SCRIPT, keys, now, String.valueOf(LEGACY_MIGRATE_BATCH));
+            migrated += batch == null ? 0 : batch;
+        } while (batch != null && batch == LEGACY_MIGRATE_BATCH);
+        if (migrated > 0) {
+            log.info("已迁移 {} 个旧版脏文档标记", migrated);
         }
     }
 }
@@ -0,0 +1,170 @@
+package org.example.collaborative_editor.task;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collaborative_editor.config.BulkRedisTemplate;
+import org.example.collaborative_editor.constant.RedisKeyConstant;
+import org.example.collaborative_editor.metrics.EditorMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 落库分区归属
+ * 脏文档按 docId 哈希分到固定数量的分区，每个分区由一个节点通过 Redis 租约持有，只有持有者调度其中文档的落库。
+ * 各节点每轮调度续约一次：按在线节点数计算平均份额，多出的分区主动释放，不足时认领无人持有的分区；
+ * 节点宕机后租约在 lease-ms 内过期，由其他节点接管。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SyncPartitions {
+
+    /**
+     * 续约并再平衡，返回本节点持有的分区
+     * KEYS[1] 节点心跳 ZSET，KEYS[2..] 各分区的租约 key（分区 p 为 KEYS[p + 2]）；ARGV[1] 节点 ID，ARGV[2] 当前时间戳毫秒，ARGV[3] 租约毫秒
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> REFRESH_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1])
+            redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', tonumber(ARGV[2]) - tonumber(ARGV[3]))
+            local partitions = #KEYS - 1
+            local share = math.ceil(partitions / redis.call('ZCARD', KEYS[1]))
+            local owned = {}
+            local free = {}
+            for p = 0, partitions - 1 do
+                local key = KEYS[p + 2]
+                local owner = redis.call('GET', key)
+                if owner == ARGV[1] then
+                    if #owned < share then
+                        redis.call('PEXPIRE', key, ARGV[3])
+                        owned[#owned + 1] = tostring(p)
+                    else
+                        redis.call('DEL', key)
+                    end
+                elseif not owner then
+                    free[#free + 1] = p
+                end
+            end
+            for _, p in ipairs(free) do
+                if #owned >= share then
+                    break
+                end
+                redis.call('SET', KEYS[p + 2], ARGV[1], 'PX', ARGV[3])
+                owned[#owned + 1] = tostring(p)
+            end
+            return owned
+            """, List.class);
+
+    /**
+     * 下线时释放本节点持有的租约
+     * KEYS[1] 节点心跳 ZSET，KEYS[2..] 各分区的租约 key；ARGV[1] 节点 ID
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('ZREM', KEYS[1], ARGV[1])
+            local released = 0
+            for i = 2, #KEYS do
+                local key = KEYS[i]
+                if redis.call('GET', key) == ARGV[1] then
+                    redis.call('DEL', key)
+                    released = released + 1
+                end
+            end
+            return released
+            """, Long.class);
+
+    private final BulkRedisTemplate redisTemplate;
+    private final EditorMetrics editorMetrics;
+
+    @Value("${codoc.sync.partitions:16}")
+    private int partitions;
+
+    /**
+     * 租约有效期，需远大于调度间隔；节点宕机后其分区最多滞后这么久才被接管
+     */
+    @Value("${codoc.sync.lease-ms:10000}")
+    private long leaseMs;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private volatile Set<Integer> owned = Set.of();
+
+    /**
+     * 脚本访问的全部 key：节点心跳 ZSET 与各分区的租约 key，Lua 中只使用经 KEYS 传入的 key
+     */
+    private List<String> scriptKeys;
+
+    @PostConstruct
+    public void init() {
+        List<String> keys = new ArrayList<>(partitions + 1);
+        keys.add(RedisKeyConstant.SYNC_NODES);
+        for (int p = 0; p < partitions; p++) {
+            keys.add(RedisKeyConstant.SYNC_OWNER_PREFIX + p);
+        }
+        scriptKeys = List.copyOf(keys);
+        editorMetrics.bindSyncPartitions(() -> owned.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, scriptKeys, nodeId);
+        } catch (Exception e) {
+            log.warn("释放落库分区失败: {}", e.getMessage());
+        }
+        owned = Set.of();
+    }
+
+    /**
+     * 续约并再平衡，返回本节点当前持有的分区；Redis 不可用时沿用上一次的结果
+     */
+    public Set<Integer> refresh() {
+        try {
+            List<?> result = redisTemplate.execute(REFRESH_SCRIPT, scriptKeys,
+                    nodeId, String.valueOf(System.currentTimeMillis()), String.valueOf(leaseMs));
+            Set<Integer> current = new HashSet<>();
+            if (result != null) {
+                for (Object partition : result) {
+                    current.add(Integer.valueOf(partition.toString()));
+                }
+            }
+            if (!current.equals(owned)) {
+                log.info("落库分区变更: {} -> {}", owned, current);
+            }
+            owned = Set.copyOf(current);
+        } catch (Exception e) {
+            log.warn("续约落库分区失败: {}", e.getMessage());
+        }
+        return owned;
+    }
+
+    /**
+     * 文档所在的分区是否由本节点持有
+     */
+    public boolean owns(String docId) {
+        return owned.contains(Math.floorMod(docId.hashCode(), partitions));
+    }
+
+    /**
+     * 本节点是否持有 0 号分区：集群级的周期任务（如分层统计）只由该节点执行
+     */
+    public boolean isLeader() {
+        return owned.contains(0);
+    }
+
+    /**
+     * 本节点持有的分区占全部分区的比例，用于分摊集群的 MySQL 写入预算
+     */
+    public double share() {
+        return (double) owned.size() / partitions;
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.collaborative_editor.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 文档内容分块工具
+ * 使用基于内容的分块（Gear 滚动哈希）：块边界只取决于附近的文本，
+ * 在文档中间插入或删除内容时只会影响所在的一两个块，其余块的标识保持不变。
+ */
+public final class ContentChunker {
+
+    /**
+     * 最小块长度（字符）
+     */
+    public static final int MIN_BLOCK = 16 * 1024;
+
+    /**
+     * 最大块长度（字符），超过后强制切分
+     */
+    public static final int MAX_BLOCK = 256 * 1024;
+
+    /**
+     * 平均块长度约为 MIN_BLOCK + 64K
+     */
+    private static final long BOUNDARY_MASK = (1L << 16) - 1;
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // 固定种子，保证不同节点、不同版本的分块结果一致
+        SplittableRandom random = new SplittableRandom(0x436F446F63L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private ContentChunker() {
+    }
+
+    /**
+     * 将内容切分为有序的块
+     */
+    public static List<String> split(String content) {
+        List<String> blocks = new ArrayList<>(content.length() / (MIN_BLOCK * 4) + 1);
+        int length = content.length();
+        int start = 0;
+        while (start < length) {
+            int end = boundary(content, start, length);
+            blocks.add(content.substring(start, end));
+            start = end;
+        }
+        return blocks;
+    }
+
+    private static int boundary(String content, int start, int length) {
+        int limit = Math.min(length, start + MAX_BLOCK);
+        int i = start + MIN_BLOCK;
+        if (i >= limit) {
+            return limit;
+        }
+        long hash = 0;
+        for (; i < limit; i++) {
+            char c = content.charAt(i);
+            hash = (hash << 1) + GEAR[(c ^ (c >>> 8)) & 0xFF];
+            // 不在代理对中间切分
+            if ((hash & BOUNDARY_MASK) == 0 && !Character.isHighSurrogate(c)) {
+                return i + 1;
+            }
+        }
+        // 强制切分时同样避开代理对
+        if (limit < length && Character.isHighSurrogate(content.charAt(limit - 1))) {
+            return limit - 1;
+        }
+        return limit;
+    }
+
+    /**
+     * 块标识：内容的 64 位哈希（16 位十六进制），相同内容得到相同标识
+     */
+    public static String blockId(String block) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < block.length(); i++) {
+            hash ^= block.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // 混入长度并做一次雪崩，降低 FNV 的低位相关性
+        hash ^= block.length();
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        String hex = Long.toHexString(hash);
+        return hex.length() == 16 ? hex : "0".repeat(16 - hex.length()) + hex;
+    }
+}
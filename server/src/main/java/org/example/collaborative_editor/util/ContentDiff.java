@@ -0,0 +1,195 @@
+package org.example.collaborative_editor.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文档内容差异计算
+ * 先去掉公共前缀与后缀；剩余部分两侧都非空时（如给一段文字加粗）在编辑距离与时间预算内用 Myers 算法求最短编辑，
+ * 超出预算时退化为一次替换。位置与长度均以 UTF-16 码元计，与浏览器端 String 的下标一致。
+ */
+public final class ContentDiff {
+
+    /**
+     * 一次替换：将旧内容中 [pos, pos + delete) 替换为 insert；同一结果中的替换按 pos 升序且互不重叠
+     */
+    public record Op(int pos, int delete, String insert) {
+    }
+
+    private ContentDiff() {
+    }
+
+    /**
+     * 计算从 base 到 target 的替换列表，内容相同时返回空列表
+     *
+     * @param maxEdits       Myers 算法允许的最大编辑（单字符插入 / 删除）数
+     * @param deadlineNanos  System.nanoTime() 截止时间，超过后退化为一次替换
+     */
+    public static List<Op> diff(String base, String target, int maxEdits, long deadlineNanos) {
+        int prefix = commonPrefix(base, target);
+        int suffix = commonSuffix(base, target, prefix);
+        int baseEnd = base.length() - suffix;
+        int targetEnd = target.length() - suffix;
+        if (prefix == baseEnd && prefix == targetEnd) {
+            return List.of();
+        }
+        Op replace = new Op(prefix, baseEnd - prefix, target.substring(prefix, targetEnd));
+        if (prefix == baseEnd || prefix == targetEnd) {
+            return List.of(replace);
+        }
+        List<Op> ops = myers(base, prefix, baseEnd, target, prefix, targetEnd, maxEdits, deadlineNanos);
+        // 拆分到代理对中间的结果无法单独编码为 JSON 字符串，改用整体替换
+        return ops == null || splitsSurrogate(base, ops) ? List.of(replace) : ops;
+    }
+
+    /**
+     * 将替换列表应用到 base
+     */
+    public static String apply(String base, List<Op> ops) {
+        StringBuilder sb = new StringBuilder(base.length() + 64);
+        int cursor = 0;
+        for (Op op : ops) {
+            sb.append(base, cursor, op.pos()).append(op.insert());
+            cursor = op.pos() + op.delete();
+        }
+        return sb.append(base, cursor, base.length()).toString();
+    }
+
+    /**
+     * 内容指纹（按 UTF-16 码元计算的 32 位 FNV-1a），客户端据此确认增量的基准与本地一致
+     */
+    public static int hash(String content) {
+        int h = 0x811c9dc5;
+        for (int i = 0; i < content.length(); i++) {
+            h ^= content.charAt(i);
+            h *= 0x01000193;
+        }
+        return h;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < n && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        // 不在代理对中间切分
+        if (i > 0 && i < n && Character.isHighSurrogate(a.charAt(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+
+    private static int commonSuffix(String a, String b, int prefix) {
+        int n = Math.min(a.length(), b.length()) - prefix;
+        int i = 0;
+        while (i < n && a.charAt(a.length() - 1 - i) == b.charAt(b.length() - 1 - i)) {
+            i++;
+        }
+        if (i > 0 && i < n && Character.isLowSurrogate(a.charAt(a.length() - i))) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Myers O(ND) 差异算法，记录每一轮的 V 数组用于回溯；超过编辑数或时间预算时返回 null
+     */
+    private static List<Op> myers(String a, int aStart, int aEnd, String b, int bStart, int bEnd,
+                                  int maxEdits, long deadlineNanos) {
+        int n = aEnd - aStart;
+        int m = bEnd - bStart;
+        int max = Math.min(n + m, maxEdits);
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+        List<int[]> trace = new ArrayList<>();
+        for (int d = 0; d <= max; d++) {
+            trace.add(v.clone());
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])
+                        ? v[offset + k + 1]
+                        : v[offset + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a.charAt(aStart + x) == b.charAt(bStart + y)) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    return backtrack(trace, offset, n, m, a, aStart, b, bStart);
+                }
+            }
+            if (System.nanoTime() > deadlineNanos) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static List<Op> backtrack(List<int[]> trace, int offset, int n, int m,
+                                      String a, int aStart, String b, int bStart) {
+        // 逆序得到的单字符编辑：{旧内容位置, 插入字符或 -1 表示删除}
+        List<int[]> edits = new ArrayList<>();
+        int x = n;
+        int y = m;
+        for (int d = trace.size() - 1; d > 0; d--) {
+            int[] v = trace.get(d);
+            int k = x - y;
+            int prevK = k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1]) ? k + 1 : k - 1;
+            int prevX = v[offset + prevK];
+            int prevY = prevX - prevK;
+            while (x > prevX && y > prevY) {
+                x--;
+                y--;
+            }
+            if (x == prevX) {
+                edits.add(new int[]{x, b.charAt(bStart + prevY)});
+            } else {
+                edits.add(new int[]{prevX, -1});
+            }
+            x = prevX;
+            y = prevY;
+        }
+
+        // 正序合并相邻的编辑：删除紧接上一段、或插入位置正好在上一段末尾时并入同一替换
+        List<Op> ops = new ArrayList<>();
+        int pos = -1;
+        int delete = 0;
+        StringBuilder insert = new StringBuilder();
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            int at = edits.get(i)[0];
+            int ch = edits.get(i)[1];
+            if (pos < 0 || at != pos + delete) {
+                if (pos >= 0) {
+                    ops.add(new Op(aStart + pos, delete, insert.toString()));
+                }
+                pos = at;
+                delete = 0;
+                insert.setLength(0);
+            }
+            if (ch < 0) {
+                delete++;
+            } else {
+                insert.append((char) ch);
+            }
+        }
+        if (pos >= 0) {
+            ops.add(new Op(aStart + pos, delete, insert.toString()));
+        }
+        return ops;
+    }
+
+    private static boolean splitsSurrogate(String base, List<Op> ops) {
+        for (Op op : ops) {
+            int end = op.pos() + op.delete();
+            String insert = op.insert();
+            if ((op.pos() < base.length() && Character.isLowSurrogate(base.charAt(op.pos())))
+                    || (end < base.length() && Character.isLowSurrogate(base.charAt(end)))
+                    || (!insert.isEmpty() && (Character.isLowSurrogate(insert.charAt(0))
+                    || Character.isHighSurrogate(insert.charAt(insert.length() - 1))))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.collaborative_editor.util;
+
+/**
+ * 从编辑器 HTML 中提取纯文本，结果与浏览器端编辑区的 textContent 一致：
+ * 去掉标签与注释，解码字符实体（innerHTML 序列化文本时只会产生 &amp; &lt; &gt; &nbsp;，其余实体来自粘贴的内容）。
+ */
+public final class HtmlText {
+
+    private HtmlText() {
+    }
+
+    public static String of(String html) {
+        StringBuilder sb = new StringBuilder(html.length());
+        int i = 0;
+        int n = html.length();
+        while (i < n) {
+            char c = html.charAt(i);
+            if (c == '<') {
+                int end = html.startsWith("<!--", i) ? html.indexOf("-->", i + 4) : html.indexOf('>', i + 1);
+                if (end < 0) {
+                    break;
+                }
+                i = html.startsWith("<!--", i) ? end + 3 : end + 1;
+            } else if (c == '&') {
+                i = entity(html, i, sb);
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 解码 start 处的字符实体并返回之后的位置，无法识别时按普通字符处理
+     */
+    private static int entity(String html, int start, StringBuilder sb) {
+        int semi = html.indexOf(';', start + 1);
+        if (semi < 0 || semi - start > 10) {
+            sb.append('&');
+            return start + 1;
+        }
+        String name = html.substring(start + 1, semi);
+        int code = switch (name) {
+            case "amp" -> '&';
+            case "lt" -> '<';
+            case "gt" -> '>';
+            case "quot" -> '"';
+            case "apos" -> '\'';
+            case "nbsp" -> ' ';
+            default -> numeric(name);
+        };
+        if (code < 0) {
+            sb.append('&');
+            return start + 1;
+        }
+        sb.appendCodePoint(code);
+        return semi + 1;
+    }
+
+    private static int numeric(String name) {
+        if (name.length() < 2 || name.charAt(0) != '#') {
+            return -1;
+        }
+        try {
+            boolean hex = name.charAt(1) == 'x' || name.charAt(1) == 'X';
+            int code = hex ? Integer.parseInt(name.substring(2), 16) : Integer.parseInt(name.substring(1));
+            return Character.isValidCodePoint(code) ? code : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.collaborative_editor.util;
+
+/**
+ * 令牌桶
+ * 按固定速率补充令牌，最多累积 capacity 个，允许短时突发。
+ */
+public final class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param perSecond 每秒补充的令牌数
+     * @param burst     桶容量（允许的突发数）
+     */
+    public TokenBucket(double perSecond, double burst) {
+        this.tokensPerNano = perSecond / 1_000_000_000d;
+        this.capacity = Math.max(1, burst);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * 尝试取走一个令牌
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * 归还一个令牌（取得令牌后因其他原因未使用时调用）
+     */
+    public synchronized void refund() {
+        tokens = Math.min(capacity, tokens + 1);
+    }
+
+    /**
+     * 距离下一个令牌可用的纳秒数，已有令牌时返回 0
+     */
+    public synchronized long nanosUntilAvailable() {
+        refill();
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,313 @@
+package org.example.collaborative_editor.ws;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.Session;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collaborative_editor.util.TokenBucket;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流与准入控制
+ * 连接时按单文档 / 单节点会话数上限准入；EDIT 按会话和文档两级令牌桶限流，CURSOR 只按会话限流且超限直接丢弃。
+ * EDIT 超限时按策略处理：coalesce 只保留该文档最新的一条 EDIT，文档令牌可用时再应用（EDIT 为全量内容，最新一条即最终结果），
+ * 超过会话限流的 EDIT 不参与合并、直接丢弃，避免单个会话占满文档的份额；drop 直接丢弃；close 关闭发送方连接。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AdmissionControl {
+
+    private enum Policy {
+        COALESCE, DROP, CLOSE
+    }
+
+    /**
+     * Session 属性：该会话的令牌桶
+     */
+    private static final String SESSION_BUCKET = "rateBucket";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${codoc.ws.rate.session.per-second:50}")
+    private double sessionPerSecond;
+
+    @Value("${codoc.ws.rate.session.burst:100}")
+    private double sessionBurst;
+
+    @Value("${codoc.ws.rate.doc.per-second:200}")
+    private double docPerSecond;
+
+    @Value("${codoc.ws.rate.doc.burst:400}")
+    private double docBurst;
+
+    @Value("${codoc.ws.rate.policy:coalesce}")
+    private String policyName;
+
+    @Value("${codoc.ws.admission.max-sessions-per-doc:500}")
+    private int maxSessionsPerDoc;
+
+    @Value("${codoc.ws.admission.max-sessions-per-node:10000}")
+    private int maxSessionsPerNode;
+
+    /**
+     * 拒绝连接时建议的最短重连延迟，实际延迟在 [retry-after, 2 * retry-after) 内随机
+     */
+    @Value("${codoc.ws.admission.retry-after-ms:3000}")
+    private long retryAfterMs;
+
+    private final Map<String, DocLimit> docLimits = new ConcurrentHashMap<>();
+
+    private Policy policy;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * 应用合并后到期的 EDIT
+     */
+    private ExecutorService applier;
+    private Counter limited;
+    private Counter coalesced;
+    private Counter rejectedDoc;
+    private Counter rejectedNode;
+
+    @PostConstruct
+    public void init() {
+        policy = Policy.valueOf(policyName.trim().toUpperCase(Locale.ROOT));
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-rate-limit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        applier = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "ws-rate-apply");
+            thread.setDaemon(true);
+            return thread;
+        });
+        limited = Counter.builder("codoc.ws.rate.limited")
+                .description("超过限流的入站消息数")
+                .tag("policy", policy.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry);
+        coalesced = Counter.builder("codoc.ws.rate.coalesced")
+                .description("合并时被更新的 EDIT 覆盖、不再应用的 EDIT 数")
+                .register(meterRegistry);
+        rejectedDoc = rejectedCounter("doc");
+        rejectedNode = rejectedCounter("node");
+    }
+
+    private Counter rejectedCounter(String reason) {
+        return Counter.builder("codoc.ws.admission.rejected")
+                .description("准入检查拒绝的连接数")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        applier.shutdownNow();
+    }
+
+    /**
+     * 连接准入检查，拒绝时返回关闭原因，否则返回 null
+     *
+     * @param roomSize     本节点上该文档的当前会话数
+     * @param nodeSessions 本节点的当前会话总数
+     */
+    public CloseReason admit(int roomSize, int nodeSessions) {
+        if (nodeSessions >= maxSessionsPerNode) {
+            rejectedNode.increment();
+            return retryLater("Too many sessions");
+        }
+        if (roomSize >= maxSessionsPerDoc) {
+            rejectedDoc.increment();
+            return retryLater("Document is full");
+        }
+        return null;
+    }
+
+    private CloseReason retryLater(String reason) {
+        long retry = retryAfterMs + ThreadLocalRandom.current().nextLong(Math.max(1, retryAfterMs));
+        return new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, reason + ", retry=" + retry);
+    }
+
+    /**
+     * CURSOR 限流：超限直接丢弃
+     */
+    public boolean admitCursor(Session session) {
+        if (sessionBucket(session).tryAcquire()) {
+            return true;
+        }
+        limited.increment();
+        return false;
+    }
+
+    /**
+     * EDIT 限流：通过时立即应用，否则按策略丢弃、合并或关闭连接。
+     * 同一文档的 EDIT（包括合并后延迟应用的）按进入文档队列的顺序串行应用，较旧的合并内容不会覆盖之后到达的 EDIT；
+     * 文档锁只用于入队与认领，应用（写日志、Redis、广播）在锁外进行，慢的接收者或 Redis 往返不会阻塞同文档的其他编辑者
+     *
+     * @param content EDIT 携带的文档内容
+     * @param frame   原始消息，合并后延迟广播时使用
+     */
+    public void submitEdit(Session session, String docId, String content, String frame) {
+        DocLimit doc = docLimits.computeIfAbsent(docId, id -> new DocLimit(new TokenBucket(docPerSecond, docBurst)));
+        TokenBucket sessionBucket = sessionBucket(session);
+        boolean sessionAdmitted = sessionBucket.tryAcquire();
+        if (sessionAdmitted && doc.bucket.tryAcquire()) {
+            boolean drain;
+            synchronized (doc) {
+                // 更新的内容已到达，之前合并等待的 EDIT 作废
+                doc.pending = null;
+                drain = enqueue(doc, new PendingEdit(session, content, frame));
+            }
+            if (drain) {
+                drain(docId, doc);
+            }
+            return;
+        }
+        if (sessionAdmitted) {
+            // 被文档令牌桶拒绝，会话令牌未被使用
+            sessionBucket.refund();
+        }
+        limited.increment();
+        switch (policy) {
+            case COALESCE -> {
+                if (sessionAdmitted) {
+                    coalesce(session, docId, doc, content, frame);
+                }
+            }
+            case CLOSE -> close(session);
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * 文档在本节点已无会话，释放其令牌桶
+     */
+    public void release(String docId) {
+        docLimits.remove(docId);
+    }
+
+    private TokenBucket sessionBucket(Session session) {
+        return (TokenBucket) session.getUserProperties().computeIfAbsent(SESSION_BUCKET,
+                key -> new TokenBucket(sessionPerSecond, sessionBurst));
+    }
+
+    private void coalesce(Session session, String docId, DocLimit doc, String content, String frame) {
+        synchronized (doc) {
+            if (doc.pending != null) {
+                coalesced.increment();
+            }
+            doc.pending = new PendingEdit(session, content, frame);
+            if (!doc.scheduled) {
+                doc.scheduled = true;
+                schedule(docId, doc);
+            }
+        }
+    }
+
+    private void schedule(String docId, DocLimit doc) {
+        long delay = Math.max(doc.bucket.nanosUntilAvailable(), TimeUnit.MILLISECONDS.toNanos(1));
+        scheduler.schedule(() -> applyPending(docId, doc), delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void applyPending(String docId, DocLimit doc) {
+        synchronized (doc) {
+            if (doc.pending == null) {
+                doc.scheduled = false;
+                return;
+            }
+            if (!doc.bucket.tryAcquire()) {
+                schedule(docId, doc);
+                return;
+            }
+            PendingEdit edit = doc.pending;
+            doc.pending = null;
+            doc.scheduled = false;
+            if (!enqueue(doc, edit)) {
+                return;
+            }
+        }
+        // 定时线程只负责认领，应用交给 applier，避免一个文档的慢应用推迟其他文档的合并
+        applier.execute(() -> drain(docId, doc));
+    }
+
+    /**
+     * 在文档锁内调用：把 EDIT 加入文档的应用队列，返回 true 表示当前没有线程在应用，调用方需负责 drain
+     */
+    private static boolean enqueue(DocLimit doc, PendingEdit edit) {
+        doc.queue.add(edit);
+        if (doc.draining) {
+            return false;
+        }
+        doc.draining = true;
+        return true;
+    }
+
+    /**
+     * 依次应用文档队列中的 EDIT 直到队列为空；同一时刻每个文档只有一个线程在 drain
+     */
+    private static void drain(String docId, DocLimit doc) {
+        while (true) {
+            PendingEdit edit;
+            synchronized (doc) {
+                edit = doc.queue.poll();
+                if (edit == null) {
+                    doc.draining = false;
+                    return;
+                }
+            }
+            try {
+                EditorServer.applyEdit(edit.session(), docId, edit.content(), edit.frame());
+            } catch (Exception e) {
+                log.error("应用 EDIT 失败: docId={}", docId, e);
+            }
+        }
+    }
+
+    private void close(Session session) {
+        log.warn("会话发送过快，关闭连接: sessionId={}", session.getId());
+        try {
+            // 1008 会被客户端当作登录失效处理，这里使用 1013 并附带重连延迟
+            session.close(retryLater("Rate limit exceeded"));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("关闭连接失败: sessionId={}", session.getId(), e);
+        }
+    }
+
+    /**
+     * 单个文档的令牌桶、合并等待的最新 EDIT 与已放行待应用的 EDIT 队列
+     */
+    private static final class DocLimit {
+        private final TokenBucket bucket;
+        private PendingEdit pending;
+        private boolean scheduled;
+        private final Queue<PendingEdit> queue = new ArrayDeque<>();
+        private boolean draining;
+
+        private DocLimit(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    private record PendingEdit(Session session, String content, String frame) {
+    }
+}
@@ -0,0 +1,208 @@
+package org.example.collaborative_editor.ws;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collaborative_editor.constant.RedisKeyConstant;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebSocket 准入票据
+ * 通过 REST 校验权限后签发短期票据，内容为 docId、userId、角色、用户名与过期时间，附 HMAC-SHA256 签名；
+ * 连接时只需一次 HMAC 校验，不解析 JWT，也不访问数据库或 Redis。
+ * 文档删除后写入 Redis ticket_revoked，各节点每 revocation-poll-ms 拉取一次到本地，拒绝已删除文档的票据。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AdmissionTickets {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * 未配置票据密钥时，以 jwt.secret 对该标签做 HMAC 派生出票据密钥，票据签名与 JWT 签名不共用同一个密钥
+     */
+    private static final String DERIVED_KEY_LABEL = "codoc-ws-ticket";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${codoc.ws.ticket.secret:}")
+    private String secret;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    @Value("${codoc.ws.ticket.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${codoc.ws.ticket.revocation-poll-ms:1000}")
+    private long revocationPollMs;
+
+    /**
+     * Mac 实例不是线程安全的，每个线程复用一个
+     */
+    private ThreadLocal<Mac> mac;
+
+    /**
+     * 有效期内被删除的文档及删除时间：本节点删除的立即加入，其他节点删除的由拉取线程加入，
+     * 超过票据有效期后才移除，与 Redis 中是否存在无关（本节点写 Redis 失败时本地吊销仍然有效）
+     */
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private final Map<String, Counter> results = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService poller;
+
+    /**
+     * 校验通过的票据
+     */
+    public record Ticket(String docId, Long userId, String role, String username) {
+    }
+
+    @PostConstruct
+    public void init() {
+        SecretKeySpec key = new SecretKeySpec(secret.isEmpty()
+                ? deriveKey(jwtSecret) : secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("初始化票据签名失败", e);
+            }
+        });
+        for (String result : new String[]{"accepted", "invalid", "expired", "revoked"}) {
+            results.put(result, Counter.builder("codoc.ws.tickets")
+                    .description("WebSocket 准入票据校验结果")
+                    .tag("result", result)
+                    .register(meterRegistry));
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-ticket-revocations");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::pollRevocations, 0, revocationPollMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+    }
+
+    private static byte[] deriveKey(String jwtSecret) {
+        try {
+            Mac derive = Mac.getInstance(ALGORITHM);
+            derive.init(new SecretKeySpec(jwtSecret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return derive.doFinal(DERIVED_KEY_LABEL.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("派生票据密钥失败", e);
+        }
+    }
+
+    /**
+     * 签发票据，调用方已完成权限校验
+     */
+    public String issue(String docId, Long userId, String role, String username) {
+        long expiresAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttlSeconds);
+        // 用户名放在最后，其中的换行不影响解析
+        String payload = docId + "\n" + userId + "\n" + role + "\n" + expiresAt + "\n" + (username == null ? "" : username);
+        byte[] body = payload.getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(body) + "." + ENCODER.encodeToString(mac.get().doFinal(body));
+    }
+
+    /**
+     * 校验票据：签名正确、未过期、属于该文档且文档未被删除，否则返回 null
+     */
+    public Ticket verify(String ticket, String docId) {
+        int dot = ticket.indexOf('.');
+        byte[] body;
+        byte[] signature;
+        try {
+            body = DECODER.decode(ticket.substring(0, Math.max(dot, 0)));
+            signature = DECODER.decode(ticket.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return reject("invalid");
+        }
+        if (dot < 0 || !MessageDigest.isEqual(mac.get().doFinal(body), signature)) {
+            return reject("invalid");
+        }
+        String[] fields = new String(body, StandardCharsets.UTF_8).split("\n", 5);
+        if (fields.length != 5 || !fields[0].equals(docId)) {
+            return reject("invalid");
+        }
+        if (Long.parseLong(fields[3]) < System.currentTimeMillis()) {
+            return reject("expired");
+        }
+        if (revoked.containsKey(docId)) {
+            return reject("revoked");
+        }
+        results.get("accepted").increment();
+        return new Ticket(docId, Long.valueOf(fields[1]), fields[2], fields[4].isEmpty() ? null : fields[4]);
+    }
+
+    /**
+     * 文档删除后吊销其票据
+     */
+    public void revoke(String docId) {
+        long now = System.currentTimeMillis();
+        revoked.merge(docId, now, Math::max);
+        try {
+            redisTemplate.opsForZSet().add(RedisKeyConstant.TICKET_REVOKED, docId, now);
+        } catch (Exception e) {
+            log.warn("写入票据吊销记录失败，仅本节点生效: docId={}, {}", docId, e.getMessage());
+        }
+    }
+
+    private Ticket reject(String result) {
+        results.get(result).increment();
+        return null;
+    }
+
+    /**
+     * 拉取有效期内的吊销记录；更早删除的文档已不可能持有未过期的票据，本地按删除时间、Redis 按分值清理掉
+     */
+    private void pollRevocations() {
+        long since = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(ttlSeconds) - revocationPollMs;
+        revoked.values().removeIf(revokedAt -> revokedAt <= since);
+        try {
+            redisTemplate.opsForZSet().removeRangeByScore(RedisKeyConstant.TICKET_REVOKED, 0, since);
+            Set<ZSetOperations.TypedTuple<Object>> entries = redisTemplate.opsForZSet()
+                    .rangeByScoreWithScores(RedisKeyConstant.TICKET_REVOKED, since, Double.POSITIVE_INFINITY);
+            if (entries != null) {
+                for (ZSetOperations.TypedTuple<Object> entry : entries) {
+                    if (entry.getValue() != null && entry.getScore() != null) {
+                        revoked.merge((String) entry.getValue(), entry.getScore().longValue(), Math::max);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("拉取票据吊销记录失败: {}", e.getMessage());
+        }
+    }
+}
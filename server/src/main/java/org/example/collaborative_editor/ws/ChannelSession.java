@@ -0,0 +1,321 @@
+package org.example.collaborative_editor.ws;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.EncodeException;
+import jakarta.websocket.Extension;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.Session;
+import jakarta.websocket.WebSocketContainer;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collaborative_editor.constant.WsMessageType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 多路复用连接上的一个频道（一个文档）
+ * 对 EditorServer 表现为一个普通会话：有独立的 ID 与属性，加入对应文档的房间；
+ * 发送的文本帧在开头加上 "ch" 字段后经物理连接发出，关闭时只离开该文档并通知客户端，物理连接保持。
+ */
+@Slf4j
+class ChannelSession implements Session {
+
+    private final Session physical;
+
+    private final String docId;
+
+    private final String id;
+
+    /**
+     * 插入到每个出站 JSON 对象开头的频道标记：{"ch":"<docId>",
+     */
+    private final String tag;
+
+    private final Map<String, Object> userProperties = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean open = new AtomicBoolean(true);
+
+    private final Runnable onClosed;
+
+    private final RemoteEndpoint.Basic basicRemote = new ChannelRemote();
+
+    ChannelSession(Session physical, String docId, String tag, Runnable onClosed) {
+        this.physical = physical;
+        this.docId = docId;
+        this.id = physical.getId() + "#" + docId;
+        this.tag = tag;
+        this.onClosed = onClosed;
+    }
+
+    String docId() {
+        return docId;
+    }
+
+    /**
+     * 给一条 JSON 对象文本加上频道标记
+     */
+    String tag(String text) {
+        if (text.length() < 2 || text.charAt(0) != '{') {
+            return text;
+        }
+        return text.charAt(1) == '}' ? tag.substring(0, tag.length() - 1) + text.substring(1) : tag + text.substring(1);
+    }
+
+    /**
+     * 物理连接关闭时离开房间，不再向客户端发送通知
+     */
+    void detach() {
+        if (open.compareAndSet(true, false)) {
+            EditorServer.leave(this);
+            onClosed.run();
+        }
+    }
+
+    @Override
+    public void close(CloseReason closeReason) throws IOException {
+        if (!open.compareAndSet(true, false)) {
+            return;
+        }
+        EditorServer.leave(this);
+        onClosed.run();
+        // 以 CLOSED 消息告知客户端该频道已关闭，data 为 "<关闭码> <原因>"，客户端按关闭码决定是否重新订阅
+        if (physical.isOpen()) {
+            String data = closeReason.getCloseCode().getCode() + " " + closeReason.getReasonPhrase();
+            String frame = tag("{\"type\":\"" + WsMessageType.CLOSED + "\",\"sender\":\"" + WsMessageType.SENDER_SERVER
+                    + "\",\"data\":\"" + data.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}");
+            try {
+                synchronized (physical) {
+                    physical.getBasicRemote().sendText(frame);
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("发送频道关闭消息失败: sessionId={}", id, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        close(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, ""));
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open.get() && physical.isOpen();
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public Map<String, Object> getUserProperties() {
+        return userProperties;
+    }
+
+    @Override
+    public RemoteEndpoint.Basic getBasicRemote() {
+        return basicRemote;
+    }
+
+    @Override
+    public RemoteEndpoint.Async getAsyncRemote() {
+        throw new UnsupportedOperationException("频道只支持阻塞发送");
+    }
+
+    @Override
+    public WebSocketContainer getContainer() {
+        return physical.getContainer();
+    }
+
+    @Override
+    public void addMessageHandler(MessageHandler handler) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T> void addMessageHandler(Class<T> clazz, MessageHandler.Whole<T> handler) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T> void addMessageHandler(Class<T> clazz, MessageHandler.Partial<T> handler) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<MessageHandler> getMessageHandlers() {
+        return Set.of();
+    }
+
+    @Override
+    public void removeMessageHandler(MessageHandler handler) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getProtocolVersion() {
+        return physical.getProtocolVersion();
+    }
+
+    @Override
+    public String getNegotiatedSubprotocol() {
+        return physical.getNegotiatedSubprotocol();
+    }
+
+    @Override
+    public List<Extension> getNegotiatedExtensions() {
+        return physical.getNegotiatedExtensions();
+    }
+
+    @Override
+    public boolean isSecure() {
+        return physical.isSecure();
+    }
+
+    @Override
+    public long getMaxIdleTimeout() {
+        return physical.getMaxIdleTimeout();
+    }
+
+    @Override
+    public void setMaxIdleTimeout(long milliseconds) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setMaxBinaryMessageBufferSize(int length) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getMaxBinaryMessageBufferSize() {
+        return physical.getMaxBinaryMessageBufferSize();
+    }
+
+    @Override
+    public void setMaxTextMessageBufferSize(int length) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getMaxTextMessageBufferSize() {
+        return physical.getMaxTextMessageBufferSize();
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return physical.getRequestURI();
+    }
+
+    @Override
+    public Map<String, List<String>> getRequestParameterMap() {
+        return physical.getRequestParameterMap();
+    }
+
+    @Override
+    public String getQueryString() {
+        return physical.getQueryString();
+    }
+
+    @Override
+    public Map<String, String> getPathParameters() {
+        return Map.of("docId", docId);
+    }
+
+    @Override
+    public Principal getUserPrincipal() {
+        return physical.getUserPrincipal();
+    }
+
+    @Override
+    public Set<Session> getOpenSessions() {
+        return physical.getOpenSessions();
+    }
+
+    /**
+     * 频道的阻塞发送：加上频道标记后在物理连接上发送，多个频道之间按物理连接串行
+     */
+    private class ChannelRemote implements RemoteEndpoint.Basic {
+
+        @Override
+        public void sendText(String text) throws IOException {
+            if (!open.get()) {
+                throw new IllegalStateException("频道已关闭: " + id);
+            }
+            String framed = tag(text);
+            synchronized (physical) {
+                physical.getBasicRemote().sendText(framed);
+            }
+        }
+
+        @Override
+        public void sendBinary(ByteBuffer data) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void sendText(String partialMessage, boolean isLast) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void sendBinary(ByteBuffer partialByte, boolean isLast) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public OutputStream getSendStream() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Writer getSendWriter() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void sendObject(Object data) throws IOException, EncodeException {
+            sendText(String.valueOf(data));
+        }
+
+        @Override
+        public void setBatchingAllowed(boolean batchingAllowed) throws IOException {
+            physical.getBasicRemote().setBatchingAllowed(batchingAllowed);
+        }
+
+        @Override
+        public boolean getBatchingAllowed() {
+            return physical.getBasicRemote().getBatchingAllowed();
+        }
+
+        @Override
+        public void flushBatch() throws IOException {
+            physical.getBasicRemote().flushBatch();
+        }
+
+        @Override
+        public void sendPing(ByteBuffer applicationData) throws IOException {
+            synchronized (physical) {
+                physical.getBasicRemote().sendPing(applicationData);
+            }
+        }
+
+        @Override
+        public void sendPong(ByteBuffer applicationData) throws IOException {
+            synchronized (physical) {
+                physical.getBasicRemote().sendPong(applicationData);
+            }
+        }
+    }
+}
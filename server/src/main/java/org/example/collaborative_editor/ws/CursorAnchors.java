@@ -0,0 +1,191 @@
+package org.example.collaborative_editor.ws;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collaborative_editor.service.DocumentContentService;
+import org.example.collaborative_editor.util.ContentDiff;
+import org.example.collaborative_editor.util.HtmlText;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务端维护的光标锚点
+ * 连接时携带 anchors=1 的客户端以纯文本偏移（textContent 下标）上报光标，服务端记录每个会话的位置；
+ * 每次 EDIT 对新旧纯文本求差异并平移所有锚点，客户端不需要在每次输入后重新发送光标。
+ * 编辑者自己的锚点落在插入位置时移到插入内容之后，其他人的锚点留在插入内容之前。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CursorAnchors {
+
+    /**
+     * 求差异的编辑数上限与时间预算，超出时退化为一次替换，锚点落到替换起点
+     */
+    private static final int MAX_EDITS = 256;
+
+    private static final long DIFF_BUDGET_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final DocumentContentService documentContentService;
+
+    @Value("${codoc.ws.anchors.enabled:true}")
+    private boolean enabled;
+
+    private final Map<String, DocAnchors> docs = new ConcurrentHashMap<>();
+
+    private Timer transformTimer;
+
+    @PostConstruct
+    public void init() {
+        transformTimer = Timer.builder("codoc.ws.cursor.transform")
+                .description("一次 EDIT 平移光标锚点的耗时（提取纯文本、求差异与平移）")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录会话的光标位置
+     */
+    public void move(String docId, String sessionId, String username, int pos) {
+        DocAnchors doc = docs.computeIfAbsent(docId, k -> new DocAnchors());
+        synchronized (doc) {
+            if (doc.text == null) {
+                // 第一个锚点：以当前内容为基准，之后由 EDIT 维护
+                doc.text = HtmlText.of(documentContentService.load(docId));
+            }
+            doc.anchors.put(sessionId, new Anchor(username, Math.max(0, Math.min(pos, doc.text.length()))));
+        }
+    }
+
+    /**
+     * 按一次 EDIT 平移锚点，有锚点位置变化时返回新的快照，否则返回 null
+     */
+    public String onEdit(String docId, String senderSessionId, String html) {
+        DocAnchors doc = docs.get(docId);
+        if (doc == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        boolean changed = false;
+        synchronized (doc) {
+            if (doc.anchors.isEmpty()) {
+                // 最后一个锚点已离开：丢弃纯文本基准，下一个锚点加入时重新以当前内容为基准
+                doc.text = null;
+                return null;
+            }
+            if (doc.text == null) {
+                return null;
+            }
+            String text = HtmlText.of(html);
+            List<ContentDiff.Op> ops = ContentDiff.diff(doc.text, text, MAX_EDITS, start + DIFF_BUDGET_NANOS);
+            doc.text = text;
+            if (!ops.isEmpty()) {
+                for (Map.Entry<String, Anchor> entry : doc.anchors.entrySet()) {
+                    Anchor anchor = entry.getValue();
+                    int pos = shift(anchor.pos(), ops, entry.getKey().equals(senderSessionId));
+                    if (pos != anchor.pos()) {
+                        entry.setValue(new Anchor(anchor.username(), pos));
+                        changed = true;
+                    }
+                }
+            }
+        }
+        transformTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return changed ? snapshot(docId) : null;
+    }
+
+    /**
+     * 文档当前全部锚点，没有锚点时返回 null；新加入的会话据此显示其他人的光标
+     * 以会话 ID 为键（{"sessionId":{"user":"alice","pos":42}}），同一用户多个标签页的光标各自保留
+     */
+    public String snapshot(String docId) {
+        DocAnchors doc = docs.get(docId);
+        if (doc == null) {
+            return null;
+        }
+        Map<String, Map<String, Object>> positions = new LinkedHashMap<>();
+        synchronized (doc) {
+            if (doc.anchors.isEmpty()) {
+                return null;
+            }
+            for (Map.Entry<String, Anchor> entry : doc.anchors.entrySet()) {
+                Anchor anchor = entry.getValue();
+                positions.put(entry.getKey(), Map.of("user", anchor.username(), "pos", anchor.pos()));
+            }
+        }
+        try {
+            return objectMapper.writeValueAsString(positions);
+        } catch (JsonProcessingException e) {
+            log.warn("光标快照序列化失败: docId={}", docId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 会话离开时移除其锚点，最后一个锚点离开时一并丢弃纯文本基准
+     */
+    public void remove(String docId, String sessionId) {
+        DocAnchors doc = docs.get(docId);
+        if (doc != null) {
+            synchronized (doc) {
+                doc.anchors.remove(sessionId);
+                if (doc.anchors.isEmpty()) {
+                    doc.text = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * 房间清空时释放文档的全部锚点与纯文本基准
+     */
+    public void release(String docId) {
+        docs.remove(docId);
+    }
+
+    /**
+     * 按替换列表平移一个位置；after 为 true 时落在插入 / 替换起点的位置移到插入内容之后
+     */
+    static int shift(int pos, List<ContentDiff.Op> ops, boolean after) {
+        int delta = 0;
+        for (ContentDiff.Op op : ops) {
+            int end = op.pos() + op.delete();
+            if (pos < op.pos() || (pos == op.pos() && !after)) {
+                break;
+            }
+            if (pos < end || pos == op.pos()) {
+                // 落在被替换的范围内
+                return op.pos() + delta + (after ? op.insert().length() : 0);
+            }
+            delta += op.insert().length() - op.delete();
+        }
+        return pos + delta;
+    }
+
+    private record Anchor(String username, int pos) {
+    }
+
+    private static final class DocAnchors {
+        /**
+         * 最近一次 EDIT 的纯文本，锚点位置以此为准
+         */
+        private String text;
+        private final Map<String, Anchor> anchors = new LinkedHashMap<>();
+    }
+}
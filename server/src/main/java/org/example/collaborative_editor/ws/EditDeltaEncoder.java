@@ -0,0 +1,142 @@
+package org.example.collaborative_editor.ws;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collaborative_editor.constant.WsMessageType;
+import org.example.collaborative_editor.dto.WsDeltaMessage;
+import org.example.collaborative_editor.util.ContentDiff;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全量 EDIT 转增量
+ * 旧客户端每次 EDIT 发送完整内容；房间内有支持增量的会话时，记录每个文档最近一次广播的内容，
+ * 与新内容求差异后为这些会话生成 EDIT_DELTA，只传输变化的部分。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EditDeltaEncoder {
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${codoc.ws.delta.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Myers 算法允许的最大单字符编辑数，超过后退化为一次替换
+     */
+    @Value("${codoc.ws.delta.max-edits:256}")
+    private int maxEdits;
+
+    /**
+     * 单次求差异的时间预算（微秒），超过后退化为一次替换
+     */
+    @Value("${codoc.ws.delta.diff-budget-micros:1000}")
+    private long diffBudgetMicros;
+
+    /**
+     * 每个文档最近一次广播的内容，作为下一条增量的基准
+     */
+    private final Map<String, Base> bases = new ConcurrentHashMap<>();
+
+    private Counter deltaFrames;
+    private Counter fullFrames;
+    private DistributionSummary ratio;
+    private Timer diffTimer;
+
+    @PostConstruct
+    public void init() {
+        deltaFrames = Counter.builder("codoc.ws.delta.frames")
+                .description("广播给增量会话的 EDIT：delta 为增量帧，full 为无基准或增量不更小时的完整帧")
+                .tag("result", "delta")
+                .register(meterRegistry);
+        fullFrames = Counter.builder("codoc.ws.delta.frames")
+                .description("广播给增量会话的 EDIT：delta 为增量帧，full 为无基准或增量不更小时的完整帧")
+                .tag("result", "full")
+                .register(meterRegistry);
+        ratio = DistributionSummary.builder("codoc.ws.delta.ratio")
+                .description("增量帧与完整帧的长度之比")
+                .register(meterRegistry);
+        diffTimer = Timer.builder("codoc.ws.delta.diff")
+                .description("一次求差异与编码的耗时")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录文档的最新内容，并返回发给增量会话的帧；没有基准或增量不比完整帧小时返回 null，此时发送完整 EDIT
+     */
+    public String encode(String docId, String sender, String content, String fullFrame) {
+        Base base = bases.computeIfAbsent(docId, k -> new Base());
+        long start = System.nanoTime();
+        String frame;
+        // 同一文档的求差异与基准更新串行，保证连续的增量首尾相接
+        synchronized (base) {
+            String previous = base.content;
+            base.content = content;
+            if (previous == null) {
+                fullFrames.increment();
+                return null;
+            }
+            List<ContentDiff.Op> ops = ContentDiff.diff(previous, content, maxEdits,
+                    start + TimeUnit.MICROSECONDS.toNanos(diffBudgetMicros));
+            frame = toFrame(sender, previous, ops);
+        }
+        diffTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (frame == null || frame.length() >= fullFrame.length()) {
+            fullFrames.increment();
+            return null;
+        }
+        deltaFrames.increment();
+        ratio.record((double) frame.length() / fullFrame.length());
+        return frame;
+    }
+
+    /**
+     * 房间内已没有增量会话或房间已清空时丢弃基准，之后第一条 EDIT 以完整内容发送
+     */
+    public void reset(String docId) {
+        bases.remove(docId);
+    }
+
+    private String toFrame(String sender, String previous, List<ContentDiff.Op> ops) {
+        WsDeltaMessage msg = new WsDeltaMessage();
+        msg.setType(WsMessageType.EDIT_DELTA);
+        msg.setSender(sender);
+        msg.setBase(ContentDiff.hash(previous));
+        msg.setLength(previous.length());
+        List<Object[]> encoded = new ArrayList<>(ops.size());
+        for (ContentDiff.Op op : ops) {
+            encoded.add(new Object[]{op.pos(), op.delete(), op.insert()});
+        }
+        msg.setOps(encoded);
+        try {
+            return objectMapper.writeValueAsString(msg);
+        } catch (JsonProcessingException e) {
+            log.warn("增量消息序列化失败，发送完整内容", e);
+            return null;
+        }
+    }
+
+    private static final class Base {
+        private String content;
+    }
+}
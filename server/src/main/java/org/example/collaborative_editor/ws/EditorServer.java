@@ -1,5 +1,6 @@
 package org.example.collaborative_editor.ws;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.websocket.*;
 import jakarta.websocket.server.PathParam;
@@ -7,28 +8,41 @@ import jakarta.websocket.server.ServerEndpoint;
 import lombok.extern.slf4j.Slf4j;
 
 import org.example.collaborative_editor.constant.MessageConstant;
+import org.example.collaborative_editor.constant.PermissionConstant;
 import org.example.collaborative_editor.constant.WsMessageType;
 import org.example.collaborative_editor.context.BaseContext;
 import org.example.collaborative_editor.dto.WsMessage;
-import org.example.collaborative_editor.entity.Document;
-import org.example.collaborative_editor.mapper.CollaboratorMapper;
+import org.example.collaborative_editor.exception.BusinessException;
 import org.example.collaborative_editor.mapper.DocumentMapper;
-import org.example.collaborative_editor.service.DocumentService;
-import org.example.collaborative_editor.entity.Collaborator;
+import org.example.collaborative_editor.journal.EditJournal;
+import org.example.collaborative_editor.lifecycle.DocumentLifecycleManager;
+import org.example.collaborative_editor.lifecycle.DrainManager;
+import org.example.collaborative_editor.metrics.EditorMetrics;
+import org.example.collaborative_editor.service.DocumentContentService;
+import org.example.collaborative_editor.service.DocumentAccessService;
+import org.example.collaborative_editor.task.DocumentSyncTask;
 import org.example.collaborative_editor.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import io.jsonwebtoken.Claims;
 
 /**
@@ -48,48 +62,117 @@ public class EditorServer {
      */
     private static final Map<String, CopyOnWriteArraySet<Session>> docSessions = new ConcurrentHashMap<>();
 
+    /**
+     * 本节点的在线会话总数，准入检查时使用
+     */
+    private static final AtomicInteger sessionCount = new AtomicInteger();
+
+    /**
+     * 使用分区扇出的热点房间；房间达到阈值后保持热点状态直到清空，避免切换时同一接收者的消息乱序
+     */
+    private static final Set<String> hotRooms = ConcurrentHashMap.newKeySet();
+
     /**
      * Jackson ObjectMapper，用于 JSON 解析和生成。
      * 由于 WebSocket 是多例模式，需要通过静态 setter 方法注入。
      */
     private static ObjectMapper objectMapper;
 
-    private static CollaboratorMapper collaboratorMapper;
-
     private static DocumentMapper documentMapper;
+
+    private static DocumentAccessService documentAccessService;
+
+    private static DocumentContentService documentContentService;
+
+    private static JwtUtil jwtUtil;
+
+    private static EditorMetrics editorMetrics;
+
+    private static EditJournal editJournal;
+
+    private static DocumentLifecycleManager documentLifecycleManager;
+
+    private static DrainManager drainManager;
+
+    private static SessionHeartbeat sessionHeartbeat;
+
+    private static AdmissionControl admissionControl;
+
+    private static FanoutExecutor fanoutExecutor;
+
+    private static ViewerConflator viewerConflator;
+
+    private static EditDeltaEncoder editDeltaEncoder;
+
+    private static CursorAnchors cursorAnchors;
+
+    private static AdmissionTickets admissionTickets;
+
+    private static DocumentSyncTask documentSyncTask;
+
     /**
-     * RedisTemplate，用于操作 Redis。
-     * 由于 WebSocket 是多例模式，需要通过静态 setter 方法注入。
+     * 单条消息的最大字符数（分片拼接后）
      */
-    private static RedisTemplate<String, Object> redisTemplate;
+    private static int maxMessageChars;
 
-    private static DocumentService documentService;
+    private static final String PARTIAL_MESSAGE = "partialMessage";
 
-    private static JwtUtil jwtUtil;
+    /**
+     * Session 属性：只读会话（协作者权限为 view），不接受其 EDIT / CURSOR，EDIT 按间隔合并下发
+     */
+    private static final String VIEWER = "viewer";
+
+    /**
+     * Session 属性：只读会话连接时携带 cursors=1，接收其他人的光标
+     */
+    private static final String VIEWER_CURSORS = "viewerCursors";
+
+    /**
+     * Session 属性：连接时携带 delta=1，EDIT 以 EDIT_DELTA 增量下发
+     */
+    private static final String DELTA = "delta";
+
+    /**
+     * Session 属性：连接时携带 anchors=1，光标以纯文本偏移上报，接收服务端平移后的 CURSORS 快照
+     */
+    private static final String ANCHORS = "anchors";
+
+    /**
+     * Session 属性：连接时携带 chunks=1，客户端请求重新同步时同样按块下发
+     */
+    private static final String CHUNKED = "chunked";
+
+    /**
+     * Session 属性：出站内容帧的待发送槽位（Outbox），见 sendLatest
+     */
+    private static final String OUTBOX = "outbox";
+
+    /**
+     * 客户端 JSON 心跳的前缀与固定回复，命中时不经过 JSON 解析
+     */
+    private static final String PING_PREFIX = "{\"type\":\"" + WsMessageType.PING + "\"";
+
+    private static final String PONG_FRAME = "{\"type\":\"" + WsMessageType.PONG + "\",\"sender\":\""
+            + WsMessageType.SENDER_SERVER + "\",\"data\":\"pong\"}";
 
     @Autowired
     public void setObjectMapper(ObjectMapper objectMapper) {
         EditorServer.objectMapper = objectMapper;
     }
 
-    @Autowired
-    public void setCollaboratorMapper(CollaboratorMapper collaboratorMapper) {
-        EditorServer.collaboratorMapper = collaboratorMapper;
-    }
-
     @Autowired
     public void setDocumentMapper(DocumentMapper documentMapper) {
         EditorServer.documentMapper = documentMapper;
     }
 
     @Autowired
-    public void setRedisTemplate(RedisTemplate<String, Object> redisTemplate) {
-        EditorServer.redisTemplate = redisTemplate;
+    public void setDocumentAccessService(DocumentAccessService documentAccessService) {
+        EditorServer.documentAccessService = documentAccessService;
     }
 
     @Autowired
-    public void setDocumentService(DocumentService documentService) {
-        EditorServer.documentService = documentService;
+    public void setDocumentContentService(DocumentContentService documentContentService) {
+        EditorServer.documentContentService = documentContentService;
     }
 
     @Autowired
@@ -97,6 +180,73 @@ public class EditorServer {
         EditorServer.jwtUtil = jwtUtil;
     }
 
+    @Autowired
+    public void setEditorMetrics(EditorMetrics editorMetrics) {
+        EditorServer.editorMetrics = editorMetrics;
+        editorMetrics.bindRooms(docSessions);
+        editorMetrics.bindHotRooms(hotRooms);
+    }
+
+    @Value("${codoc.ws.max-message-chars:33554432}")
+    public void setMaxMessageChars(int maxMessageChars) {
+        EditorServer.maxMessageChars = maxMessageChars;
+    }
+
+    @Autowired
+    public void setDocumentLifecycleManager(DocumentLifecycleManager documentLifecycleManager) {
+        EditorServer.documentLifecycleManager = documentLifecycleManager;
+    }
+
+    @Autowired
+    public void setDrainManager(DrainManager drainManager) {
+        EditorServer.drainManager = drainManager;
+    }
+
+    @Autowired
+    public void setFanoutExecutor(FanoutExecutor fanoutExecutor) {
+        EditorServer.fanoutExecutor = fanoutExecutor;
+    }
+
+    @Autowired
+    public void setViewerConflator(ViewerConflator viewerConflator) {
+        EditorServer.viewerConflator = viewerConflator;
+    }
+
+    @Autowired
+    public void setEditDeltaEncoder(EditDeltaEncoder editDeltaEncoder) {
+        EditorServer.editDeltaEncoder = editDeltaEncoder;
+    }
+
+    @Autowired
+    public void setCursorAnchors(CursorAnchors cursorAnchors) {
+        EditorServer.cursorAnchors = cursorAnchors;
+    }
+
+    @Autowired
+    public void setAdmissionTickets(AdmissionTickets admissionTickets) {
+        EditorServer.admissionTickets = admissionTickets;
+    }
+
+    @Autowired
+    public void setDocumentSyncTask(DocumentSyncTask documentSyncTask) {
+        EditorServer.documentSyncTask = documentSyncTask;
+    }
+
+    @Autowired
+    public void setAdmissionControl(AdmissionControl admissionControl) {
+        EditorServer.admissionControl = admissionControl;
+    }
+
+    @Autowired
+    public void setSessionHeartbeat(SessionHeartbeat sessionHeartbeat) {
+        EditorServer.sessionHeartbeat = sessionHeartbeat;
+    }
+
+    @Autowired
+    public void setEditJournal(EditJournal editJournal) {
+        EditorServer.editJournal = editJournal;
+    }
+
     /**
      * 连接建立时调用。
      *
@@ -105,10 +255,58 @@ public class EditorServer {
      */
     @OnOpen
     public void onOpen(Session session, @PathParam("docId") String docId) {
+        open(session, docId, session.getQueryString(), null, true);
+    }
+
+    /**
+     * 会话加入文档房间：准入检查、Token 与权限校验，随后发送角色、在线列表、文档内容与光标。
+     * 独立连接与多路复用连接（MuxServer）的每个频道都经过这里。
+     *
+     * @param queryString 连接参数（ticket、token、username、chunks 等）
+     * @param claims      多路复用连接建立时已解析的 Token，为 null 时从 queryString 的 token 解析
+     * @param heartbeat   是否为该会话注册服务端心跳；频道共用物理连接的心跳
+     */
+    static void open(Session session, String docId, String queryString, Claims claims, boolean heartbeat) {
+        try {
+            accept(session, docId, queryString, claims, heartbeat);
+        } finally {
+            // 校验通过后会设置 BaseContext，任何提前返回的路径都要清理，避免残留到复用该线程的下一个请求
+            BaseContext.removeCurrentId();
+        }
+    }
+
+    private static void accept(Session session, String docId, String queryString, Claims claims, boolean heartbeat) {
+        // 节点正在下线，拒绝新连接并附带建议的重连延迟
+        if (drainManager.isDraining()) {
+            try {
+                session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, drainManager.retryHint()));
+            } catch (IOException e) {
+                log.debug("关闭连接失败: sessionId={}", session.getId(), e);
+            }
+            return;
+        }
+
+        // 单文档 / 单节点会话数超过上限时拒绝，附带重连延迟
+        CopyOnWriteArraySet<Session> existing = docSessions.get(docId);
+        CloseReason rejected = admissionControl.admit(existing == null ? 0 : existing.size(), sessionCount.get());
+        if (rejected != null) {
+            try {
+                session.close(rejected);
+            } catch (IOException e) {
+                log.debug("关闭连接失败: sessionId={}", session.getId(), e);
+            }
+            return;
+        }
+
         // 1. 解析参数
-        String queryString = session.getQueryString();
         String token = null;
+        String ticket = null;
         String queryUsername = null;
+        boolean chunked = false;
+        boolean cursors = false;
+        boolean delta = false;
+        boolean anchors = false;
+        boolean viewer = false;
         Long userId = null;
         String username = "匿名用户";
 
@@ -117,6 +315,16 @@ public class EditorServer {
             for (String param : params) {
                 if (param.startsWith("token=")) {
                     token = param.substring(6);
+                } else if (param.startsWith("ticket=")) {
+                    ticket = param.substring(7);
+                } else if (param.equals("chunks=1")) {
+                    chunked = true;
+                } else if (param.equals("cursors=1")) {
+                    cursors = true;
+                } else if (param.equals("delta=1")) {
+                    delta = true;
+                } else if (param.equals("anchors=1")) {
+                    anchors = true;
                 } else if (param.startsWith("username=")) {
                     try {
                         queryUsername = URLDecoder.decode(param.substring(9), StandardCharsets.UTF_8.name());
@@ -127,13 +335,40 @@ public class EditorServer {
             }
         }
 
-        // 2. 验证 Token
-        if (token != null) {
+        // 2. 验证准入票据：一次 HMAC 校验得到用户与角色，不解析 Token，也不查询文档与协作者
+        if (ticket != null) {
+            AdmissionTickets.Ticket verified = admissionTickets.verify(ticket, docId);
+            // 多路复用连接已有身份，票据必须属于同一用户
+            if (verified != null
+                    && (claims == null || verified.userId().toString().equals(claims.get("userId").toString()))) {
+                userId = verified.userId();
+                viewer = PermissionConstant.VIEW.equals(verified.role());
+                if (queryUsername != null && !queryUsername.isEmpty()) {
+                    username = queryUsername;
+                } else if (verified.username() != null) {
+                    username = verified.username();
+                }
+                BaseContext.setCurrentId(userId);
+            } else if (token == null && claims == null) {
+                try {
+                    session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY, "Invalid Ticket"));
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+                return;
+            }
+        }
+
+        // 3. 没有有效票据时验证 Token（票据过期后重连等情况）
+        if (userId == null && (token != null || claims != null)) {
             try {
-                Claims claims = jwtUtil.parseToken(token);
-                userId = Long.valueOf(claims.get("userId").toString());
-                Document document = documentService.getDocument(docId);
-                if (document == null) {
+                Claims parsed = claims != null ? claims : jwtUtil.parseToken(token);
+                userId = Long.valueOf(parsed.get("userId").toString());
+                // 所有者 / 协作者关系经客户端缓存读取，重连风暴时不打到 MySQL
+                String role;
+                try {
+                    role = documentAccessService.resolveRole(docId, userId);
+                } catch (BusinessException notFound) {
                     // 文档不存在，拒绝连接
                     try {
                         session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT,
@@ -142,26 +377,24 @@ public class EditorServer {
                         ex.printStackTrace();
                     }
                     return;
-                } else if (!document.getOwnerId().equals(userId)) {
-                    // 不是所有者，检查是否为协作者
-                    Collaborator collaborator = collaboratorMapper.getByDocIdAndUserId(docId,
-                            userId);
-                    if (collaborator == null) {
-                        // 不是协作者，拒绝连接
-                        try {
-                            session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY,
-                                    MessageConstant.DOCUMENT_NO_PERMISSION));
-                        } catch (IOException ex) {
-                            ex.printStackTrace();
-                        }
+                }
+                if (role == null) {
+                    // 既不是所有者也不是协作者，拒绝连接
+                    try {
+                        session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY,
+                                MessageConstant.DOCUMENT_NO_PERMISSION));
+                    } catch (IOException ex) {
+                        ex.printStackTrace();
                     }
+                    return;
                 }
+                viewer = PermissionConstant.VIEW.equals(role);
 
                 // 优先使用前端传来的显示名称（昵称），否则使用 Token 中的用户名
                 if (queryUsername != null && !queryUsername.isEmpty()) {
                     username = queryUsername;
                 } else {
-                    username = claims.getSubject();
+                    username = parsed.getSubject();
                 }
                 // 设置到 BaseContext (虽然 WebSocket 是多线程，但 onOpen 在当前线程执行)
                 BaseContext.setCurrentId(userId);
@@ -178,43 +411,53 @@ public class EditorServer {
 
         // 将 docId 和用户信息存入 Session 属性
         session.getUserProperties().put("docId", docId);
+        session.getUserProperties().put(OUTBOX, new Outbox());
         if (userId != null) {
             session.getUserProperties().put("userId", userId);
             session.getUserProperties().put("username", username);
         }
+        if (chunked) {
+            session.getUserProperties().put(CHUNKED, Boolean.TRUE);
+        }
+        // 只读会话收到的是合并后的 EDIT，相邻两帧之间没有确定的基准，不使用增量
+        if (delta && !viewer && editDeltaEncoder.isEnabled()) {
+            session.getUserProperties().put(DELTA, Boolean.TRUE);
+        }
+        if (anchors && cursorAnchors.isEnabled()) {
+            session.getUserProperties().put(ANCHORS, Boolean.TRUE);
+        }
+        if (viewer) {
+            session.getUserProperties().put(VIEWER, Boolean.TRUE);
+            if (cursors) {
+                session.getUserProperties().put(VIEWER_CURSORS, Boolean.TRUE);
+            }
+        }
 
-        // 从 Redis 获取文档内容
-        String content = (String) redisTemplate.opsForValue().get("doc:" + docId);
-
-        // 如果 Redis 中没有，尝试从数据库加载
-        if (content == null) {
+        // 确保文档内容已缓存在 Redis 中，缺失时从数据库加载
+        try {
+            documentContentService.ensureCached(docId);
+        } catch (Exception e) {
+            log.warn("加载文档失败: {}", docId);
             try {
-                Document doc = documentService.getDocument(docId);
-                if (doc != null) {
-                    content = doc.getContent();
-                    if (content == null) {
-                        content = "";
-                    }
-                    // 回写到 Redis，设置过期时间（例如24小时）
-                    redisTemplate.opsForValue().set("doc:" + docId, content, 24, TimeUnit.HOURS);
-                }
-            } catch (Exception e) {
-                log.warn("加载文档失败: {}", docId);
-                try {
-                    session.close(
-                            new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, MessageConstant.DOCUMENT_NOT_FOUND));
-                } catch (IOException ex) {
-                    ex.printStackTrace();
-                }
-                return;
+                session.close(
+                        new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, MessageConstant.DOCUMENT_NOT_FOUND));
+            } catch (IOException ex) {
+                ex.printStackTrace();
             }
+            return;
         }
 
         // 将用户加入对应文档的集合
-        // computeIfAbsent 保证原子性：如果集合不存在则创建，存在则返回
-        docSessions.computeIfAbsent(docId, k -> new CopyOnWriteArraySet<>()).add(session);
+        CopyOnWriteArraySet<Session> room = joinRoom(docId, session);
+        documentLifecycleManager.onJoin(docId);
+        if (heartbeat) {
+            sessionHeartbeat.register(session);
+        }
 
-        log.info("用户 {} (ID:{}) 加入文档 {}, 当前在线人数: {}", username, userId, docId, docSessions.get(docId).size());
+        log.info("用户 {} (ID:{}) 加入文档 {}, 当前在线人数: {}, 只读: {}", username, userId, docId, room.size(), viewer);
+
+        // 告知客户端本次连接的角色，只读客户端据此禁用编辑
+        send(session, syncMessage(WsMessageType.ROLE, viewer ? PermissionConstant.VIEW : PermissionConstant.EDIT));
 
         // 1. 广播用户加入消息给其他人
         try {
@@ -228,45 +471,28 @@ public class EditorServer {
 
         // 2. 发送当前在线用户列表给新用户
         try {
-            List<String> userList = docSessions.get(docId).stream()
-                    .map(s -> (String) s.getUserProperties().get("username"))
-                    .filter(name -> name != null)
-                    .distinct()
-                    .collect(Collectors.toList());
+            List<String> userList = buildUserList(room);
 
             WsMessage listMsg = new WsMessage();
             listMsg.setType(WsMessageType.USER_LIST);
             listMsg.setSender(WsMessageType.SENDER_SERVER);
             listMsg.setData(objectMapper.writeValueAsString(userList));
 
-            // 使用 synchronized 避免并发写入
-            synchronized (session) {
-                session.getBasicRemote().sendText(objectMapper.writeValueAsString(listMsg));
-            }
+            send(session, objectMapper.writeValueAsString(listMsg));
         } catch (IOException e) {
             log.error("发送用户列表失败", e);
         }
 
-        // 如果该文档已有内容，立即发送一条 type: "SYNC" 的消息给新用户
-        if (content != null) {
-            try {
-                WsMessage syncMsg = new WsMessage();
-                syncMsg.setType(WsMessageType.SYNC);
-                syncMsg.setSender(WsMessageType.SENDER_SERVER);
-                syncMsg.setData(content);
-
-                String json = objectMapper.writeValueAsString(syncMsg);
-                // 使用 synchronized 避免并发写入
-                synchronized (session) {
-                    session.getBasicRemote().sendText(json);
-                }
-            } catch (IOException e) {
-                log.error("发送同步消息失败", e);
+        // 3. 发送当前文档内容给新用户
+        sendSync(session, docId, chunked);
+
+        // 4. 发送其他人的光标锚点
+        if (isAnchors(session) && (!viewer || cursors)) {
+            String snapshot = cursorAnchors.snapshot(docId);
+            if (snapshot != null) {
+                send(session, cursorsMessage(snapshot));
             }
         }
-
-        // 清理 BaseContext
-        BaseContext.removeCurrentId();
     }
 
     /**
@@ -276,48 +502,144 @@ public class EditorServer {
      * @param session    发送消息的会话
      */
     @OnMessage
-    public void onMessage(String messageStr, Session session) {
+    public void onMessage(String part, boolean last, Session session) {
         String docId = (String) session.getUserProperties().get("docId");
         if (docId == null) {
             return;
         }
+        SessionHeartbeat.touch(session);
+
+        // 大文档的 EDIT 会超过容器的文本缓冲区，按分片接收后再拼接
+        String messageStr = assemble(part, last, session);
+        if (messageStr == null) {
+            return;
+        }
+        handle(session, docId, messageStr);
+    }
 
+    /**
+     * 处理一条完整的客户端消息；多路复用连接去掉频道标记后按频道会话调用
+     */
+    static void handle(Session session, String docId, String messageStr) {
+        long start = System.nanoTime();
+        // 客户端心跳直接回复固定的 PONG
+        if (messageStr.startsWith(PING_PREFIX)) {
+            send(session, PONG_FRAME);
+            editorMetrics.recordInbound(WsMessageType.PING, System.nanoTime() - start);
+            return;
+        }
+        String type = null;
         try {
             // 解析收到的 JSON 消息
             WsMessage msg = objectMapper.readValue(messageStr, WsMessage.class);
+            type = msg.getType();
 
-            // 如果是 EDIT 类型，更新 Redis，并广播
-            if (WsMessageType.EDIT.equals(msg.getType())) {
-                // 更新 Redis 中的文档内容
-                redisTemplate.opsForValue().set("doc:" + docId, msg.getData());
-
-                // 标记文档为脏数据（需要同步到 MySQL）
-                redisTemplate.opsForSet().add("dirty_docs", docId);
+            // 只读会话只能收，不接受内容与光标变更
+            if (isViewer(session)
+                    && (WsMessageType.EDIT.equals(type) || WsMessageType.CURSOR.equals(type))) {
+                return;
+            }
 
-                // 广播给同文档下的其他人（排除发送者自己）
-                broadcast(messageStr, session);
+            // 如果是 EDIT 类型，更新 Redis，并广播；超过限流时按策略合并、丢弃或关闭连接
+            if (WsMessageType.EDIT.equals(msg.getType())) {
+                admissionControl.submitEdit(session, docId, msg.getData(), messageStr);
             } else if (WsMessageType.CURSOR.equals(msg.getType())) {
-                // 广播光标位置
+                if (!admissionControl.admitCursor(session)) {
+                    return;
+                }
+                // 广播光标位置；锚点会话上报的是纯文本偏移 {"pos":N}，同时记录为服务端锚点，
+                // 转发时附上会话 ID，与 CURSORS 快照的键一致
                 String username = (String) session.getUserProperties().get("username");
+                if (username != null && isAnchors(session)) {
+                    JsonNode pos = msg.getData() == null ? null : objectMapper.readTree(msg.getData()).get("pos");
+                    if (pos != null && pos.canConvertToInt()) {
+                        cursorAnchors.move(docId, session.getId(), username, pos.intValue());
+                        msg.setData(objectMapper.writeValueAsString(Map.of("pos", pos.intValue(), "session", session.getId())));
+                    }
+                }
                 msg.setSender(username);
-                broadcast(objectMapper.writeValueAsString(msg), session);
-            } else if ("PING".equals(msg.getType())) {
+                broadcastCursor(objectMapper.writeValueAsString(msg), session);
+            } else if (WsMessageType.SYNC.equals(msg.getType())) {
+                // 客户端应用 EDIT_DELTA 时发现基准不一致，重新下发完整内容；与光标共用限流，避免反复请求大文档
+                if (admissionControl.admitCursor(session)) {
+                    sendSync(session, docId, session.getUserProperties().containsKey(CHUNKED));
+                }
+            } else if (WsMessageType.PING.equals(msg.getType())) {
                 // 收到 PING，回复 PONG
-                // log.info("ping:{}", msg);
                 WsMessage pong = new WsMessage();
-                pong.setType("PONG");
+                pong.setType(WsMessageType.PONG);
                 pong.setSender(WsMessageType.SENDER_SERVER);
                 pong.setData("pong");
-                synchronized (session) {
-                    session.getBasicRemote().sendText(objectMapper.writeValueAsString(pong));
-                    // log.info("pong:{}", pong);
-                }
+                send(session, objectMapper.writeValueAsString(pong));
             }
         } catch (IOException e) {
             log.error("解析消息失败: {}", messageStr, e);
+        } finally {
+            editorMetrics.recordInbound(type, System.nanoTime() - start);
         }
     }
 
+    /**
+     * 应用一条 EDIT：写编辑日志、更新 Redis、标脏并广播给同文档的其他人
+     */
+    static void applyEdit(Session session, String docId, String content, String frame) {
+        // 先写本地编辑日志，Redis 丢失数据时可在重启后回放
+        editJournal.append(docId, content);
+
+        // 更新 Redis 中的文档内容（大文档只写入变化的块）
+        documentContentService.save(docId, content);
+
+        // 标记文档为脏数据（需要同步到 MySQL），保留首次标脏时间并记录本次编辑时间，由 DocumentSyncTask 按文档调度落库
+        documentSyncTask.markDirty(docId);
+
+        // 广播给同文档下的其他编辑者（排除发送者自己），只读会话由 ViewerConflator 按间隔下发最新内容
+        broadcastEdit(frame, session, docId, content);
+
+        // 平移光标锚点，位置有变化时下发一次快照，代替每个客户端在输入后重新发送光标
+        String snapshot = cursorAnchors.onEdit(docId, session.getId(), content);
+        if (snapshot != null) {
+            broadcastCursors(docId, cursorsMessage(snapshot));
+        }
+    }
+
+    /**
+     * 收到协议层 Pong（服务端心跳的回复）
+     */
+    @OnMessage
+    public void onPong(PongMessage pong, Session session) {
+        SessionHeartbeat.touch(session);
+    }
+
+    /**
+     * 拼接分片消息，消息未接收完整时返回 null；超过上限时关闭连接
+     */
+    static String assemble(String part, boolean last, Session session) {
+        StringBuilder pending = (StringBuilder) session.getUserProperties().get(PARTIAL_MESSAGE);
+        if (pending == null) {
+            if (last) {
+                return part;
+            }
+            pending = new StringBuilder(part.length() * 2);
+            session.getUserProperties().put(PARTIAL_MESSAGE, pending);
+        }
+        if (pending.length() + part.length() > maxMessageChars) {
+            session.getUserProperties().remove(PARTIAL_MESSAGE);
+            log.warn("消息超过上限 {} 字符，关闭连接: sessionId={}", maxMessageChars, session.getId());
+            try {
+                session.close(new CloseReason(CloseReason.CloseCodes.TOO_BIG, "Message too big"));
+            } catch (IOException e) {
+                log.debug("关闭连接失败: sessionId={}", session.getId(), e);
+            }
+            return null;
+        }
+        pending.append(part);
+        if (!last) {
+            return null;
+        }
+        session.getUserProperties().remove(PARTIAL_MESSAGE);
+        return pending.toString();
+    }
+
     /**
      * 连接关闭时调用。
      *
@@ -325,6 +647,56 @@ public class EditorServer {
      */
     @OnClose
     public void onClose(Session session) {
+        leave(session);
+    }
+
+    /**
+     * 发生错误时调用。
+     * 传输层错误（读写失败、连接已断开）说明会话已不可用，立即从房间与在线计数中移除；其他错误只记录日志。
+     */
+    @OnError
+    public void onError(Session session, Throwable error) {
+        String docId = (String) session.getUserProperties().get("docId");
+        log.error("WebSocket 错误: docId={}, sessionId={}, error={}", docId, session.getId(), error.getMessage());
+        if ((error instanceof IOException || !session.isOpen()) && isJoined(session)) {
+            sessionHeartbeat.cull(session, new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "Transport error"));
+        }
+    }
+
+    /**
+     * 会话是否仍在所属文档的房间中
+     */
+    static boolean isJoined(Session session) {
+        String docId;
+        try {
+            docId = (String) session.getUserProperties().get("docId");
+        } catch (IllegalStateException e) {
+            // 完全关闭的会话不能再读取属性，容器关闭时已通过 onClose 离开房间
+            return false;
+        }
+        CopyOnWriteArraySet<Session> sessions = docId == null ? null : docSessions.get(docId);
+        return sessions != null && sessions.contains(session);
+    }
+
+    /**
+     * 移除失效会话并尝试关闭连接；关闭失败（半开连接）时由容器回收
+     */
+    static void evict(Session session, CloseReason reason) {
+        leave(session);
+        try {
+            if (session.isOpen()) {
+                session.close(reason);
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("关闭连接失败: sessionId={}", session.getId(), e);
+        }
+    }
+
+    /**
+     * 将会话移出房间；onClose、传输错误与心跳超时都会调用，只有第一次真正移除时才广播离开和减少在线数
+     */
+    static void leave(Session session) {
+        session.getUserProperties().remove(PARTIAL_MESSAGE);
         String docId = (String) session.getUserProperties().get("docId");
         String username = (String) session.getUserProperties().get("username");
         if (docId == null) {
@@ -334,7 +706,11 @@ public class EditorServer {
         CopyOnWriteArraySet<Session> sessions = docSessions.get(docId);
         if (sessions != null) {
             // 从集合中移除用户
-            sessions.remove(session);
+            if (!sessions.remove(session)) {
+                return;
+            }
+            cursorAnchors.remove(docId, session.getId());
+            sessionCount.decrementAndGet();
             log.info("用户 {} 离开文档 {}, 剩余在线人数: {}", username != null ? username : session.getId(), docId,
                     sessions.size());
 
@@ -353,18 +729,181 @@ public class EditorServer {
             // 如果该文档下没有用户了，可以选择清理 docSessions 中的条目
             if (sessions.isEmpty()) {
                 docSessions.remove(docId);
-                // 注意：这里不再删除文档内容，因为内容已经持久化在 Redis 中
+                editorMetrics.removeRoom(docId);
+                documentContentService.release(docId);
+                admissionControl.release(docId);
+                viewerConflator.release(docId);
+                editDeltaEncoder.reset(docId);
+                cursorAnchors.release(docId);
+                hotRooms.remove(docId);
             }
+            // 集群内无人在线时，落库后降为温数据
+            documentLifecycleManager.onLeave(docId, sessions.isEmpty());
         }
     }
 
     /**
-     * 发生错误时调用。
+     * 辅助方法：将 Session 加入文档对应的集合。
+     * computeIfAbsent 保证原子性：如果集合不存在则创建，存在则返回
+     *
+     * @return 该文档当前的 Session 集合
      */
-    @OnError
-    public void onError(Session session, Throwable error) {
-        String docId = (String) session.getUserProperties().get("docId");
-        log.error("WebSocket 错误: docId={}, sessionId={}, error={}", docId, session.getId(), error.getMessage());
+    static CopyOnWriteArraySet<Session> joinRoom(String docId, Session session) {
+        CopyOnWriteArraySet<Session> room = docSessions.computeIfAbsent(docId, k -> {
+            CopyOnWriteArraySet<Session> created = new CopyOnWriteArraySet<>();
+            editorMetrics.registerRoom(k, created);
+            return created;
+        });
+        if (room.add(session)) {
+            sessionCount.incrementAndGet();
+        }
+        return room;
+    }
+
+    /**
+     * 本节点上该文档是否还有在线会话
+     */
+    public static boolean hasSessions(String docId) {
+        CopyOnWriteArraySet<Session> sessions = docSessions.get(docId);
+        return sessions != null && !sessions.isEmpty();
+    }
+
+    /**
+     * 本节点上有在线会话的文档 ID 快照
+     */
+    public static Set<String> activeDocIds() {
+        return new HashSet<>(docSessions.keySet());
+    }
+
+    /**
+     * 本节点的在线会话总数
+     */
+    public static int sessionCount() {
+        return sessionCount.get();
+    }
+
+    /**
+     * 通知本节点所有会话重连到其他节点，每个会话的延迟（毫秒）单独取值，错开重连时间
+     */
+    public static void requestReconnect(LongSupplier delayMs) {
+        for (CopyOnWriteArraySet<Session> sessions : docSessions.values()) {
+            for (Session s : sessions) {
+                if (s.isOpen()) {
+                    send(s, syncMessage(WsMessageType.RECONNECT, String.valueOf(delayMs.getAsLong())));
+                }
+            }
+        }
+    }
+
+    /**
+     * 关闭本节点所有会话，关闭原因按会话单独生成
+     */
+    public static void closeAll(Supplier<CloseReason> reason) {
+        // 多路复用连接关闭时其频道随之离开房间
+        MuxServer.closeAll(reason);
+        for (CopyOnWriteArraySet<Session> sessions : docSessions.values()) {
+            for (Session s : sessions) {
+                try {
+                    s.close(reason.get());
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("关闭连接失败: sessionId={}", s.getId(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 辅助方法：收集集合中去重后的在线用户名。
+     */
+    static List<String> buildUserList(Collection<Session> sessions) {
+        return sessions.stream()
+                .map(s -> (String) s.getUserProperties().get("username"))
+                .filter(name -> name != null)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 辅助方法：向新用户发送文档内容。
+     * 连接时携带 chunks=1 的客户端按块接收 SYNC_CHUNK，最后一块以 SYNC 发送；其他客户端收到一条完整的 SYNC。
+     * 分块发送期间占用会话的 Outbox，其间广播的 EDIT 进入槽位，在最后一块之后发送，不会插入到块之间。
+     */
+    private static void sendSync(Session session, String docId, boolean chunked) {
+        if (!chunked) {
+            try {
+                String frame = syncMessage(WsMessageType.SYNC, documentContentService.load(docId));
+                sendLatest(session, frame, frame);
+            } catch (Exception e) {
+                log.error("发送同步消息失败: docId={}", docId, e);
+            }
+            return;
+        }
+        Outbox outbox = outbox(session);
+        if (outbox == null || !claimForSync(outbox)) {
+            return;
+        }
+        String last = null;
+        try {
+            // 延后一块发送，保证最后一块使用 SYNC 类型
+            String[] pending = new String[1];
+            documentContentService.streamBlocks(docId, block -> {
+                if (pending[0] != null) {
+                    send(session, syncMessage(WsMessageType.SYNC_CHUNK, pending[0]));
+                }
+                pending[0] = block;
+            });
+            last = syncMessage(WsMessageType.SYNC, pending[0] == null ? "" : pending[0]);
+        } catch (Exception e) {
+            log.error("发送同步消息失败: docId={}", docId, e);
+        }
+        // 发出最后一块后接着发送期间进入槽位的帧，槽位为空时释放 Outbox
+        synchronized (outbox) {
+            outbox.syncing = false;
+            if (last == null) {
+                last = outbox.pending;
+                outbox.pending = null;
+                if (last == null) {
+                    release(outbox);
+                    return;
+                }
+            }
+        }
+        drainOutbox(session, outbox, last);
+    }
+
+    /**
+     * 等待该会话正在进行的内容帧发送结束后占用 Outbox；占用期间进入槽位的帧一律为完整帧（客户端的增量基准将变为 SYNC 的内容）
+     */
+    private static boolean claimForSync(Outbox outbox) {
+        synchronized (outbox) {
+            while (outbox.sending) {
+                try {
+                    outbox.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            outbox.sending = true;
+            outbox.syncing = true;
+            return true;
+        }
+    }
+
+    private static String cursorsMessage(String snapshot) {
+        return syncMessage(WsMessageType.CURSORS, snapshot);
+    }
+
+    private static String syncMessage(String type, String data) {
+        WsMessage syncMsg = new WsMessage();
+        syncMsg.setType(type);
+        syncMsg.setSender(WsMessageType.SENDER_SERVER);
+        syncMsg.setData(data);
+        try {
+            return objectMapper.writeValueAsString(syncMsg);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
@@ -373,7 +912,7 @@ public class EditorServer {
      * @param data   要发送的 JSON 字符串
      * @param sender 发送者的 Session（将被排除）
      */
-    private void broadcast(String data, Session sender) {
+    static void broadcast(String data, Session sender) {
         String docId = (String) sender.getUserProperties().get("docId");
         if (docId == null) {
             return;
@@ -381,19 +920,311 @@ public class EditorServer {
 
         CopyOnWriteArraySet<Session> sessions = docSessions.get(docId);
         if (sessions != null) {
-            for (Session s : sessions) {
-                // 排除发送者自己，并且只发送给打开的连接
-                try {
-                    if (!s.getId().equals(sender.getId()) && s.isOpen()) {
-                        // 使用 synchronized 避免并发发送导致 IllegalStateException
-                        synchronized (s) {
-                            s.getBasicRemote().sendText(data);
-                        }
+            // 排除发送者自己，并且只发送给打开的连接
+            fanout(docId, sessions, data, s -> !s.getId().equals(sender.getId()) && s.isOpen());
+        }
+    }
+
+    /**
+     * 辅助方法：EDIT 发送给同组其他编辑者，只读会话只记录最新一帧等待合并下发。
+     * 房间内有增量会话时，它们收到相对上一条 EDIT 的 EDIT_DELTA，无法生成增量时与其他编辑者一样收到完整帧。
+     */
+    private static void broadcastEdit(String data, Session sender, String docId, String content) {
+        CopyOnWriteArraySet<Session> sessions = docSessions.get(docId);
+        if (sessions == null) {
+            return;
+        }
+        boolean hasViewers = false;
+        boolean hasDelta = false;
+        for (Session s : sessions) {
+            hasViewers |= isViewer(s);
+            hasDelta |= isDelta(s);
+        }
+        // 基准是最近一次广播的内容，发送者本地与收到此帧后的增量会话都与之一致
+        String delta = null;
+        if (hasDelta) {
+            delta = editDeltaEncoder.encode(docId, (String) sender.getUserProperties().get("username"), content, data);
+        } else {
+            editDeltaEncoder.reset(docId);
+        }
+        if (delta == null) {
+            fanoutLatest(docId, sessions, s -> !s.getId().equals(sender.getId()) && s.isOpen() && !isViewer(s),
+                    data, data);
+        } else {
+            fanoutLatest(docId, sessions, s -> !s.getId().equals(sender.getId()) && s.isOpen() && !isViewer(s) && !isDelta(s),
+                    data, data);
+            fanoutLatest(docId, sessions, s -> !s.getId().equals(sender.getId()) && s.isOpen() && isDelta(s),
+                    delta, data);
+        }
+        if (hasViewers) {
+            viewerConflator.offer(docId, data);
+        }
+    }
+
+    /**
+     * 辅助方法：CURSOR 发送给同组其他编辑者和订阅了光标的只读会话
+     */
+    private static void broadcastCursor(String data, Session sender) {
+        String docId = (String) sender.getUserProperties().get("docId");
+        CopyOnWriteArraySet<Session> sessions = docId == null ? null : docSessions.get(docId);
+        if (sessions != null) {
+            fanout(docId, sessions, data, s -> !s.getId().equals(sender.getId()) && s.isOpen()
+                    && (!isViewer(s) || s.getUserProperties().containsKey(VIEWER_CURSORS)));
+        }
+    }
+
+    /**
+     * 辅助方法：光标锚点快照发送给同组的锚点会话（包括编辑者自己），只读会话需订阅了光标
+     */
+    private static void broadcastCursors(String docId, String data) {
+        CopyOnWriteArraySet<Session> sessions = docSessions.get(docId);
+        if (sessions != null) {
+            fanout(docId, sessions, data, s -> s.isOpen() && isAnchors(s)
+                    && (!isViewer(s) || s.getUserProperties().containsKey(VIEWER_CURSORS)));
+        }
+    }
+
+    /**
+     * 向文档的只读会话下发合并后的 EDIT，由 ViewerConflator 定时调用。
+     * 不论房间大小都只写入会话槽位并交给 FanoutExecutor 的通道发送，下发线程不会被某个慢接收者阻塞
+     */
+    static void deliverToViewers(String docId, String data) {
+        CopyOnWriteArraySet<Session> sessions = docSessions.get(docId);
+        if (sessions == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        fanoutExecutor.dispatchLatest(sessions, s -> s.isOpen() && isViewer(s), s -> offerLatest(s, data, data),
+                EditorServer::drainLatest, start);
+        editorMetrics.recordFanout(System.nanoTime() - start);
+    }
+
+    private static boolean isViewer(Session session) {
+        return session.getUserProperties().containsKey(VIEWER);
+    }
+
+    private static boolean isAnchors(Session session) {
+        return session.getUserProperties().containsKey(ANCHORS);
+    }
+
+    private static boolean isDelta(Session session) {
+        return session.getUserProperties().containsKey(DELTA);
+    }
+
+    /**
+     * 辅助方法：向房间内满足条件的会话发送文本。
+     * 热点房间交给 FanoutExecutor 分区并行发送，调用方线程只负责分组入队。
+     */
+    private static void fanout(String docId, CopyOnWriteArraySet<Session> sessions, String data,
+                               Predicate<Session> filter) {
+        fanout(docId, sessions, filter, s -> send(s, data));
+    }
+
+    private static void fanout(String docId, CopyOnWriteArraySet<Session> sessions, Predicate<Session> filter,
+                               Consumer<Session> deliver) {
+        long start = System.nanoTime();
+        if (isHotRoom(docId, sessions)) {
+            fanoutExecutor.dispatch(sessions, filter, deliver, start);
+            editorMetrics.recordFanout(System.nanoTime() - start);
+            return;
+        }
+        for (Session s : sessions) {
+            if (filter.test(s)) {
+                deliver.accept(s);
+                editorMetrics.recordFanoutRecipient(System.nanoTime() - start);
+            }
+        }
+        editorMetrics.recordFanout(System.nanoTime() - start);
+    }
+
+    /**
+     * 辅助方法：向房间内满足条件的会话发送内容帧，只保留每个会话最新的一帧（见 sendLatest）。
+     * 热点房间只在调用方线程写入各会话的槽位，由 FanoutExecutor 的通道发送槽位中的帧，通道中不会堆积旧内容。
+     */
+    private static void fanoutLatest(String docId, CopyOnWriteArraySet<Session> sessions, Predicate<Session> filter,
+                                     String frame, String fullFrame) {
+        long start = System.nanoTime();
+        if (isHotRoom(docId, sessions)) {
+            fanoutExecutor.dispatchLatest(sessions, filter, s -> offerLatest(s, frame, fullFrame),
+                    EditorServer::drainLatest, start);
+            editorMetrics.recordFanout(System.nanoTime() - start);
+            return;
+        }
+        for (Session s : sessions) {
+            if (filter.test(s)) {
+                sendLatest(s, frame, fullFrame);
+                editorMetrics.recordFanoutRecipient(System.nanoTime() - start);
+            }
+        }
+        editorMetrics.recordFanout(System.nanoTime() - start);
+    }
+
+    private static boolean isHotRoom(String docId, CopyOnWriteArraySet<Session> sessions) {
+        if (hotRooms.contains(docId)) {
+            return true;
+        }
+        if (fanoutExecutor.isHot(sessions.size())) {
+            hotRooms.add(docId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 辅助方法：向单个 Session 发送完整内容帧（EDIT / SYNC），只保留最新的一帧。
+     * 每条 EDIT 都携带完整内容，落后的接收者只需要最新的那一条：该会话正在发送时新帧放入槽位，
+     * 槽位中未发出的旧帧被直接覆盖，发送中的线程发完当前帧后接着发送槽位中的帧。
+     * 增量帧以上一帧为基准，覆盖了未发出的帧时改为放入完整帧。
+     *
+     * @param frame     要发送的帧
+     * @param fullFrame 覆盖了未发出的帧时使用的完整内容帧，非增量帧与 frame 相同
+     */
+    private static void sendLatest(Session session, String frame, String fullFrame) {
+        Outbox outbox = outbox(session);
+        if (outbox == null) {
+            if (session.isOpen()) {
+                send(session, fullFrame);
+            }
+            return;
+        }
+        synchronized (outbox) {
+            if (outbox.sending) {
+                putPending(outbox, frame, fullFrame);
+                return;
+            }
+            outbox.sending = true;
+        }
+        drainOutbox(session, outbox, frame);
+    }
+
+    /**
+     * 热点房间：把帧放入会话的槽位，返回 true 表示需要由扇出通道调用 drainLatest 发送（会话尚未排队且没有线程正在发送）
+     */
+    private static boolean offerLatest(Session session, String frame, String fullFrame) {
+        Outbox outbox = outbox(session);
+        if (outbox == null) {
+            if (session.isOpen()) {
+                send(session, fullFrame);
+            }
+            return false;
+        }
+        synchronized (outbox) {
+            putPending(outbox, frame, fullFrame);
+            if (outbox.sending || outbox.queued) {
+                return false;
+            }
+            outbox.queued = true;
+            return true;
+        }
+    }
+
+    /**
+     * 扇出通道发送会话槽位中的最新帧；其他线程正在发送时由其接着发送
+     */
+    private static void drainLatest(Session session) {
+        Outbox outbox = outbox(session);
+        if (outbox == null) {
+            return;
+        }
+        String next;
+        synchronized (outbox) {
+            outbox.queued = false;
+            if (outbox.sending || outbox.pending == null) {
+                return;
+            }
+            outbox.sending = true;
+            next = outbox.pending;
+            outbox.pending = null;
+        }
+        drainOutbox(session, outbox, next);
+    }
+
+    /**
+     * 会话的槽位，连接尚未初始化完成时为 null；会话已完全关闭时计为丢弃帧并返回 null
+     */
+    private static Outbox outbox(Session session) {
+        try {
+            return (Outbox) session.getUserProperties().get(OUTBOX);
+        } catch (IllegalStateException e) {
+            // 会话已完全关闭
+            editorMetrics.frameDropped();
+            return null;
+        }
+    }
+
+    /**
+     * 槽位中已有未发出的帧时覆盖；增量帧以未发出的帧为基准，覆盖后改为完整帧（调用方持有 outbox 锁）
+     */
+    private static void putPending(Outbox outbox, String frame, String fullFrame) {
+        if (outbox.pending != null) {
+            editorMetrics.frameConflated();
+        }
+        outbox.pending = outbox.pending == null && !outbox.syncing ? frame : fullFrame;
+    }
+
+    /**
+     * 发送 first，之后持续发送槽位中的新帧直到槽位为空（调用方已将 sending 置为 true）
+     */
+    private static void drainOutbox(Session session, Outbox outbox, String first) {
+        String next = first;
+        try {
+            while (next != null) {
+                send(session, next);
+                synchronized (outbox) {
+                    next = outbox.pending;
+                    outbox.pending = null;
+                    if (next == null) {
+                        release(outbox);
                     }
-                } catch (IOException e) {
-                    log.error("广播消息失败: sessionId={}", s.getId(), e);
                 }
             }
+        } finally {
+            // 发送异常退出时释放槽位，之后的帧由其他线程继续发送
+            if (next != null) {
+                synchronized (outbox) {
+                    release(outbox);
+                }
+            }
+        }
+    }
+
+    /**
+     * 结束发送并唤醒等待占用的 SYNC（调用方持有 outbox 锁）
+     */
+    private static void release(Outbox outbox) {
+        outbox.sending = false;
+        outbox.notifyAll();
+    }
+
+    /**
+     * 出站内容帧的槽位：sending 表示有线程正在为该会话发送内容帧，pending 为等待发送的最新一帧，
+     * queued 表示该会话已在扇出通道中等待发送，syncing 表示正在分块发送 SYNC
+     */
+    private static final class Outbox {
+        private boolean sending;
+        private boolean queued;
+        private boolean syncing;
+        private String pending;
+    }
+
+    /**
+     * 辅助方法：向单个 Session 发送文本，失败计为丢弃帧。
+     *
+     * @param session 目标会话
+     * @param data    要发送的 JSON 字符串
+     */
+    private static void send(Session session, String data) {
+        editorMetrics.sendStarted();
+        try {
+            // 使用 synchronized 避免并发发送导致 IllegalStateException
+            synchronized (session) {
+                session.getBasicRemote().sendText(data);
+            }
+        } catch (IOException | IllegalStateException e) {
+            editorMetrics.frameDropped();
+            log.error("发送消息失败: sessionId={}", session.getId(), e);
+        } finally {
+            editorMetrics.sendFinished();
         }
     }
 
@@ -408,15 +1239,7 @@ public class EditorServer {
                 msg.setType(type);
                 msg.setSender(WsMessageType.SENDER_SERVER);
                 msg.setData(content);
-                String json = objectMapper.writeValueAsString(msg);
-
-                for (Session s : sessions) {
-                    if (s.isOpen()) {
-                        synchronized (s) {
-                            s.getBasicRemote().sendText(json);
-                        }
-                    }
-                }
+                fanout(docId, sessions, objectMapper.writeValueAsString(msg), Session::isOpen);
             } catch (IOException e) {
                 log.error("广播系统消息失败: docId={}", docId, e);
             }
@@ -0,0 +1,190 @@
+package org.example.collaborative_editor.ws;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.websocket.Session;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collaborative_editor.metrics.EditorMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 热点房间扇出
+ * 接收者按会话 ID 固定分配到若干条串行通道，每条通道由单独的线程发送；
+ * 发送方线程只负责分组和入队，广播耗时不再随房间人数线性增长。
+ * 内容帧（EDIT / SYNC）只写入会话的最新值槽位并把会话标记到所在通道，通道依次发送各会话槽位中的最新帧，
+ * 接收者落后时未发出的旧帧被覆盖，每个会话在通道中最多排一次；其他消息按分区进入有界队列，队列满时丢弃并计为丢弃帧。
+ * 同一会话总是落在同一条通道上，每个接收者收到的同类消息顺序与广播顺序一致。
+ */
+@Slf4j
+@Component
+public class FanoutExecutor {
+
+    private final EditorMetrics editorMetrics;
+
+    private final int hotThreshold;
+
+    private final Lane[] lanes;
+
+    public FanoutExecutor(EditorMetrics editorMetrics,
+                          @Value("${codoc.ws.fanout.hot-threshold:100}") int hotThreshold,
+                          @Value("${codoc.ws.fanout.lanes:0}") int lanes,
+                          @Value("${codoc.ws.fanout.queue-capacity:1024}") int queueCapacity) {
+        this.editorMetrics = editorMetrics;
+        this.hotThreshold = hotThreshold;
+        int count = lanes > 0 ? lanes : Runtime.getRuntime().availableProcessors() * 2;
+        this.lanes = new Lane[count];
+        for (int i = 0; i < count; i++) {
+            this.lanes[i] = new Lane(queueCapacity);
+            Thread thread = new Thread(this.lanes[i], "ws-fanout-" + i);
+            thread.setDaemon(true);
+            this.lanes[i].thread = thread;
+            thread.start();
+        }
+        editorMetrics.bindFanoutQueue(this::queued);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            lane.thread.interrupt();
+        }
+    }
+
+    /**
+     * 房间人数是否达到热点阈值
+     */
+    public boolean isHot(int roomSize) {
+        return roomSize >= hotThreshold;
+    }
+
+    /**
+     * 按通道分组后异步发送，每个分区发送完成时记录从广播开始到该分区送达的耗时；通道队列已满时丢弃该分区
+     *
+     * @param recipients 房间内的会话
+     * @param filter     需要发送的会话
+     * @param deliver    对单个会话的发送动作
+     * @param start      广播开始的 nanoTime
+     */
+    public void dispatch(Iterable<Session> recipients, Predicate<Session> filter, Consumer<Session> deliver, long start) {
+        List<List<Session>> partitions = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            partitions.add(null);
+        }
+        for (Session session : recipients) {
+            if (!filter.test(session)) {
+                continue;
+            }
+            int lane = laneOf(session);
+            List<Session> partition = partitions.get(lane);
+            if (partition == null) {
+                partition = new ArrayList<>();
+                partitions.set(lane, partition);
+            }
+            partition.add(session);
+        }
+        for (int i = 0; i < lanes.length; i++) {
+            List<Session> partition = partitions.get(i);
+            if (partition == null) {
+                continue;
+            }
+            if (!lanes[i].tasks.offer(() -> deliverPartition(partition, deliver, start))) {
+                log.warn("热点房间扇出通道已满，丢弃 {} 个接收者的消息", partition.size());
+                partition.forEach(s -> editorMetrics.frameDropped());
+                continue;
+            }
+            LockSupport.unpark(lanes[i].thread);
+        }
+    }
+
+    /**
+     * 内容帧扇出：offer 在调用方线程把帧写入会话的最新值槽位，返回 true 表示该会话需要由通道发送（尚未排队且无线程正在发送），
+     * 通道线程随后调用 drain 发送槽位中的最新帧
+     *
+     * @param start 广播开始的 nanoTime，接收者送达耗时从其最早一条未发送的帧开始计算
+     */
+    public void dispatchLatest(Iterable<Session> recipients, Predicate<Session> filter, Predicate<Session> offer,
+                               Consumer<Session> drain, long start) {
+        boolean[] touched = new boolean[lanes.length];
+        for (Session session : recipients) {
+            if (!filter.test(session) || !offer.test(session)) {
+                continue;
+            }
+            int lane = laneOf(session);
+            lanes[lane].dirty.add(() -> {
+                drain.accept(session);
+                editorMetrics.recordFanoutRecipient(System.nanoTime() - start);
+            });
+            touched[lane] = true;
+        }
+        for (int i = 0; i < lanes.length; i++) {
+            if (touched[i]) {
+                LockSupport.unpark(lanes[i].thread);
+            }
+        }
+    }
+
+    private int laneOf(Session session) {
+        return Math.floorMod(session.getId().hashCode(), lanes.length);
+    }
+
+    private void deliverPartition(List<Session> partition, Consumer<Session> deliver, long start) {
+        for (Session session : partition) {
+            try {
+                deliver.accept(session);
+                editorMetrics.recordFanoutRecipient(System.nanoTime() - start);
+            } catch (RuntimeException e) {
+                log.error("热点房间发送失败: sessionId={}", session.getId(), e);
+            }
+        }
+        editorMetrics.recordFanoutPartition(System.nanoTime() - start);
+    }
+
+    private int queued() {
+        int queued = 0;
+        for (Lane lane : lanes) {
+            queued += lane.tasks.size() + lane.dirty.size();
+        }
+        return queued;
+    }
+
+    /**
+     * 串行发送通道：优先发送有新内容帧的会话，再处理队列中的其他消息，没有任务时挂起等待唤醒
+     */
+    private static final class Lane implements Runnable {
+        private final ConcurrentLinkedQueue<Runnable> dirty = new ConcurrentLinkedQueue<>();
+        private final BlockingQueue<Runnable> tasks;
+        private Thread thread;
+
+        private Lane(int capacity) {
+            this.tasks = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                Runnable task = dirty.poll();
+                if (task == null) {
+                    task = tasks.poll();
+                }
+                if (task == null) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.error("热点房间发送失败", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package org.example.collaborative_editor.ws;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnError;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.PongMessage;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerEndpoint;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collaborative_editor.constant.WsMessageType;
+import org.example.collaborative_editor.lifecycle.DrainManager;
+import org.example.collaborative_editor.util.JwtUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 多路复用 WebSocket 端点
+ * 一个连接只做一次 Token 解析与一份心跳，通过 SUBSCRIBE / UNSUBSCRIBE 订阅多个文档；
+ * 每个文档对应一个 ChannelSession，按普通会话加入房间，消息协议与 /editor/{docId} 相同，
+ * 只是每条消息以 "ch" 字段（文档 ID）开头：{"ch":"<docId>","type":...}。
+ */
+@Slf4j
+@Component
+@ServerEndpoint("/editor/mux")
+public class MuxServer {
+
+    /**
+     * Session 属性：该连接上已订阅的频道，key 为文档 ID
+     */
+    private static final String CHANNELS = "channels";
+
+    /**
+     * Session 属性：连接时解析的 Token
+     */
+    private static final String CLAIMS = "claims";
+
+    private static final String CHANNEL_PREFIX = "{\"ch\":\"";
+
+    private static final String SUBSCRIBE_PREFIX = "{\"type\":\"" + WsMessageType.SUBSCRIBE + "\"";
+
+    private static final String UNSUBSCRIBE_PREFIX = "{\"type\":\"" + WsMessageType.UNSUBSCRIBE + "\"";
+
+    private static final String PING_PREFIX = "{\"type\":\"" + WsMessageType.PING + "\"";
+
+    private static final String PONG_FRAME = "{\"type\":\"" + WsMessageType.PONG + "\",\"sender\":\""
+            + WsMessageType.SENDER_SERVER + "\",\"data\":\"pong\"}";
+
+    /**
+     * 本节点的多路复用物理连接
+     */
+    private static final Set<Session> connections = ConcurrentHashMap.newKeySet();
+
+    private static ObjectMapper objectMapper;
+
+    private static JwtUtil jwtUtil;
+
+    private static SessionHeartbeat sessionHeartbeat;
+
+    private static DrainManager drainManager;
+
+    /**
+     * 单个连接最多订阅的文档数
+     */
+    private static int maxChannels;
+
+    @Autowired
+    public void setObjectMapper(ObjectMapper objectMapper) {
+        MuxServer.objectMapper = objectMapper;
+    }
+
+    @Autowired
+    public void setJwtUtil(JwtUtil jwtUtil) {
+        MuxServer.jwtUtil = jwtUtil;
+    }
+
+    @Autowired
+    public void setSessionHeartbeat(SessionHeartbeat sessionHeartbeat) {
+        MuxServer.sessionHeartbeat = sessionHeartbeat;
+    }
+
+    @Autowired
+    public void setDrainManager(DrainManager drainManager) {
+        MuxServer.drainManager = drainManager;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        Gauge.builder("codoc.ws.mux.connections", connections, Set::size)
+                .description("本节点的多路复用连接数")
+                .register(meterRegistry);
+        Gauge.builder("codoc.ws.mux.channels", connections, MuxServer::channelCount)
+                .description("多路复用连接上已订阅的频道总数")
+                .register(meterRegistry);
+    }
+
+    @Value("${codoc.ws.mux.max-channels:64}")
+    public void setMaxChannels(int maxChannels) {
+        MuxServer.maxChannels = maxChannels;
+    }
+
+    /**
+     * 连接建立：解析 Token 并开始心跳，此时还没有加入任何文档
+     */
+    @OnOpen
+    public void onOpen(Session session) {
+        if (drainManager.isDraining()) {
+            close(session, new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, drainManager.retryHint()));
+            return;
+        }
+        String token = null;
+        String queryString = session.getQueryString();
+        if (queryString != null) {
+            for (String param : queryString.split("&")) {
+                if (param.startsWith("token=")) {
+                    token = param.substring(6);
+                }
+            }
+        }
+        Claims claims;
+        try {
+            claims = jwtUtil.parseToken(token);
+        } catch (Exception e) {
+            log.warn("多路复用连接 Token 验证失败: {}", e.getMessage());
+            close(session, new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY, "Invalid Token"));
+            return;
+        }
+        session.getUserProperties().put(CLAIMS, claims);
+        session.getUserProperties().put(CHANNELS, new ConcurrentHashMap<String, ChannelSession>());
+        connections.add(session);
+        sessionHeartbeat.register(session);
+    }
+
+    @OnMessage
+    public void onMessage(String part, boolean last, Session session) {
+        Map<String, ChannelSession> channels = channels(session);
+        if (channels == null) {
+            return;
+        }
+        SessionHeartbeat.touch(session);
+        String message = EditorServer.assemble(part, last, session);
+        if (message == null) {
+            return;
+        }
+        // 连接级心跳不带频道
+        if (message.startsWith(PING_PREFIX)) {
+            send(session, PONG_FRAME);
+            return;
+        }
+        // 频道标记必须是第一个字段，去掉后按普通消息交给 EditorServer，转发的 EDIT 帧不会重复携带
+        int end = message.startsWith(CHANNEL_PREFIX) ? message.indexOf('"', CHANNEL_PREFIX.length()) : -1;
+        if (end < 0 || end + 1 >= message.length()) {
+            log.debug("缺少频道标记的消息: sessionId={}", session.getId());
+            return;
+        }
+        String docId = message.substring(CHANNEL_PREFIX.length(), end);
+        String rest = message.charAt(end + 1) == ',' ? "{" + message.substring(end + 2) : "{" + message.substring(end + 1);
+
+        if (rest.startsWith(SUBSCRIBE_PREFIX)) {
+            subscribe(session, channels, docId, rest);
+            return;
+        }
+        ChannelSession channel = channels.get(docId);
+        if (rest.startsWith(UNSUBSCRIBE_PREFIX)) {
+            if (channel != null) {
+                channel.detach();
+            }
+            return;
+        }
+        if (channel == null) {
+            send(session, tag(docId, "{\"type\":\"" + WsMessageType.CLOSED + "\",\"sender\":\""
+                    + WsMessageType.SENDER_SERVER + "\",\"data\":\"1008 Not subscribed\"}"));
+            return;
+        }
+        EditorServer.handle(channel, docId, rest);
+    }
+
+    @OnMessage
+    public void onPong(PongMessage pong, Session session) {
+        SessionHeartbeat.touch(session);
+    }
+
+    /**
+     * 物理连接关闭：所有频道离开各自的文档
+     */
+    @OnClose
+    public void onClose(Session session) {
+        connections.remove(session);
+        Map<String, ChannelSession> channels = channels(session);
+        if (channels != null) {
+            for (ChannelSession channel : List.copyOf(channels.values())) {
+                channel.detach();
+            }
+        }
+    }
+
+    @OnError
+    public void onError(Session session, Throwable error) {
+        log.error("多路复用连接错误: sessionId={}, error={}", session.getId(), error.getMessage());
+        if (error instanceof IOException || !session.isOpen()) {
+            onClose(session);
+            close(session, new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "Transport error"));
+        }
+    }
+
+    /**
+     * 物理连接是否仍然在线，心跳据此继续检查未加入房间的多路复用连接
+     */
+    static boolean isConnected(Session session) {
+        return connections.contains(session);
+    }
+
+    /**
+     * 关闭本节点的所有多路复用连接（节点排空的最后阶段）
+     */
+    public static void closeAll(Supplier<CloseReason> reason) {
+        for (Session session : List.copyOf(connections)) {
+            close(session, reason.get());
+        }
+    }
+
+    private static void subscribe(Session session, Map<String, ChannelSession> channels, String docId, String message) {
+        if (channels.containsKey(docId)) {
+            return;
+        }
+        String tag;
+        String queryString = session.getQueryString();
+        try {
+            tag = "{\"ch\":" + objectMapper.writeValueAsString(docId) + ",";
+            // SUBSCRIBE 的 data 可携带该文档的准入票据，加入时跳过权限查询
+            String ticket = objectMapper.readTree(message).path("data").asText("");
+            if (!ticket.isEmpty()) {
+                queryString = queryString == null ? "ticket=" + ticket : queryString + "&ticket=" + ticket;
+            }
+        } catch (JsonProcessingException e) {
+            return;
+        }
+        ChannelSession channel = new ChannelSession(session, docId, tag, () -> channels.remove(docId));
+        if (channels.size() >= maxChannels) {
+            try {
+                channel.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY, "Too many channels"));
+            } catch (IOException e) {
+                log.debug("关闭频道失败: {}", channel.getId(), e);
+            }
+            return;
+        }
+        channels.put(docId, channel);
+        // 与独立连接相同的准入、权限校验与初始同步；被拒绝时频道关闭并向客户端发送 CLOSED
+        EditorServer.open(channel, docId, queryString, (Claims) session.getUserProperties().get(CLAIMS), false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, ChannelSession> channels(Session session) {
+        try {
+            return (Map<String, ChannelSession>) session.getUserProperties().get(CHANNELS);
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private static int channelCount(Set<Session> sessions) {
+        int count = 0;
+        for (Session session : sessions) {
+            Map<String, ChannelSession> channels = channels(session);
+            count += channels == null ? 0 : channels.size();
+        }
+        return count;
+    }
+
+    private static String tag(String docId, String frame) {
+        try {
+            return "{\"ch\":" + objectMapper.writeValueAsString(docId) + "," + frame.substring(1);
+        } catch (JsonProcessingException e) {
+            return frame;
+        }
+    }
+
+    private static void send(Session session, String data) {
+        try {
+            synchronized (session) {
+                session.getBasicRemote().sendText(data);
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("发送消息失败: sessionId={}", session.getId(), e);
+        }
+    }
+
+    private static void close(Session session, CloseReason reason) {
+        try {
+            if (session.isOpen()) {
+                session.close(reason);
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("关闭连接失败: sessionId={}", session.getId(), e);
+        }
+    }
+}
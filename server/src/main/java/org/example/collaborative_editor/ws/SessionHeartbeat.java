@@ -0,0 +1,149 @@
+package org.example.collaborative_editor.ws;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.Session;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 服务端心跳
+ * 所有会话共用一个时间轮：每个会话每 interval 检查一次，期间没有任何入站帧时发送协议层 Ping，
+ * 超过 idle-timeout 仍无入站帧（包括 Pong）的会话视为半开连接，从房间与在线计数中移除并关闭。
+ * 时间轮线程只做判断，Ping 与关闭等可能阻塞的 I/O 交给单独的线程池。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SessionHeartbeat {
+
+    /**
+     * Session 属性：最后一次收到入站帧的时间戳（AtomicLong）
+     */
+    static final String LAST_SEEN = "lastSeen";
+
+    /**
+     * Tomcat 阻塞发送超时的 Session 属性名，避免对端不读时发送线程长时间挂起
+     */
+    private static final String BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${codoc.ws.heartbeat.interval-ms:15000}")
+    private long intervalMs;
+
+    @Value("${codoc.ws.heartbeat.idle-timeout-ms:45000}")
+    private long idleTimeoutMs;
+
+    @Value("${codoc.ws.heartbeat.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    private HashedWheelTimer wheel;
+    private ExecutorService io;
+    private Counter pings;
+    private Counter culled;
+
+    @PostConstruct
+    public void init() {
+        // 100ms 一格、512 格，覆盖 51 秒一圈，更长的间隔按轮数计算
+        wheel = new HashedWheelTimer(threadFactory("ws-heartbeat-wheel"), 100, TimeUnit.MILLISECONDS, 512);
+        io = Executors.newFixedThreadPool(2, threadFactory("ws-heartbeat"));
+        pings = Counter.builder("codoc.ws.heartbeat.pings")
+                .description("服务端发送的协议层 Ping 数")
+                .register(meterRegistry);
+        culled = Counter.builder("codoc.ws.sessions.culled")
+                .description("因心跳超时或传输错误被移除的会话数")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        wheel.stop();
+        io.shutdownNow();
+    }
+
+    /**
+     * 会话加入房间后开始心跳检查
+     */
+    public void register(Session session) {
+        session.getUserProperties().put(LAST_SEEN, new AtomicLong(System.currentTimeMillis()));
+        session.getUserProperties().put(BLOCKING_SEND_TIMEOUT, sendTimeoutMs);
+        schedule(session);
+    }
+
+    /**
+     * 收到任意入站帧（文本或 Pong）时刷新最后活跃时间
+     */
+    public static void touch(Session session) {
+        AtomicLong lastSeen = (AtomicLong) session.getUserProperties().get(LAST_SEEN);
+        if (lastSeen != null) {
+            lastSeen.set(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 传输错误或超时后移除会话并计数
+     */
+    void cull(Session session, CloseReason reason) {
+        culled.increment();
+        EditorServer.evict(session, reason);
+    }
+
+    private void schedule(Session session) {
+        wheel.newTimeout((Timeout timeout) -> check(session), intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void check(Session session) {
+        // 已正常离开的会话不再检查，时间轮中不会残留引用；多路复用连接不在房间中，以连接是否在线为准
+        if (!EditorServer.isJoined(session) && !MuxServer.isConnected(session)) {
+            return;
+        }
+        AtomicLong lastSeen = (AtomicLong) session.getUserProperties().get(LAST_SEEN);
+        long idle = System.currentTimeMillis() - lastSeen.get();
+        if (!session.isOpen() || idle >= idleTimeoutMs) {
+            log.info("会话心跳超时，移除: sessionId={}, 空闲 {} ms", session.getId(), idle);
+            io.execute(() -> cull(session, new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "Idle timeout")));
+            return;
+        }
+        // 最近一个间隔内有入站帧的会话不需要 Ping
+        if (idle >= intervalMs) {
+            io.execute(() -> ping(session));
+        }
+        schedule(session);
+    }
+
+    private void ping(Session session) {
+        try {
+            session.getBasicRemote().sendPing(ByteBuffer.allocate(0));
+            pings.increment();
+        } catch (IOException | IllegalStateException e) {
+            log.debug("发送 Ping 失败，移除会话: sessionId={}", session.getId(), e);
+            cull(session, new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "Ping failed"));
+        }
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger index = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.collaborative_editor.ws;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 只读会话的 EDIT 合并下发
+ * EDIT 携带全量内容，只读会话不需要每一帧：每个文档只保留最新一条，按固定间隔下发给该文档的只读会话。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ViewerConflator {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${codoc.ws.viewer.interval-ms:1000}")
+    private long intervalMs;
+
+    /**
+     * 每个文档尚未下发给只读会话的最新 EDIT 帧
+     */
+    private final Map<String, String> latest = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+    private Counter delivered;
+    private Counter conflated;
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-viewer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        delivered = Counter.builder("codoc.ws.viewer.frames")
+                .description("只读会话的 EDIT 帧：delivered 为合并后下发的帧，conflated 为被更新内容覆盖的帧")
+                .tag("result", "delivered")
+                .register(meterRegistry);
+        conflated = Counter.builder("codoc.ws.viewer.frames")
+                .description("只读会话的 EDIT 帧：delivered 为合并后下发的帧，conflated 为被更新内容覆盖的帧")
+                .tag("result", "conflated")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 记录文档的最新 EDIT 帧，覆盖尚未下发的旧帧
+     */
+    public void offer(String docId, String frame) {
+        if (latest.put(docId, frame) != null) {
+            conflated.increment();
+        }
+    }
+
+    /**
+     * 文档在本节点已无会话，丢弃待下发的帧
+     */
+    public void release(String docId) {
+        latest.remove(docId);
+    }
+
+    private void flush() {
+        for (String docId : latest.keySet()) {
+            String frame = latest.remove(docId);
+            if (frame == null) {
+                continue;
+            }
+            try {
+                EditorServer.deliverToViewers(docId, frame);
+                delivered.increment();
+            } catch (Exception e) {
+                log.error("向只读会话下发内容失败: docId={}", docId, e);
+            }
+        }
+    }
+}
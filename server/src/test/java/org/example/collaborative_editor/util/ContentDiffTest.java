@@ -0,0 +1,99 @@
+package org.example.collaborative_editor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContentDiffTest {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    @Test
+    void identicalContentHasNoOps() {
+        assertTrue(ContentDiff.diff("<p>abc</p>", "<p>abc</p>", 256, NO_DEADLINE).isEmpty());
+        assertTrue(ContentDiff.diff("", "", 256, NO_DEADLINE).isEmpty());
+    }
+
+    @Test
+    void pureInsertAndDelete() {
+        assertEquals(List.of(new ContentDiff.Op(4, 0, "X")),
+                ContentDiff.diff("<p>ab</p>", "<p>aXb</p>", 256, NO_DEADLINE));
+        assertEquals(List.of(new ContentDiff.Op(4, 1, "")),
+                ContentDiff.diff("<p>aXb</p>", "<p>ab</p>", 256, NO_DEADLINE));
+    }
+
+    @Test
+    void wrappingTextProducesSeparateInserts() {
+        String base = "<p>hello world</p>";
+        String target = "<p><b>hello</b> world</p>";
+        List<ContentDiff.Op> ops = ContentDiff.diff(base, target, 256, NO_DEADLINE);
+        assertEquals(2, ops.size());
+        assertEquals(new ContentDiff.Op(3, 0, "<b>"), ops.get(0));
+        assertEquals(new ContentDiff.Op(8, 0, "</b>"), ops.get(1));
+        assertValid(base, target, ops);
+    }
+
+    @Test
+    void surrogatePairIsNeverSplit() {
+        // 😀 与 😁 的高位代理相同，只有低位代理不同
+        String base = "a😀b";
+        String target = "a😁b";
+        List<ContentDiff.Op> ops = ContentDiff.diff(base, target, 256, NO_DEADLINE);
+        assertEquals(List.of(new ContentDiff.Op(1, 2, "😁")), ops);
+        assertValid(base, target, ops);
+
+        // 两侧都非空、走 Myers 的情形
+        base = "x😀y😂z";
+        target = "x😁y😃z";
+        assertValid(base, target, ContentDiff.diff(base, target, 256, NO_DEADLINE));
+    }
+
+    @Test
+    void exceedingBudgetFallsBackToOneReplace() {
+        String base = "<p>abcdef</p>";
+        String target = "<p>aXcdYf</p>";
+        assertEquals(List.of(new ContentDiff.Op(4, 4, "XcdY")), ContentDiff.diff(base, target, 1, NO_DEADLINE));
+        assertEquals(List.of(new ContentDiff.Op(4, 4, "XcdY")), ContentDiff.diff(base, target, 256, 0));
+    }
+
+    @Test
+    void randomEditsRoundTrip() {
+        Random random = new Random(42);
+        String[] alphabet = {"a", "b", "<", ">", " ", "😀", "😁", "中"};
+        for (int i = 0; i < 2000; i++) {
+            String base = randomText(random, alphabet);
+            String target = randomText(random, alphabet);
+            List<ContentDiff.Op> ops = ContentDiff.diff(base, target, 32, NO_DEADLINE);
+            assertValid(base, target, ops);
+        }
+    }
+
+    private static String randomText(Random random, String[] alphabet) {
+        StringBuilder sb = new StringBuilder();
+        int length = random.nextInt(12);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet[random.nextInt(alphabet.length)]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 应用结果等于目标内容；替换按位置升序、互不重叠，且不落在代理对中间
+     */
+    private static void assertValid(String base, String target, List<ContentDiff.Op> ops) {
+        assertEquals(target, ContentDiff.apply(base, ops), () -> "ops " + ops);
+        int end = 0;
+        for (ContentDiff.Op op : ops) {
+            assertTrue(op.pos() >= end, () -> "overlapping ops " + ops);
+            end = op.pos() + op.delete();
+            assertFalse(op.pos() < base.length() && Character.isLowSurrogate(base.charAt(op.pos())), () -> "split " + ops);
+            assertFalse(end < base.length() && Character.isLowSurrogate(base.charAt(end)), () -> "split " + ops);
+            assertFalse(!op.insert().isEmpty() && Character.isLowSurrogate(op.insert().charAt(0)), () -> "split " + ops);
+        }
+    }
+}
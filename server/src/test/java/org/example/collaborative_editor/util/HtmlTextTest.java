@@ -0,0 +1,52 @@
+package org.example.collaborative_editor.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HtmlTextTest {
+
+    @Test
+    void stripsTagsAndComments() {
+        assertEquals("hello world", HtmlText.of("<p>hello <b class=\"x\">world</b></p>"));
+        assertEquals("ab", HtmlText.of("a<!-- <p>ignored</p> -->b"));
+        assertEquals("", HtmlText.of("<p><br></p>"));
+    }
+
+    @Test
+    void decodesNamedEntities() {
+        assertEquals("a & b < c > d \" ' e", HtmlText.of("a &amp; b &lt; c &gt; d &quot; &apos; e"));
+        // 与 textContent 一致，&nbsp; 解码为 U+00A0 而不是普通空格
+        assertEquals("a\u00A0b", HtmlText.of("a&nbsp;b"));
+    }
+
+    @Test
+    void decodesNumericEntitiesIncludingSupplementaryCharacters() {
+        assertEquals("A", HtmlText.of("&#65;"));
+        assertEquals("中", HtmlText.of("&#x4e2d;"));
+        // 辅助平面字符解码为代理对，长度按 UTF-16 码元计为 2
+        String emoji = HtmlText.of("&#x1F600;");
+        assertEquals("😀", emoji);
+        assertEquals(2, emoji.length());
+        assertEquals("😀", HtmlText.of("&#128512;"));
+    }
+
+    @Test
+    void keepsUnknownOrMalformedEntitiesAsText() {
+        assertEquals("&foo; x", HtmlText.of("&foo; x"));
+        assertEquals("a & b", HtmlText.of("a & b"));
+        assertEquals("&#xZZ;", HtmlText.of("&#xZZ;"));
+        assertEquals("&#1114112;", HtmlText.of("&#1114112;"));
+        assertEquals("&averyveryverylongname;", HtmlText.of("&averyveryverylongname;"));
+    }
+
+    @Test
+    void keepsSurrogatePairsFromSource() {
+        assertEquals("a😀b", HtmlText.of("<p>a😀</p><p>b</p>"));
+    }
+
+    @Test
+    void stopsAtUnterminatedTag() {
+        assertEquals("abc", HtmlText.of("abc<p"));
+    }
+}
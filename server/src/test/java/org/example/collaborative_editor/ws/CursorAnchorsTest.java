@@ -0,0 +1,74 @@
+package org.example.collaborative_editor.ws;
+
+import org.example.collaborative_editor.util.ContentDiff;
+import org.example.collaborative_editor.util.HtmlText;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CursorAnchorsTest {
+
+    @Test
+    void insertBeforeShiftsRight() {
+        List<ContentDiff.Op> ops = List.of(new ContentDiff.Op(2, 0, "xyz"));
+        assertEquals(8, CursorAnchors.shift(5, ops, false));
+        assertEquals(1, CursorAnchors.shift(1, ops, false));
+    }
+
+    @Test
+    void insertAtAnchorKeepsOthersBeforeAndMovesEditorAfter() {
+        List<ContentDiff.Op> ops = List.of(new ContentDiff.Op(4, 0, "ab"));
+        assertEquals(4, CursorAnchors.shift(4, ops, false));
+        assertEquals(6, CursorAnchors.shift(4, ops, true));
+    }
+
+    @Test
+    void anchorInsideReplacedRangeMovesToItsStart() {
+        // 将 [3, 8) 替换为 "ab"
+        List<ContentDiff.Op> ops = List.of(new ContentDiff.Op(3, 5, "ab"));
+        assertEquals(3, CursorAnchors.shift(3, ops, false));
+        assertEquals(3, CursorAnchors.shift(6, ops, false));
+        assertEquals(5, CursorAnchors.shift(6, ops, true));
+        // 替换范围末尾之后的位置按长度差平移
+        assertEquals(5, CursorAnchors.shift(8, ops, false));
+        assertEquals(7, CursorAnchors.shift(10, ops, false));
+    }
+
+    @Test
+    void multipleOpsAccumulateDelta() {
+        List<ContentDiff.Op> ops = List.of(
+                new ContentDiff.Op(1, 0, "<b>"),
+                new ContentDiff.Op(4, 2, ""),
+                new ContentDiff.Op(8, 1, "zz"));
+        assertEquals(0, CursorAnchors.shift(0, ops, false));
+        assertEquals(6, CursorAnchors.shift(3, ops, false));
+        assertEquals(7, CursorAnchors.shift(5, ops, false));
+        assertEquals(7, CursorAnchors.shift(6, ops, false));
+        assertEquals(9, CursorAnchors.shift(8, ops, false));
+        assertEquals(11, CursorAnchors.shift(8, ops, true));
+        assertEquals(12, CursorAnchors.shift(10, ops, false));
+    }
+
+    @Test
+    void shiftsAcrossSurrogatePairsInUtf16Units() {
+        String before = HtmlText.of("<p>a😀b</p>");
+        String after = HtmlText.of("<p>&#x1F601;a😀b</p>");
+        List<ContentDiff.Op> ops = ContentDiff.diff(before, after, 256, Long.MAX_VALUE);
+        // 光标在 b 之前（a + 代理对之后）
+        int pos = before.indexOf('b');
+        assertEquals(after.indexOf('b'), CursorAnchors.shift(pos, ops, false));
+    }
+
+    @Test
+    void editingInsideSurrogatePairReplacesWholeCharacter() {
+        String before = "a😀b";
+        String after = "a😁b";
+        List<ContentDiff.Op> ops = ContentDiff.diff(before, after, 256, Long.MAX_VALUE);
+        // 落在被替换的整个字符上时移到其起点（他人）或之后（编辑者）
+        assertEquals(1, CursorAnchors.shift(2, ops, false));
+        assertEquals(3, CursorAnchors.shift(2, ops, true));
+        assertEquals(3, CursorAnchors.shift(3, ops, false));
+    }
+}
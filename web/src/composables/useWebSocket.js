@@ -9,8 +9,13 @@ export function useWebSocket() {
   const messages = ref([])
   const connectionError = ref(null)
   let heartbeatTimer = null
+  let reconnectTimer = null
 
   let messageId = 0
+  // 大文档分块同步时暂存已收到的块，收到最后的 SYNC 后拼接
+  let syncChunks = []
+  // 服务器视角的最新内容，作为 EDIT_DELTA 的基准
+  let serverContent = null
   const pingDelay = ref(null) // ms
   let lastPingSentAt = 0
 
@@ -33,6 +38,7 @@ export function useWebSocket() {
    * @param {object} options - 配置项 { onClose: (event) => {} }
    */
   function connect(wsUrl, options = {}) {
+    cancelReconnect()
     if (socket.value && socket.value.readyState === WebSocket.OPEN) {
       addMessage('system', '已经连接，请先断开')
       return
@@ -44,6 +50,8 @@ export function useWebSocket() {
     try {
       const ws = new WebSocket(wsUrl)
       socket.value = ws
+      syncChunks = []
+      serverContent = null
 
       ws.onopen = () => {
         if (socket.value !== ws) return
@@ -70,7 +78,42 @@ export function useWebSocket() {
           // 保持原始文本
         }
 
-        // 更宽松地识别 PONG 响应（兼容多种后端实现）
+        // 节点下线：按服务器给出的随机延迟重连，由负载均衡分配到其他节点
+        if (parsed && parsed.type === 'RECONNECT') {
+          const delay = Number(parsed.data) || 0
+          addMessage('system', `服务器即将下线，${delay} ms 后重连`)
+          scheduleReconnect(wsUrl, options, delay)
+          return
+        }
+
+        // 分块同步：SYNC_CHUNK 只暂存，最后一条 SYNC 携带剩余内容
+        if (parsed && parsed.type === 'SYNC_CHUNK') {
+          syncChunks.push(parsed.data || '')
+          return
+        }
+        if (parsed && parsed.type === 'SYNC' && syncChunks.length > 0) {
+          parsed.data = syncChunks.join('') + (parsed.data || '')
+          syncChunks = []
+          displayContent = `SYNC (分块同步, ${parsed.data.length} 字符)`
+        }
+        if (parsed && (parsed.type === 'SYNC' || parsed.type === 'EDIT')) {
+          serverContent = parsed.data || ''
+        }
+
+        // 增量 EDIT：基准与本地一致时还原为完整 EDIT，否则请求重新同步并丢弃该帧
+        if (parsed && parsed.type === 'EDIT_DELTA') {
+          const content = applyDelta(parsed)
+          if (content === null) {
+            addMessage('system', 'EDIT_DELTA 基准不一致，请求重新同步')
+            serverContent = null
+            sendRaw(JSON.stringify({ type: 'SYNC' }))
+            return
+          }
+          serverContent = content
+          parsed = { type: 'EDIT', sender: parsed.sender, data: content }
+          displayContent = `EDIT_DELTA (${event.data.length} 字符 → ${content.length} 字符)`
+        }
+
         let handledAsPong = false
         try {
           // parsed 对象优先判断
@@ -118,6 +161,13 @@ export function useWebSocket() {
           }
         }
 
+        // 1012 服务重启 / 1013 稍后重试：节点正在下线，按 reason 中的 retry 提示重连
+        if (event.code === 1012 || event.code === 1013) {
+          const hint = /retry=(\d+)/.exec(event.reason || '')
+          scheduleReconnect(wsUrl, options, hint ? Number(hint[1]) : 1000 + Math.random() * 4000)
+          return
+        }
+
         if (options.onClose) {
           options.onClose(event)
         }
@@ -135,10 +185,62 @@ export function useWebSocket() {
     }
   }
 
+  /**
+   * 将 EDIT_DELTA 的替换列表应用到 serverContent，基准长度或指纹不一致时返回 null
+   */
+  function applyDelta(delta) {
+    const base = serverContent
+    if (base === null || base.length !== delta.length || contentHash(base) !== delta.base) {
+      return null
+    }
+    let result = ''
+    let cursor = 0
+    for (const [pos, del, ins] of delta.ops || []) {
+      result += base.slice(cursor, pos) + ins
+      cursor = pos + del
+    }
+    return result + base.slice(cursor)
+  }
+
+  /**
+   * 与服务端 ContentDiff.hash 一致的 32 位 FNV-1a（按 UTF-16 码元）
+   */
+  function contentHash(text) {
+    let h = 0x811c9dc5 | 0
+    for (let i = 0; i < text.length; i++) {
+      h = Math.imul(h ^ text.charCodeAt(i), 0x01000193)
+    }
+    return h
+  }
+
+  /**
+   * 延迟重连：旧连接的事件不再处理，到期后关闭旧连接并重新连接
+   */
+  function scheduleReconnect(wsUrl, options, delay) {
+    cancelReconnect()
+    reconnectTimer = setTimeout(() => {
+      reconnectTimer = null
+      const old = socket.value
+      socket.value = null
+      stopHeartbeat()
+      if (old && old.readyState === WebSocket.OPEN) old.close(1000, 'reconnect')
+      isConnected.value = false
+      connect(wsUrl, options)
+    }, delay)
+  }
+
+  function cancelReconnect() {
+    if (reconnectTimer) {
+      clearTimeout(reconnectTimer)
+      reconnectTimer = null
+    }
+  }
+
   /**
    * 断开连接
    */
   function disconnect() {
+    cancelReconnect()
     stopHeartbeat()
     if (socket.value) {
       socket.value.close()
@@ -194,6 +296,7 @@ export function useWebSocket() {
     const message = { type, sender, data }
     const json = JSON.stringify(message)
     socket.value.send(json)
+    if (type === 'EDIT') serverContent = data
     addMessage('sent', JSON.stringify(message, null, 2))
     return true
   }